@@ -5,12 +5,52 @@ import java.net.URLClassLoader;
 
 public class RASPAdapterClassLoader extends URLClassLoader {
 
+	/**
+	 * RASP Agent的类加载器，不为空时org.javaweb.rasp.commons包下的类优先从该类加载器中加载
+	 */
+	private final ClassLoader agentClassLoader;
+
+	private static final String AGENT_PACKAGE_PREFIX = "org.javaweb.rasp.commons.";
+
 	public RASPAdapterClassLoader(ClassLoader parent) {
-		super(new URL[0], parent);
+		this(new URL[0], parent);
 	}
 
 	public RASPAdapterClassLoader(URL[] urls, ClassLoader parent) {
+		this(urls, parent, null);
+	}
+
+	/**
+	 * 创建可以同时访问Web应用类和RASP Agent类的类加载器，用于定义继承RASP类并直接调用容器类的代理类
+	 *
+	 * @param urls             jar URL
+	 * @param parent           Web应用或容器的类加载器
+	 * @param agentClassLoader RASP Agent的类加载器
+	 */
+	public RASPAdapterClassLoader(URL[] urls, ClassLoader parent, ClassLoader agentClassLoader) {
 		super(urls, parent);
+		this.agentClassLoader = agentClassLoader;
+	}
+
+	@Override
+	protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+		if (agentClassLoader != null && name.startsWith(AGENT_PACKAGE_PREFIX)) {
+			synchronized (this) {
+				Class<?> clazz = findLoadedClass(name);
+
+				if (clazz == null) {
+					clazz = agentClassLoader.loadClass(name);
+				}
+
+				if (resolve) {
+					resolveClass(clazz);
+				}
+
+				return clazz;
+			}
+		}
+
+		return super.loadClass(name, resolve);
 	}
 
 	public void addURL(URL url) {
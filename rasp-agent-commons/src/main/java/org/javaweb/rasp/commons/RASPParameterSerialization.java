@@ -0,0 +1,11 @@
+package org.javaweb.rasp.commons;
+
+/**
+ * 只从请求体中提取请求参数的反序列化实现（不检测类名、元素名等）。
+ * 开启stream_cache.stream_decode后，JSON/XML请求体使用流式解析（写入缓存时同步解析和检测请求参数），
+ * 流式解析完成时不再调用deserialization，流式解析失败时（如：格式错误）才调用deserialization。
+ * 其他RASPSerialization实现不使用流式解析，请求体缓存完成后调用deserialization。
+ */
+public interface RASPParameterSerialization extends RASPSerialization {
+
+}
@@ -0,0 +1,69 @@
+package org.javaweb.rasp.commons.attack;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.System.currentTimeMillis;
+import static org.javaweb.rasp.commons.config.RASPConfiguration.AGENT_PROPERTIES;
+import static org.javaweb.rasp.commons.config.RASPConfiguration.RASP_DIRECTORY;
+
+/**
+ * 攻击ID生成，替代UUID.randomUUID（SecureRandom存在锁竞争）。
+ * <p>
+ * ID为32位十六进制字符串（和去掉"-"的UUID长度一致），按时间排序：
+ * 时间戳（48位）+ 节点ID（32位，RASP目录和站点ID的哈希）+
+ * 线程ID（32位，线程第一次生成ID时分配，起始值在JVM启动时随机生成，区分共用RASP目录的多个JVM）+ 线程内计数器（16位）。
+ * 同一JVM中线程ID在创建2^32个线程后才会重复，不会出现两个存活线程使用相同线程ID的情况。
+ * 除每个线程第一次生成ID外不使用任何共享的锁或原子变量。
+ */
+public class RASPAttackIdGenerator {
+
+	private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+
+	private static final int NODE_ID = initNodeId();
+
+	private static final AtomicInteger THREAD_ID = new AtomicInteger(new Random().nextInt());
+
+	private static final ThreadLocal<int[]> THREAD_SEQUENCE = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[]{THREAD_ID.getAndIncrement(), 0};
+		}
+	};
+
+	private static int initNodeId() {
+		int    hash = 0x811c9dc5;
+		String node = RASP_DIRECTORY.getAbsolutePath() + "#" + AGENT_PROPERTIES.getSiteID();
+
+		for (int i = 0; i < node.length(); i++) {
+			hash = (hash ^ node.charAt(i)) * 0x01000193;
+		}
+
+		return hash;
+	}
+
+	/**
+	 * 生成攻击ID
+	 *
+	 * @return 攻击ID
+	 */
+	public static String nextId() {
+		int[]  sequence = THREAD_SEQUENCE.get();
+		char[] chars    = new char[32];
+
+		appendHex(chars, 0, currentTimeMillis(), 12);
+		appendHex(chars, 12, NODE_ID & 0xFFFFFFFFL, 8);
+		appendHex(chars, 20, sequence[0] & 0xFFFFFFFFL, 8);
+		appendHex(chars, 28, sequence[1]++ & 0xFFFF, 4);
+
+		return new String(chars);
+	}
+
+	private static void appendHex(char[] chars, int offset, long value, int length) {
+		for (int i = offset + length - 1; i >= offset; i--) {
+			chars[i] = HEX_CHARS[(int) (value & 0xF)];
+			value >>>= 4;
+		}
+	}
+
+}
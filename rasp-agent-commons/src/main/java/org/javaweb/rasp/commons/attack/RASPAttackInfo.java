@@ -2,8 +2,7 @@ package org.javaweb.rasp.commons.attack;
 
 import java.rasp.proxy.loader.RASPModuleType;
 
-import static org.javaweb.rasp.commons.utils.StringUtils.genUUID;
-import static org.javaweb.rasp.loader.AgentConstants.AGENT_PROXY_PACKAGE_PREFIX;
+import static org.javaweb.rasp.commons.config.RASPConfiguration.AGENT_PROPERTIES;
 
 /**
  * Web攻击详情信息
@@ -44,16 +43,14 @@ public class RASPAttackInfo {
 	private final boolean blockRequest;
 
 	/**
-	 * Hook调用链
+	 * Hook调用链，写日志时才生成调用链字符串
 	 */
-	private String traceElements;
+	private RASPAttackTrace trace;
 
 	/**
-	 * 攻击Hash值
+	 * 攻击Hash值（攻击ID），记录日志或阻断请求时才生成
 	 */
-	private final String attackHash = genUUID();
-
-	private static final String HOOK_PROXY_CLASS_NAME = AGENT_PROXY_PACKAGE_PREFIX + "loader.HookProxy";
+	private String attackHash;
 
 	public RASPAttackInfo(RASPModuleType moduleType, String parameter, String value, RASPPosition p, boolean block) {
 		this(moduleType, parameter, value != null ? new String[]{value} : new String[0], p, block);
@@ -69,37 +66,8 @@ public class RASPAttackInfo {
 
 		// 检测当前防御模块是否需要打印调用链
 		if (moduleType.isPrintTrace()) {
-			this.initTraceElements();
-		}
-	}
-
-	private void initTraceElements() {
-		StringBuilder       sb       = new StringBuilder();
-		StackTraceElement[] elements = Thread.currentThread().getStackTrace();
-
-		boolean traceBegin = false;
-
-		// 移除无用信息，从RASPHookProxy类之后的调用链开始输出
-		for (int i = 1; i < elements.length; i++) {
-			StackTraceElement traceElement   = elements[i];
-			String            traceClassName = traceElement.getClassName();
-
-			if (traceBegin) {
-				sb.append(traceClassName)
-						.append("#").append(traceElement.getMethodName())
-						.append(" (")
-						.append(traceElement.getFileName())
-						.append(":")
-						.append(traceElement.getLineNumber()).append(")")
-						.append("\r\n");
-			}
-
-			if (traceClassName.equals(HOOK_PROXY_CLASS_NAME)) {
-				traceBegin = true;
-			}
+			this.trace = new RASPAttackTrace(AGENT_PROPERTIES.getAttackLogTraceDepth());
 		}
-
-		this.traceElements = sb.toString();
 	}
 
 	/**
@@ -146,11 +114,24 @@ public class RASPAttackInfo {
 		return blockRequest;
 	}
 
+	public RASPAttackTrace getTrace() {
+		return trace;
+	}
+
+	/**
+	 * 获取Hook调用链字符串，没有调用链时返回null
+	 *
+	 * @return Hook调用链
+	 */
 	public String getTraceElements() {
-		return traceElements;
+		return trace != null ? trace.getTraceElements() : null;
 	}
 
 	public String getAttackHash() {
+		if (attackHash == null) {
+			this.attackHash = RASPAttackIdGenerator.nextId();
+		}
+
 		return attackHash;
 	}
 
@@ -0,0 +1,190 @@
+package org.javaweb.rasp.commons.attack;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.javaweb.rasp.loader.AgentConstants.AGENT_PROXY_PACKAGE_PREFIX;
+
+/**
+ * Hook调用链，创建时只记录一个Throwable（不生成调用链字符串），写日志时（日志同步线程）才生成调用链字符串。
+ * <p>
+ * 调用链从HookProxy类之后开始，最多保留maxDepth层。调用链指纹为调用链中每一层类名、方法名、行号的64位FNV-1a哈希，
+ * 相同调用链生成的字符串按指纹缓存，只生成一次，命中缓存时比较调用链的每一层，指纹冲突时重新生成。
+ */
+public class RASPAttackTrace {
+
+	private static final String HOOK_PROXY_CLASS_NAME = AGENT_PROXY_PACKAGE_PREFIX + "loader.HookProxy";
+
+	private static final StackTraceElement[] EMPTY_ELEMENTS = new StackTraceElement[0];
+
+	/**
+	 * 最大缓存的调用链数
+	 */
+	private static final int MAX_CACHED_TRACES = 1024;
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	/**
+	 * 按调用链指纹缓存的调用链和调用链字符串
+	 */
+	private static final ConcurrentMap<Long, CachedTrace> TRACE_CACHE = new ConcurrentHashMap<Long, CachedTrace>();
+
+	private final Throwable throwable;
+
+	/**
+	 * 最大调用链深度，<=0 表示不限制
+	 */
+	private final int maxDepth;
+
+	/**
+	 * HookProxy类之后的调用链，第一次使用时初始化（可能在请求线程和日志同步线程中使用）
+	 */
+	private volatile StackTraceElement[] elements;
+
+	private long fingerprint;
+
+	private String traceElements;
+
+	public RASPAttackTrace(int maxDepth) {
+		this.throwable = new Throwable();
+		this.maxDepth = maxDepth;
+	}
+
+	private StackTraceElement[] getElements() {
+		if (elements == null) {
+			StackTraceElement[] stack = throwable.getStackTrace();
+			int                 begin = -1;
+
+			// 移除无用信息，从RASPHookProxy类之后的调用链开始输出
+			for (int i = 0; i < stack.length; i++) {
+				if (stack[i].getClassName().equals(HOOK_PROXY_CLASS_NAME)) {
+					begin = i + 1;
+					break;
+				}
+			}
+
+			if (begin < 0) {
+				elements = EMPTY_ELEMENTS;
+			} else {
+				int length = stack.length - begin;
+
+				if (maxDepth > 0 && length > maxDepth) {
+					length = maxDepth;
+				}
+
+				StackTraceElement[] trace = new StackTraceElement[length];
+				System.arraycopy(stack, begin, trace, 0, length);
+
+				long hash = FNV_OFFSET_BASIS;
+
+				for (StackTraceElement element : trace) {
+					hash = hash(hash, element.getClassName());
+					hash = hash(hash, element.getMethodName());
+					hash = (hash ^ element.getLineNumber()) * FNV_PRIME;
+				}
+
+				this.fingerprint = hash;
+				this.elements = trace;
+			}
+		}
+
+		return elements;
+	}
+
+	private static long hash(long hash, String str) {
+		for (int i = 0; i < str.length(); i++) {
+			hash = (hash ^ str.charAt(i)) * FNV_PRIME;
+		}
+
+		// 分隔符，避免不同的类名、方法名拼接后相同
+		return (hash ^ '#') * FNV_PRIME;
+	}
+
+	/**
+	 * 获取调用链指纹，没有调用链时返回0
+	 *
+	 * @return 调用链指纹
+	 */
+	public long getFingerprint() {
+		return getElements().length > 0 ? fingerprint : 0;
+	}
+
+	/**
+	 * 获取调用链字符串，相同指纹的调用链只生成一次
+	 *
+	 * @return 调用链字符串
+	 */
+	public String getTraceElements() {
+		if (traceElements != null) {
+			return traceElements;
+		}
+
+		StackTraceElement[] trace = getElements();
+
+		if (trace.length == 0) {
+			return traceElements = "";
+		}
+
+		CachedTrace cached = TRACE_CACHE.get(fingerprint);
+
+		// 指纹相同但调用链不同（哈希冲突）时不使用缓存
+		if (cached != null && Arrays.equals(cached.elements, trace)) {
+			return traceElements = cached.traceElements;
+		}
+
+		String str = render(trace);
+
+		// 缓存已满时清空，调用链数量通常远小于缓存数
+		if (TRACE_CACHE.size() >= MAX_CACHED_TRACES) {
+			TRACE_CACHE.clear();
+		}
+
+		TRACE_CACHE.put(fingerprint, new CachedTrace(trace, str));
+
+		return traceElements = str;
+	}
+
+	private static String render(StackTraceElement[] trace) {
+		StringBuilder sb = new StringBuilder(trace.length * 80);
+
+		for (StackTraceElement traceElement : trace) {
+			sb.append(traceElement.getClassName())
+					.append("#").append(traceElement.getMethodName())
+					.append(" (")
+					.append(traceElement.getFileName())
+					.append(":")
+					.append(traceElement.getLineNumber()).append(")")
+					.append("\r\n");
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * 获取调用链指纹的十六进制字符串
+	 *
+	 * @return 调用链指纹
+	 */
+	public String getFingerprintHex() {
+		long hash = getFingerprint();
+
+		return hash != 0 ? Long.toHexString(hash) : null;
+	}
+
+	private static class CachedTrace {
+
+		private final StackTraceElement[] elements;
+
+		private final String traceElements;
+
+		CachedTrace(StackTraceElement[] elements, String traceElements) {
+			this.elements = elements;
+			this.traceElements = traceElements;
+		}
+
+	}
+
+}
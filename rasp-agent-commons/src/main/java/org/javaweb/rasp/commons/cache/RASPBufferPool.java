@@ -0,0 +1,226 @@
+package org.javaweb.rasp.commons.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Arrays.copyOf;
+import static org.javaweb.rasp.commons.config.RASPConfiguration.AGENT_PROPERTIES;
+
+/**
+ * 请求/响应流缓存的字节数组池，按2的幂分级（512B ~ 64KB）缓存RASPByteArrayOutputStream的分段，
+ * 请求结束时归还，避免每个请求都重新分配缓存流数组。
+ * <p>
+ * 缓存池按线程ID分为多个分区，请求线程通常只访问自己的分区，分区之间没有锁竞争；
+ * 所有分区缓存的总字节数不会超过buffer_pool.max_size，超过时归还的数组直接丢弃由GC回收。
+ */
+public class RASPBufferPool {
+
+	/**
+	 * 最小缓存的数组大小：512B，更小的数组直接分配
+	 */
+	private static final int MIN_SHIFT = 9;
+
+	/**
+	 * 最大缓存的数组大小：64KB
+	 */
+	private static final int MAX_SHIFT = 16;
+
+	private static final int CLASS_COUNT = MAX_SHIFT - MIN_SHIFT + 1;
+
+	/**
+	 * 缓存池最大可缓存的数组大小
+	 */
+	public static final int MAX_CHUNK_SIZE = 1 << MAX_SHIFT;
+
+	private static final Stripe[] STRIPES;
+
+	private static final int STRIPE_MASK;
+
+	/**
+	 * 当前缓存池中的总字节数
+	 */
+	private static final AtomicLong RETAINED_BYTES = new AtomicLong();
+
+	static {
+		int count = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+
+		STRIPES = new Stripe[count];
+		STRIPE_MASK = count - 1;
+
+		for (int i = 0; i < count; i++) {
+			STRIPES[i] = new Stripe();
+		}
+	}
+
+	/**
+	 * 获取一个长度不小于size的字节数组，数组长度会向上取整到2的幂，数组内容不会清零
+	 *
+	 * @param size 最小长度
+	 * @return 字节数组
+	 */
+	public static byte[] borrow(int size) {
+		int sizeClass = sizeClass(size);
+
+		if (sizeClass < 0) {
+			return new byte[size];
+		}
+
+		Stripe stripe = stripe();
+
+		synchronized (stripe) {
+			int count = stripe.counts[sizeClass];
+
+			if (count > 0) {
+				byte[][] stack = stripe.stacks[sizeClass];
+				byte[]   bytes = stack[--count];
+
+				stack[count] = null;
+				stripe.counts[sizeClass] = count;
+				stripe.hits++;
+
+				RETAINED_BYTES.addAndGet(-bytes.length);
+
+				return bytes;
+			}
+
+			stripe.misses++;
+		}
+
+		return new byte[1 << (sizeClass + MIN_SHIFT)];
+	}
+
+	/**
+	 * 归还字节数组，非borrow分配的数组长度（不是2的幂或超出分级范围）或缓存池已满时直接丢弃
+	 *
+	 * @param bytes 字节数组
+	 */
+	public static void release(byte[] bytes) {
+		if (bytes == null) {
+			return;
+		}
+
+		int length    = bytes.length;
+		int sizeClass = sizeClass(length);
+
+		if (sizeClass < 0 || length != 1 << (sizeClass + MIN_SHIFT)) {
+			return;
+		}
+
+		// 检测缓存池是否已满
+		if (RETAINED_BYTES.addAndGet(length) > AGENT_PROPERTIES.getBufferPoolMaxSize()) {
+			RETAINED_BYTES.addAndGet(-length);
+			return;
+		}
+
+		Stripe stripe = stripe();
+
+		synchronized (stripe) {
+			byte[][] stack = stripe.stacks[sizeClass];
+			int      count = stripe.counts[sizeClass];
+
+			if (stack == null) {
+				stack = stripe.stacks[sizeClass] = new byte[8][];
+			} else if (count == stack.length) {
+				stack = stripe.stacks[sizeClass] = copyOf(stack, count * 2);
+			}
+
+			stack[count] = bytes;
+			stripe.counts[sizeClass] = count + 1;
+		}
+	}
+
+	/**
+	 * 获取size所属的分级，超出分级范围时返回-1
+	 */
+	private static int sizeClass(int size) {
+		if (size > MAX_CHUNK_SIZE || size < (1 << MIN_SHIFT) >> 1) {
+			return -1;
+		}
+
+		int shift = 32 - Integer.numberOfLeadingZeros(Math.max(size, 1 << MIN_SHIFT) - 1);
+
+		return shift - MIN_SHIFT;
+	}
+
+	private static Stripe stripe() {
+		return STRIPES[(int) Thread.currentThread().getId() & STRIPE_MASK];
+	}
+
+	/**
+	 * 获取从缓存池中获取到数组的次数
+	 *
+	 * @return 命中次数
+	 */
+	public static long getHits() {
+		long hits = 0;
+
+		for (Stripe stripe : STRIPES) {
+			synchronized (stripe) {
+				hits += stripe.hits;
+			}
+		}
+
+		return hits;
+	}
+
+	/**
+	 * 获取缓存池中没有可用数组、重新分配数组的次数
+	 *
+	 * @return 未命中次数
+	 */
+	public static long getMisses() {
+		long misses = 0;
+
+		for (Stripe stripe : STRIPES) {
+			synchronized (stripe) {
+				misses += stripe.misses;
+			}
+		}
+
+		return misses;
+	}
+
+	/**
+	 * 获取缓存池中当前缓存的总字节数
+	 *
+	 * @return 字节数
+	 */
+	public static long getRetainedBytes() {
+		return RETAINED_BYTES.get();
+	}
+
+	/**
+	 * 清空缓存池
+	 */
+	public static void clear() {
+		for (Stripe stripe : STRIPES) {
+			synchronized (stripe) {
+				for (int i = 0; i < CLASS_COUNT; i++) {
+					byte[][] stack = stripe.stacks[i];
+
+					for (int j = 0; j < stripe.counts[i]; j++) {
+						RETAINED_BYTES.addAndGet(-stack[j].length);
+						stack[j] = null;
+					}
+
+					stripe.counts[i] = 0;
+				}
+			}
+		}
+	}
+
+	/**
+	 * 缓存池分区，每个分级使用一个数组栈存储，后归还的数组先被使用（CPU缓存中可能还有该数组）
+	 */
+	private static final class Stripe {
+
+		private final byte[][][] stacks = new byte[CLASS_COUNT][][];
+
+		private final int[] counts = new int[CLASS_COUNT];
+
+		private long hits;
+
+		private long misses;
+
+	}
+
+}
@@ -2,11 +2,34 @@ package org.javaweb.rasp.commons.cache;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 public class RASPByteArrayInputStream extends InputStream {
 
 	protected byte[] buf;
 
+	/**
+	 * 分段数据，除最后一段外每段都已写满，非分段输入流为null
+	 */
+	protected byte[][] segments;
+
+	/**
+	 * 当前读取的分段序号和分段在数据中的起始位置
+	 */
+	private int segmentIndex;
+
+	private int segmentStart;
+
+	/**
+	 * 分段数据之后的文件数据（流缓存溢出文件的内存映射），没有溢出文件时为null
+	 */
+	protected ByteBuffer tail;
+
+	/**
+	 * 文件数据在数据中的起始位置，即分段数据的长度
+	 */
+	private int tailStart;
+
 	protected int pos;
 
 	protected int mark = 0;
@@ -28,12 +51,66 @@ public class RASPByteArrayInputStream extends InputStream {
 		this.mark = offset;
 	}
 
-	public byte[] getBuf() {
+	/**
+	 * 创建分段输入流，直接读取RASPByteArrayOutputStream的分段数据，不会合并分段
+	 *
+	 * @param segments 分段数据
+	 * @param length   数据长度
+	 */
+	public RASPByteArrayInputStream(byte[][] segments, int length) {
+		this.segments = segments;
+		this.pos = 0;
+		this.count = length;
+		this.tailStart = length;
+	}
+
+	/**
+	 * 创建分段输入流，先读取分段数据，再读取溢出文件的内存映射数据
+	 *
+	 * @param segments 分段数据
+	 * @param length   分段数据长度
+	 * @param tail     溢出文件数据
+	 */
+	public RASPByteArrayInputStream(byte[][] segments, int length, ByteBuffer tail) {
+		this.segments = segments;
+		this.pos = 0;
+		this.tail = tail;
+		this.tailStart = length;
+		this.count = length + tail.remaining();
+	}
+
+	/**
+	 * 获取缓存的字节数组，分段输入流第一次调用时会合并分段数据和溢出文件数据
+	 *
+	 * @return 字节数组
+	 */
+	public synchronized byte[] getBuf() {
+		if (buf == null && segments != null) {
+			byte[] bytes     = new byte[count];
+			int    remaining = tailStart;
+
+			for (int i = 0; remaining > 0; i++) {
+				int n = Math.min(segments[i].length, remaining);
+
+				System.arraycopy(segments[i], 0, bytes, tailStart - remaining, n);
+				remaining -= n;
+			}
+
+			if (tail != null) {
+				tail.position(0);
+				tail.get(bytes, tailStart, count - tailStart);
+			}
+
+			this.buf = bytes;
+			this.segments = null;
+			this.tail = null;
+		}
+
 		return buf;
 	}
 
 	public String getBufString() {
-		return new String(buf, pos, count);
+		return new String(getBuf(), pos, count);
 	}
 
 	public int getPos() {
@@ -53,7 +130,37 @@ public class RASPByteArrayInputStream extends InputStream {
 	}
 
 	public synchronized int read() {
-		return (pos < count) ? (buf[pos++] & 0xff) : -1;
+		if (pos >= count) {
+			return -1;
+		}
+
+		if (segments == null) {
+			return buf[pos++] & 0xff;
+		}
+
+		if (pos >= tailStart) {
+			return tail.get(pos++ - tailStart) & 0xff;
+		}
+
+		byte[] segment = segment(pos);
+
+		return segment[pos++ - segmentStart] & 0xff;
+	}
+
+	/**
+	 * 定位pos所在的分段，顺序读取时只需检测当前分段
+	 */
+	private byte[] segment(int pos) {
+		if (pos < segmentStart) {
+			segmentIndex = 0;
+			segmentStart = 0;
+		}
+
+		while (pos - segmentStart >= segments[segmentIndex].length) {
+			segmentStart += segments[segmentIndex++].length;
+		}
+
+		return segments[segmentIndex];
 	}
 
 	public synchronized int read(byte[] b, int off, int len) {
@@ -77,8 +184,34 @@ public class RASPByteArrayInputStream extends InputStream {
 			return 0;
 		}
 
-		System.arraycopy(buf, pos, b, off, len);
-		pos += len;
+		if (segments == null) {
+			System.arraycopy(buf, pos, b, off, len);
+			pos += len;
+
+			return len;
+		}
+
+		for (int remaining = len; remaining > 0; ) {
+			int n;
+
+			if (pos >= tailStart) {
+				n = remaining;
+
+				tail.position(pos - tailStart);
+				tail.get(b, off, n);
+			} else {
+				byte[] segment = segment(pos);
+				int    start   = pos - segmentStart;
+
+				n = Math.min(Math.min(segment.length - start, tailStart - pos), remaining);
+
+				System.arraycopy(segment, start, b, off, n);
+			}
+
+			pos += n;
+			off += n;
+			remaining -= n;
+		}
 
 		return len;
 	}
@@ -110,8 +243,25 @@ public class RASPByteArrayInputStream extends InputStream {
 		pos = mark;
 	}
 
+	/**
+	 * 分段已归还到缓存池（RASPByteArrayOutputStream#release），分段可能已被其他请求使用，
+	 * 之后不能再读取分段数据，已通过getBuf合并的数据不受影响
+	 */
+	synchronized void invalidate() {
+		if (segments == null) {
+			return;
+		}
+
+		this.segments = null;
+		this.tail = null;
+		this.count = pos;
+		this.closed = true;
+	}
+
 	public void close() throws IOException {
 		buf = null;
+		segments = null;
+		tail = null;
 
 		this.closed = true;
 	}
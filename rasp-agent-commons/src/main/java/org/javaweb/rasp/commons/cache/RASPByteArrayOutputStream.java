@@ -3,58 +3,117 @@ package org.javaweb.rasp.commons.cache;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
+import static java.util.Arrays.copyOf;
+
+/**
+ * 分段字节数组输出流，缓存数据按段存储，扩容时只新增一段，不会复制已缓存的数据，
+ * 大请求（如：10M的请求体）缓存时内存峰值不会翻倍。
+ */
 public class RASPByteArrayOutputStream extends OutputStream {
 
-	protected byte[] buf;
+	/**
+	 * 单个分段最大字节数
+	 */
+	private static final int MAX_SEGMENT_SIZE = 64 * 1024;
+
+	/**
+	 * 已分配的分段，reset后会重复使用
+	 */
+	protected byte[][] segments = new byte[4][];
+
+	/**
+	 * 已分配的分段数
+	 */
+	protected int segmentCount;
+
+	/**
+	 * 当前写入的分段序号
+	 */
+	protected int segmentIndex;
+
+	/**
+	 * 当前分段已写入的字节数
+	 */
+	protected int segmentPos;
 
 	protected int count;
 
 	protected boolean closed;
 
+	/**
+	 * 分段是否从RASPBufferPool中获取，release时归还
+	 */
+	private final boolean pooled;
+
+	/**
+	 * 直接读取缓存池分段的输入流，release时使其失效，避免读取到归还后其他请求写入的数据
+	 */
+	private List<RASPByteArrayInputStream> inputStreams;
+
 	public RASPByteArrayOutputStream() {
 		this(32);
 	}
 
 	public RASPByteArrayOutputStream(int size) {
+		this(size, false);
+	}
+
+	/**
+	 * 创建分段字节数组输出流
+	 *
+	 * @param size   第一个分段的大小
+	 * @param pooled 是否从RASPBufferPool中获取分段，使用完成后必须调用release归还
+	 */
+	public RASPByteArrayOutputStream(int size, boolean pooled) {
 		if (size < 0) {
 			throw new IllegalArgumentException("Negative initial size: " + size);
 		}
 
-		buf = new byte[size];
-	}
+		this.pooled = pooled;
 
-	private void ensureCapacity(int minCapacity) {
-		// overflow-conscious code
-		if (minCapacity - buf.length > 0)
-			grow(minCapacity);
+		addSegment(Math.max(1, size));
 	}
 
-	private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+	private void addSegment(int size) {
+		if (segmentCount == segments.length) {
+			segments = copyOf(segments, segmentCount * 2);
+		}
 
-	private void grow(int minCapacity) {
-		// overflow-conscious code
-		int oldCapacity = buf.length;
-		int newCapacity = oldCapacity << 1;
-		if (newCapacity - minCapacity < 0)
-			newCapacity = minCapacity;
-		if (newCapacity - MAX_ARRAY_SIZE > 0)
-			newCapacity = hugeCapacity(minCapacity);
-		buf = Arrays.copyOf(buf, newCapacity);
+		segments[segmentCount++] = pooled ? RASPBufferPool.borrow(size) : new byte[size];
 	}
 
-	private static int hugeCapacity(int minCapacity) {
-		// overflow
-		if (minCapacity < 0)
-			throw new OutOfMemoryError();
+	/**
+	 * 切换到下一个分段，没有可重用的分段时新分配一段，分段大小翻倍直到MAX_SEGMENT_SIZE
+	 */
+	private byte[] nextSegment(int minCapacity) {
+		if (++segmentIndex == segmentCount) {
+			int lastSize = segments[segmentCount - 1].length;
+
+			addSegment(Math.max(Math.min(lastSize << 1, MAX_SEGMENT_SIZE), Math.min(minCapacity, MAX_SEGMENT_SIZE)));
+		}
+
+		segmentPos = 0;
 
-		return (minCapacity > MAX_ARRAY_SIZE) ? Integer.MAX_VALUE : MAX_ARRAY_SIZE;
+		return segments[segmentIndex];
 	}
 
 	public synchronized void write(int b) {
-		ensureCapacity(count + 1);
-		buf[count] = (byte) b;
+		// 已关闭或已归还分段时忽略写入
+		if (segments == null) {
+			return;
+		}
+
+		byte[] segment = segments[segmentIndex];
+
+		if (segmentPos == segment.length) {
+			segment = nextSegment(1);
+		}
+
+		segment[segmentPos++] = (byte) b;
 		count += 1;
 	}
 
@@ -63,25 +122,99 @@ public class RASPByteArrayOutputStream extends OutputStream {
 			throw new IndexOutOfBoundsException();
 		}
 
-		ensureCapacity(count + len);
-		System.arraycopy(b, off, buf, count, len);
+		if (segments == null) {
+			return;
+		}
+
+		if (count + len < 0) {
+			throw new OutOfMemoryError();
+		}
+
 		count += len;
+
+		while (len > 0) {
+			byte[] segment = segments[segmentIndex];
+			int    avail   = segment.length - segmentPos;
+
+			if (avail == 0) {
+				segment = nextSegment(len);
+				avail = segment.length;
+			}
+
+			int n = Math.min(avail, len);
+
+			System.arraycopy(b, off, segment, segmentPos, n);
+			segmentPos += n;
+			off += n;
+			len -= n;
+		}
 	}
 
 	public synchronized void writeTo(OutputStream out) throws IOException {
-		out.write(buf, 0, count);
+		int remaining = count;
+
+		for (int i = 0; remaining > 0; i++) {
+			int n = Math.min(segments[i].length, remaining);
+
+			out.write(segments[i], 0, n);
+			remaining -= n;
+		}
+	}
+
+	/**
+	 * 创建读取缓存数据的输入流，输入流直接读取分段数据，不会复制缓存数据
+	 *
+	 * @return 缓存数据输入流
+	 */
+	public synchronized RASPByteArrayInputStream toRASPByteArrayInputStream() {
+		// 缓存池中的分段可能包含其他请求的数据，不能通过getBuf直接暴露分段数组
+		if (segmentIndex == 0 && !pooled) {
+			return new RASPByteArrayInputStream(segments[0], 0, count);
+		}
+
+		return track(new RASPByteArrayInputStream(copyOf(segments, segmentIndex + 1), count));
 	}
 
-	public RASPByteArrayInputStream toRASPByteArrayInputStream() {
-		return new RASPByteArrayInputStream(buf, 0, count);
+	/**
+	 * 创建读取缓存数据和溢出文件数据的输入流
+	 *
+	 * @param tail 溢出文件数据
+	 * @return 缓存数据输入流
+	 */
+	public synchronized RASPByteArrayInputStream toRASPByteArrayInputStream(ByteBuffer tail) {
+		return track(new RASPByteArrayInputStream(copyOf(segments, segmentIndex + 1), count, tail));
+	}
+
+	private RASPByteArrayInputStream track(RASPByteArrayInputStream in) {
+		if (pooled) {
+			if (inputStreams == null) {
+				inputStreams = new ArrayList<RASPByteArrayInputStream>(2);
+			}
+
+			inputStreams.add(in);
+		}
+
+		return in;
 	}
 
 	public synchronized void reset() {
 		count = 0;
+		segmentIndex = 0;
+		segmentPos = 0;
 	}
 
 	public synchronized byte[] toByteArray() {
-		return Arrays.copyOf(buf, count);
+		byte[] bytes     = new byte[count];
+		int    remaining = count;
+
+		for (int i = 0; remaining > 0; i++) {
+			int n = Math.min(segments[i].length, remaining);
+
+			System.arraycopy(segments[i], 0, bytes, count - remaining, n);
+			remaining -= n;
+		}
+
+		return bytes;
 	}
 
 	public synchronized int size() {
@@ -89,22 +222,56 @@ public class RASPByteArrayOutputStream extends OutputStream {
 	}
 
 	public synchronized String toString() {
-		return new String(buf, 0, count);
+		if (segmentIndex == 0) {
+			return new String(segments[0], 0, count);
+		}
+
+		return new String(toByteArray());
 	}
 
 	public synchronized String toString(String charsetName)
 			throws UnsupportedEncodingException {
-		return new String(buf, 0, count, charsetName);
+
+		if (segmentIndex == 0) {
+			return new String(segments[0], 0, count, charsetName);
+		}
+
+		return new String(toByteArray(), charsetName);
 	}
 
 	@Deprecated
 	public synchronized String toString(int hibyte) {
-		return new String(buf, hibyte, 0, count);
+		return new String(toByteArray(), hibyte, 0, count);
 	}
 
-	public void close() throws IOException {
-		buf = null;
+	public synchronized void close() throws IOException {
+		segments = null;
 		this.closed = true;
 	}
 
+	/**
+	 * 关闭输出流，如果分段是从RASPBufferPool中获取的则归还到缓存池，归还后不能再读取缓存数据，
+	 * 已创建的输入流也会失效（已调用getBuf的输入流读取的是复制的数据，不受影响）
+	 */
+	public synchronized void release() {
+		byte[][] segments = this.segments;
+
+		this.segments = null;
+		this.closed = true;
+
+		if (inputStreams != null) {
+			for (RASPByteArrayInputStream in : inputStreams) {
+				in.invalidate();
+			}
+
+			inputStreams = null;
+		}
+
+		if (pooled && segments != null) {
+			for (int i = 0; i < segmentCount; i++) {
+				RASPBufferPool.release(segments[i]);
+			}
+		}
+	}
+
 }
@@ -1,18 +1,30 @@
 package org.javaweb.rasp.commons.cache;
 
+import org.javaweb.rasp.commons.RASPParameterSerialization;
 import org.javaweb.rasp.commons.RASPSerialization;
+import org.javaweb.rasp.commons.attack.RASPPosition;
 import org.javaweb.rasp.commons.context.RASPServletRequestContext;
+import org.javaweb.rasp.commons.decoder.RASPJsonStreamDecoder;
+import org.javaweb.rasp.commons.decoder.RASPParameterListener;
+import org.javaweb.rasp.commons.decoder.RASPStreamDecoder;
+import org.javaweb.rasp.commons.decoder.RASPXmlStreamDecoder;
+import org.javaweb.rasp.commons.utils.GZipBase64Encoder;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.rasp.proxy.loader.HookResult;
+import java.util.ArrayList;
+import java.util.List;
 
 import static java.rasp.proxy.loader.HookResultType.THROW;
-import static org.javaweb.rasp.commons.utils.EncryptUtils.base64Encode;
-import static org.javaweb.rasp.commons.utils.IOUtils.covertGZipBytes;
-import static org.javaweb.rasp.commons.utils.IOUtils.toByteArray;
+import static org.javaweb.rasp.commons.attack.RASPPosition.JSON;
+import static org.javaweb.rasp.commons.attack.RASPPosition.XML;
+import static org.javaweb.rasp.commons.cache.RASPBufferPool.MAX_CHUNK_SIZE;
+import static org.javaweb.rasp.commons.config.RASPConfiguration.AGENT_LOGGER;
+import static org.javaweb.rasp.commons.config.RASPConfiguration.AGENT_PROPERTIES;
+import static org.javaweb.rasp.loader.AgentConstants.AGENT_NAME;
 
-public class RASPOutputStreamCache extends OutputStream {
+public class RASPOutputStreamCache extends OutputStream implements RASPParameterListener {
 
 	private final RASPSerialization serialization;
 
@@ -38,7 +50,54 @@ public class RASPOutputStreamCache extends OutputStream {
 	 */
 	private static final int DEFAULT_MAX_SIZE = 10 * 1024 * 1024;
 
-	private final RASPByteArrayOutputStream cachedStream = new RASPByteArrayOutputStream();
+	/**
+	 * 未知请求长度时第一个缓存分段的大小
+	 */
+	private static final int DEFAULT_SEGMENT_SIZE = 4096;
+
+	/**
+	 * 缓存流，分段从RASPBufferPool中获取，请求结束时归还
+	 */
+	private final RASPByteArrayOutputStream cachedStream;
+
+	/**
+	 * 内存缓存阈值，缓存的数据超过该值后写入溢出文件，0表示不写入溢出文件
+	 */
+	private final int spillThreshold = AGENT_PROPERTIES.getStreamCacheSpillThreshold();
+
+	/**
+	 * 溢出文件，缓存数据超过内存缓存阈值时创建，请求结束时删除
+	 */
+	private RASPSpillFile spillFile;
+
+	/**
+	 * 溢出文件是否创建失败，创建失败后继续使用内存缓存
+	 */
+	private boolean spillFailed;
+
+	/**
+	 * 溢出文件已达到全局最大值导致丢弃了部分数据，之后不再缓存和解析当前请求的数据，
+	 * 避免缓存的请求体中间缺少部分数据（攻击者可以利用缺失的数据拆分攻击参数绕过检测），
+	 * 不完整的请求体不会反序列化检测，配置了stream_cache.truncate_block时阻断请求
+	 */
+	private boolean truncated;
+
+	/**
+	 * JSON/XML请求体流式解析器，写入缓存时同步解析请求参数，
+	 * 只在开启stream_cache.stream_decode且反序列化实现只提取请求参数（RASPParameterSerialization）时使用，
+	 * 流式解析完成时代替deserialization，同一请求体不会被检测两次
+	 */
+	private RASPStreamDecoder streamDecoder;
+
+	/**
+	 * 流式解析出的参数位置：JSON/XML
+	 */
+	private RASPPosition streamPosition;
+
+	/**
+	 * 流式解析缓存的请求参数，流式解析失败需要调用deserialization时删除，避免同一参数被缓存两次
+	 */
+	private final List<RASPCachedParameter> streamParameters = new ArrayList<RASPCachedParameter>();
 
 	public RASPOutputStreamCache(RASPServletRequestContext context) {
 		this.serialization = null;
@@ -49,6 +108,8 @@ public class RASPOutputStreamCache extends OutputStream {
 		} else {
 			this.maxCacheSize = DEFAULT_MAX_SIZE;
 		}
+
+		this.cachedStream = new RASPByteArrayOutputStream(DEFAULT_SEGMENT_SIZE, true);
 	}
 
 	/**
@@ -65,17 +126,34 @@ public class RASPOutputStreamCache extends OutputStream {
 		// 只有API请求时才需要反序列化
 		if (context.isWebApiRequest()) {
 			this.serialization = serialization;
+
+			// JSON/XML请求体在写入时流式解析，无需等待请求体缓存完成
+			if (serialization instanceof RASPParameterSerialization && AGENT_PROPERTIES.isStreamCacheStreamDecode()) {
+				if (context.isJsonRequest()) {
+					this.streamDecoder = new RASPJsonStreamDecoder(this);
+					this.streamPosition = JSON;
+				} else if (context.isXmlRequest()) {
+					this.streamDecoder = new RASPXmlStreamDecoder(this);
+					this.streamPosition = XML;
+				}
+			}
 		} else {
 			this.serialization = null;
 
 			// 非API请求必须限制缓存流字节数，缓存字节数最大值那么必须大于0，小于10M
 			if (contentLength == -1 || contentLength > DEFAULT_MAX_SIZE) {
 				this.maxCacheSize = maxCacheSize * 1024 * 1024;
+				this.cachedStream = new RASPByteArrayOutputStream(DEFAULT_SEGMENT_SIZE, true);
 				return;
 			}
 		}
 
 		this.maxCacheSize = contentLength;
+
+		// 已知请求长度时第一个分段直接按请求长度分配
+		int segmentSize = contentLength > 0 ? Math.min(contentLength, MAX_CHUNK_SIZE) : DEFAULT_SEGMENT_SIZE;
+
+		this.cachedStream = new RASPByteArrayOutputStream(segmentSize, true);
 	}
 
 	/**
@@ -84,25 +162,144 @@ public class RASPOutputStreamCache extends OutputStream {
 	 * @return 缓存输入流
 	 */
 	public RASPByteArrayInputStream getInputStream() {
+		// 缓存已归还到缓存池
+		if (cachedStream.closed) {
+			return null;
+		}
+
+		if (spillFile != null) {
+			try {
+				return cachedStream.toRASPByteArrayInputStream(spillFile.map());
+			} catch (IOException e) {
+				AGENT_LOGGER.error(AGENT_NAME + "读取流缓存文件异常：" + e, e);
+			}
+		}
+
 		return cachedStream.toRASPByteArrayInputStream();
 	}
 
+	/**
+	 * 检测写入len个字节时是否需要写入溢出文件，需要时创建溢出文件
+	 *
+	 * @return 可写入内存缓存的字节数
+	 */
+	private int memoryLength(int len) {
+		if (spillThreshold <= 0 || spillFailed || cachedBufferSize + len <= spillThreshold) {
+			return len;
+		}
+
+		if (spillFile == null) {
+			spillFile = RASPSpillFile.create();
+
+			if (spillFile == null) {
+				spillFailed = true;
+				return len;
+			}
+		}
+
+		return Math.max(0, spillThreshold - cachedBufferSize);
+	}
+
 	@Override
 	public void write(int b) throws IOException {
 		// 检测当前缓存的byte是否已经超过最大的缓存值
-		if (maxCacheSize > 0 && cachedBufferSize > maxCacheSize) {
+		if (truncated || (maxCacheSize > 0 && cachedBufferSize >= maxCacheSize)) {
+			return;
+		}
+
+		if (memoryLength(1) == 1) {
+			cachedStream.write(b);
+		} else if (!spillFile.write(b)) {
+			// 溢出文件已达到全局最大值
+			truncate();
 			return;
 		}
 
-		cachedStream.write(b);
 		cachedBufferSize++;
 
+		if (streamDecoder != null) {
+			streamDecoder.write(b);
+		}
+
+		// 检测缓存流是否达到了最大值
+		if (cachedBufferSize == maxCacheSize) {
+			completed();
+		}
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if ((off < 0) || (off > b.length) || (len < 0) || ((off + len) - b.length > 0)) {
+			throw new IndexOutOfBoundsException();
+		}
+
+		// 只缓存未超过最大缓存值的部分
+		if (maxCacheSize > 0) {
+			len = Math.min(len, maxCacheSize - cachedBufferSize);
+		}
+
+		if (truncated || len <= 0) {
+			return;
+		}
+
+		int memoryLength = memoryLength(len);
+
+		if (memoryLength > 0) {
+			cachedStream.write(b, off, memoryLength);
+		}
+
+		// 超出内存缓存阈值的部分写入溢出文件，溢出文件已达到全局最大值时只写入未超出的部分，之后不再缓存
+		if (memoryLength < len) {
+			int spillLength = len - memoryLength;
+			int written     = spillFile.write(b, off + memoryLength, spillLength);
+
+			if (written < spillLength) {
+				cachedBufferSize += memoryLength + written;
+				truncate();
+				return;
+			}
+		}
+
+		cachedBufferSize += len;
+
+		if (streamDecoder != null) {
+			streamDecoder.write(b, off, len);
+		}
+
 		// 检测缓存流是否达到了最大值
 		if (cachedBufferSize == maxCacheSize) {
 			completed();
 		}
 	}
 
+	/**
+	 * 丢弃了部分数据，停止缓存和流式解析，缓存的请求体只包含丢弃数据之前的部分
+	 *
+	 * @throws IOException 配置了stream_cache.truncate_block且非静默模式时抛出异常阻断请求
+	 */
+	private void truncate() throws IOException {
+		this.truncated = true;
+
+		if (streamDecoder != null) {
+			streamDecoder.fail();
+		}
+
+		AGENT_LOGGER.warn("{}请求体缓存溢出文件已达到最大值，停止缓存请求体，已缓存：{}字节", AGENT_NAME, cachedBufferSize);
+
+		if (serialization != null && AGENT_PROPERTIES.isStreamCacheTruncateBlock() && !context.isSilent()) {
+			throw new IOException("Request body exceeds the stream cache limit.");
+		}
+	}
+
+	/**
+	 * 缓存是否因溢出文件达到全局最大值而被截断
+	 *
+	 * @return 是否截断
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
 	@Override
 	public void close() throws IOException {
 		completed();
@@ -110,22 +307,31 @@ public class RASPOutputStreamCache extends OutputStream {
 
 	public byte[] toBytes() {
 		try {
-			if (this.getInputStream() != null) {
-				return toByteArray(this.getInputStream());
+			if (spillFile != null) {
+				RASPByteArrayInputStream in = getInputStream();
+
+				return in != null ? in.getBuf() : null;
 			}
+
+			// 直接按分段复制缓存数据，无需再通过输入流读取
+			return cachedStream.toByteArray();
 		} catch (Exception ignored) {
 		}
 
 		return null;
 	}
 
+	/**
+	 * 获取GZIP压缩并Base64编码后的缓存数据
+	 *
+	 * @return Base64字符串，读取缓存失败时返回null
+	 */
 	public String toBase64() {
 		try {
-			if (this.getInputStream() != null) {
-				byte[] outputStream = covertGZipBytes(this.getInputStream());
+			RASPByteArrayInputStream in = getInputStream();
 
-				// 输出流
-				return new String(base64Encode(outputStream));
+			if (in != null) {
+				return GZipBase64Encoder.encode(in, AGENT_PROPERTIES.getStreamCacheCompressLevel());
 			}
 		} catch (Exception ignored) {
 		}
@@ -133,6 +339,61 @@ public class RASPOutputStreamCache extends OutputStream {
 		return null;
 	}
 
+	/**
+	 * GZIP压缩并Base64编码缓存数据，编码结果直接写入out（如：日志记录的Writer），不创建中间字符串
+	 *
+	 * @param out 输出对象
+	 * @return 是否写入成功
+	 */
+	public boolean toBase64(Appendable out) {
+		try {
+			RASPByteArrayInputStream in = getInputStream();
+
+			if (in != null) {
+				GZipBase64Encoder.encode(in, out, AGENT_PROPERTIES.getStreamCacheCompressLevel());
+
+				return true;
+			}
+		} catch (Exception ignored) {
+		}
+
+		return false;
+	}
+
+	/**
+	 * 请求结束时归还缓存流的分段到缓存池并删除溢出文件，归还后不再缓存写入的数据
+	 */
+	public void release() {
+		cachedStream.release();
+
+		if (spillFile != null) {
+			spillFile.release();
+		}
+	}
+
+	/**
+	 * 缓存流式解析出的请求参数并检测参数合法性
+	 *
+	 * @param key   参数路径
+	 * @param value 参数值
+	 * @throws IOException 检测到有攻击且非静默模式时抛出异常阻断程序逻辑
+	 */
+	@Override
+	public void onParameter(String key, String value) throws IOException {
+		RASPCachedParameter                   parameter  = new RASPCachedParameter(key, value, streamPosition);
+		RASPParameterSet<RASPCachedParameter> parameters = context.getCachedRequest().getCachedParameter();
+
+		if (!parameters.contains(parameter)) {
+			streamParameters.add(parameter);
+		}
+
+		HookResult<?> result = parameters.cacheParameter(parameter, context);
+
+		if (result != null && result.getRASPHookResultType() == THROW && !context.isSilent()) {
+			throw new IOException(result.getException().getMessage());
+		}
+	}
+
 	public void completed() throws IOException {
 		// 检测是否设置了反序列化实现类，是否已反序列化，非API请求不需要反序列化
 		if (serialization == null || deserialized || !context.isWebApiRequest()) {
@@ -142,6 +403,27 @@ public class RASPOutputStreamCache extends OutputStream {
 		// 修改序列化状态为true
 		deserialized = true;
 
+		// 请求体缓存不完整，不反序列化（缺失的数据可能被用来拆分攻击参数）
+		if (truncated) {
+			AGENT_LOGGER.warn("{}请求体缓存不完整，跳过反序列化检测：{}", AGENT_NAME, context.getRequestURI());
+			return;
+		}
+
+		// 流式解析完成时已缓存并检测了所有请求参数，无需再调用deserialization
+		if (streamDecoder != null) {
+			streamDecoder.end();
+
+			if (streamDecoder.isCompleted()) {
+				return;
+			}
+
+			// 流式解析失败，删除流式解析缓存的请求参数，由deserialization重新缓存
+			if (!streamParameters.isEmpty()) {
+				context.getCachedRequest().getCachedParameter().removeParameters(streamParameters);
+				streamParameters.clear();
+			}
+		}
+
 		HookResult<?> result = serialization.deserialization(context, getInputStream());
 
 		// 检测到有攻击且非静默模式需要抛出异常阻断程序逻辑
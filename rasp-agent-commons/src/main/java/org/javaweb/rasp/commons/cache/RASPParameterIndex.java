@@ -0,0 +1,377 @@
+package org.javaweb.rasp.commons.cache;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.fill;
+
+/**
+ * 请求参数值索引，缓存参数时增量更新，供各类Sink防御模块（命令执行、SQL、文件、SSRF等）查询参数值，避免遍历所有请求参数。
+ * <p>
+ * 索引分两部分：参数值 -> 参数的哈希表，用于检测参数值和Sink参数完全一致；
+ * 所有参数值组成的多模式匹配自动机（Aho-Corasick），用于检测Sink参数中包含了哪些请求参数值，
+ * 自动机在有新参数且需要查询时才重新创建，查询时间只和Sink参数长度有关，与请求参数数量无关。
+ * <p>
+ * 和RASPRequestCached一样，索引只在当前请求线程中使用，非线程安全。
+ */
+public class RASPParameterIndex {
+
+	/**
+	 * 参数值 -> 参数值序号
+	 */
+	private final Map<String, Integer> valueIndex = new HashMap<String, Integer>();
+
+	/**
+	 * 按参数值序号存储的参数值
+	 */
+	private final List<String> values = new ArrayList<String>();
+
+	/**
+	 * 按参数值序号存储的参数列表，同一个参数值可能出现在多个参数中
+	 */
+	private final List<List<RASPCachedParameter>> parameters = new ArrayList<List<RASPCachedParameter>>();
+
+	/**
+	 * 多模式匹配自动机，参数值发生变化后需要重新创建
+	 */
+	private Automaton automaton;
+
+	/**
+	 * 添加参数到索引，忽略空的参数值
+	 *
+	 * @param parameter 请求参数
+	 */
+	public void add(RASPCachedParameter parameter) {
+		for (String value : parameter.getValue()) {
+			if (value == null || value.length() == 0) {
+				continue;
+			}
+
+			Integer index = valueIndex.get(value);
+
+			if (index == null) {
+				index = values.size();
+
+				valueIndex.put(value, index);
+				values.add(value);
+				parameters.add(new ArrayList<RASPCachedParameter>(1));
+
+				// 有新的参数值，下次查询时重新创建自动机
+				automaton = null;
+			}
+
+			List<RASPCachedParameter> list = parameters.get(index);
+
+			if (!list.contains(parameter)) {
+				list.add(parameter);
+			}
+		}
+	}
+
+	/**
+	 * 使用参数集合重新创建索引
+	 *
+	 * @param parameters 请求参数集合
+	 */
+	public void rebuild(Collection<?> parameters) {
+		clear();
+
+		for (Object parameter : parameters) {
+			if (parameter instanceof RASPCachedParameter) {
+				add((RASPCachedParameter) parameter);
+			}
+		}
+	}
+
+	public void clear() {
+		valueIndex.clear();
+		values.clear();
+		parameters.clear();
+		automaton = null;
+	}
+
+	/**
+	 * 查找参数值和value完全一致的请求参数
+	 *
+	 * @param value 参数值，如：执行的系统命令
+	 * @return 请求参数列表，不存在时返回空列表
+	 */
+	public List<RASPCachedParameter> getParameters(String value) {
+		if (value != null) {
+			Integer index = valueIndex.get(value);
+
+			if (index != null) {
+				return Collections.unmodifiableList(parameters.get(index));
+			}
+		}
+
+		return Collections.emptyList();
+	}
+
+	/**
+	 * 检测是否有请求参数值和value完全一致
+	 *
+	 * @param value 参数值
+	 * @return 是否存在
+	 */
+	public boolean containsValue(String value) {
+		return value != null && valueIndex.containsKey(value);
+	}
+
+	/**
+	 * 查找参数值在text中出现过的请求参数（参数值是text的子串），每个参数只返回一次
+	 *
+	 * @param text Sink参数，如：SQL语句、文件路径、URL
+	 * @return 请求参数列表，不存在时返回空列表
+	 */
+	public List<RASPCachedParameter> findOccurrences(String text) {
+		if (text == null || values.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		BitSet                    matched = getAutomaton().match(text);
+		List<RASPCachedParameter> result  = new ArrayList<RASPCachedParameter>();
+
+		if (matched != null) {
+			for (int i = matched.nextSetBit(0); i >= 0; i = matched.nextSetBit(i + 1)) {
+				for (RASPCachedParameter parameter : parameters.get(i)) {
+					if (!result.contains(parameter)) {
+						result.add(parameter);
+					}
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * 检测text中是否包含了任意请求参数值
+	 *
+	 * @param text Sink参数
+	 * @return 是否包含
+	 */
+	public boolean containsOccurrence(String text) {
+		return text != null && !values.isEmpty() && getAutomaton().matchFirst(text) >= 0;
+	}
+
+	/**
+	 * 获取已索引的参数值数量
+	 *
+	 * @return 参数值数量
+	 */
+	public int size() {
+		return values.size();
+	}
+
+	private Automaton getAutomaton() {
+		if (automaton == null) {
+			automaton = new Automaton(values);
+		}
+
+		return automaton;
+	}
+
+	/**
+	 * Aho-Corasick自动机，状态转移使用开放寻址的哈希表存储（Key为状态和字符），
+	 * 避免每个状态创建子节点Map，创建后不再修改。
+	 */
+	private static final class Automaton {
+
+		private static final long EMPTY_KEY = -1L;
+
+		/**
+		 * 状态转移表，Key为(状态 << 16 | 字符)
+		 */
+		private final long[] keys;
+
+		private final int[] targets;
+
+		private final int mask;
+
+		/**
+		 * 失败跳转状态
+		 */
+		private final int[] fail;
+
+		/**
+		 * 状态对应的参数值序号，非终止状态为-1
+		 */
+		private final int[] output;
+
+		/**
+		 * 沿失败跳转链找到的下一个终止状态，没有时为0
+		 */
+		private final int[] outputLink;
+
+		Automaton(List<String> patterns) {
+			int maxStates = 1;
+
+			for (String pattern : patterns) {
+				maxStates += pattern.length();
+			}
+
+			int capacity = Integer.highestOneBit(Math.max(2, maxStates) * 2 - 1) * 2;
+
+			this.keys = new long[capacity];
+			this.targets = new int[capacity];
+			this.mask = capacity - 1;
+			this.fail = new int[maxStates];
+			this.output = new int[maxStates];
+			this.outputLink = new int[maxStates];
+
+			fill(keys, EMPTY_KEY);
+			fill(output, -1);
+
+			// 创建过程中使用的状态字符和子状态链表，用于广度优先计算失败跳转
+			char[] edges       = new char[maxStates];
+			int[]  firstChild  = new int[maxStates];
+			int[]  nextSibling = new int[maxStates];
+			int    stateCount  = 1;
+
+			for (int i = 0; i < patterns.size(); i++) {
+				String pattern = patterns.get(i);
+				int    state   = 0;
+
+				for (int j = 0; j < pattern.length(); j++) {
+					char c    = pattern.charAt(j);
+					int  next = next(state, c);
+
+					if (next < 0) {
+						next = stateCount++;
+						put(state, c, next);
+
+						edges[next] = c;
+						nextSibling[next] = firstChild[state];
+						firstChild[state] = next;
+					}
+
+					state = next;
+				}
+
+				output[state] = i;
+			}
+
+			int[] queue = new int[stateCount];
+			int   head  = 0;
+			int   tail  = 0;
+
+			for (int child = firstChild[0]; child != 0; child = nextSibling[child]) {
+				queue[tail++] = child;
+			}
+
+			while (head < tail) {
+				int state = queue[head++];
+
+				for (int child = firstChild[state]; child != 0; child = nextSibling[child]) {
+					char c = edges[child];
+					int  f = fail[state];
+					int  next;
+
+					while ((next = next(f, c)) < 0 && f != 0) {
+						f = fail[f];
+					}
+
+					int failState = next >= 0 ? next : 0;
+
+					fail[child] = failState;
+					outputLink[child] = output[failState] >= 0 ? failState : outputLink[failState];
+					queue[tail++] = child;
+				}
+			}
+		}
+
+		/**
+		 * 匹配text中出现的所有参数值
+		 *
+		 * @return 匹配到的参数值序号，未匹配时返回null
+		 */
+		BitSet match(String text) {
+			BitSet matched = null;
+			int    state   = 0;
+
+			for (int i = 0; i < text.length(); i++) {
+				state = step(state, text.charAt(i));
+
+				for (int s = output[state] >= 0 ? state : outputLink[state]; s != 0; s = outputLink[s]) {
+					if (matched == null) {
+						matched = new BitSet(output.length);
+					}
+
+					matched.set(output[s]);
+				}
+			}
+
+			return matched;
+		}
+
+		/**
+		 * 匹配text中第一个出现的参数值
+		 *
+		 * @return 参数值序号，未匹配时返回-1
+		 */
+		int matchFirst(String text) {
+			int state = 0;
+
+			for (int i = 0; i < text.length(); i++) {
+				state = step(state, text.charAt(i));
+
+				int s = output[state] >= 0 ? state : outputLink[state];
+
+				if (s != 0) {
+					return output[s];
+				}
+			}
+
+			return -1;
+		}
+
+		private int step(int state, char c) {
+			int next;
+
+			while ((next = next(state, c)) < 0 && state != 0) {
+				state = fail[state];
+			}
+
+			return next >= 0 ? next : 0;
+		}
+
+		private int next(int state, char c) {
+			long key   = ((long) state << 16) | c;
+			int  index = hash(key) & mask;
+
+			for (long k; (k = keys[index]) != EMPTY_KEY; index = (index + 1) & mask) {
+				if (k == key) {
+					return targets[index];
+				}
+			}
+
+			return -1;
+		}
+
+		private void put(int state, char c, int target) {
+			long key   = ((long) state << 16) | c;
+			int  index = hash(key) & mask;
+
+			while (keys[index] != EMPTY_KEY) {
+				index = (index + 1) & mask;
+			}
+
+			keys[index] = key;
+			targets[index] = target;
+		}
+
+		private static int hash(long key) {
+			long h = key * 0x9E3779B97F4A7C15L;
+
+			return (int) (h ^ (h >>> 32));
+		}
+
+	}
+
+}
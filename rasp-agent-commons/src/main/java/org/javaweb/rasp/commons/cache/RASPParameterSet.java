@@ -4,6 +4,7 @@ import org.javaweb.rasp.commons.RASPParameterFilter;
 import org.javaweb.rasp.commons.context.RASPContext;
 
 import java.rasp.proxy.loader.HookResult;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -17,6 +18,19 @@ public class RASPParameterSet<E> extends HashSet<E> {
 
 	private static final List<RASPParameterFilter> PARAMETER_FILTER = new CopyOnWriteArrayList<RASPParameterFilter>();
 
+	/**
+	 * 参数值索引，添加参数时同步更新
+	 */
+	private final RASPParameterIndex parameterIndex;
+
+	public RASPParameterSet() {
+		this(null);
+	}
+
+	public RASPParameterSet(RASPParameterIndex parameterIndex) {
+		this.parameterIndex = parameterIndex;
+	}
+
 	public static void addParameterFilter(String className) {
 		try {
 			Class<?> clazz = Class.forName(className);
@@ -54,4 +68,53 @@ public class RASPParameterSet<E> extends HashSet<E> {
 		return DEFAULT_STRING_ARRAY_RESULT;
 	}
 
+	@Override
+	public boolean add(E e) {
+		boolean added = super.add(e);
+
+		if (added && parameterIndex != null && e instanceof RASPCachedParameter) {
+			parameterIndex.add((RASPCachedParameter) e);
+		}
+
+		return added;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		boolean removed = super.remove(o);
+
+		// 删除参数的情况很少，直接重新创建索引
+		if (removed && parameterIndex != null) {
+			parameterIndex.rebuild(this);
+		}
+
+		return removed;
+	}
+
+	/**
+	 * 批量删除参数，删除后只重新创建一次索引
+	 *
+	 * @param parameters 需要删除的参数
+	 */
+	public void removeParameters(Collection<?> parameters) {
+		boolean removed = false;
+
+		for (Object parameter : parameters) {
+			removed |= super.remove(parameter);
+		}
+
+		if (removed && parameterIndex != null) {
+			parameterIndex.rebuild(this);
+		}
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+
+		if (parameterIndex != null) {
+			parameterIndex.clear();
+		}
+	}
+
 }
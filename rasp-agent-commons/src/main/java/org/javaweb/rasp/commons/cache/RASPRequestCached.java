@@ -37,11 +37,16 @@ public class RASPRequestCached {
 	 */
 	private String cachedXML;
 
+	/**
+	 * 请求参数值索引，缓存参数时自动更新
+	 */
+	private final RASPParameterIndex parameterIndex = new RASPParameterIndex();
+
 	/**
 	 * RASP Http的参数缓存
 	 */
 	private final RASPParameterSet<RASPCachedParameter> raspCachedParameterList =
-			new RASPParameterSet<RASPCachedParameter>();
+			new RASPParameterSet<RASPCachedParameter>(parameterIndex);
 
 	public RASPOutputStreamCache getInputStreamCache() {
 		return inputStreamCache;
@@ -76,6 +81,15 @@ public class RASPRequestCached {
 		return raspCachedParameterList;
 	}
 
+	/**
+	 * 获取请求参数值索引，用于按参数值查找请求参数，或查找Sink参数中出现过的请求参数
+	 *
+	 * @return 请求参数值索引
+	 */
+	public RASPParameterIndex getParameterIndex() {
+		return parameterIndex;
+	}
+
 	/**
 	 * 缓存SQL查询语句,用于避免SQL重复验证问题
 	 *
@@ -98,15 +112,17 @@ public class RASPRequestCached {
 	}
 
 	/**
-	 * 关闭RASP请求缓存对象，同时清除缓存数据
+	 * 关闭RASP请求缓存对象，同时清除缓存数据，缓存流的分段归还到RASPBufferPool
 	 */
 	public void close() {
 		if (inputStreamCache != null) {
 			closeQuietly(inputStreamCache);
+			inputStreamCache.release();
 		}
 
 		if (outputStreamCache != null) {
 			closeQuietly(outputStreamCache);
+			outputStreamCache.release();
 		}
 	}
 
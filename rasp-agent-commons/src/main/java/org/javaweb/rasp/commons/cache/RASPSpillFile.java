@@ -0,0 +1,278 @@
+package org.javaweb.rasp.commons.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static org.javaweb.rasp.commons.config.RASPConfiguration.AGENT_LOGGER;
+import static org.javaweb.rasp.commons.config.RASPConfiguration.AGENT_PROPERTIES;
+import static org.javaweb.rasp.commons.config.RASPConfiguration.RASP_DATABASE_DIRECTORY;
+import static org.javaweb.rasp.commons.utils.IOUtils.closeQuietly;
+import static org.javaweb.rasp.loader.AgentConstants.AGENT_NAME;
+
+/**
+ * 流缓存溢出文件，RASPOutputStreamCache缓存的数据超过内存阈值后，超出部分写入RASP_DATABASE_DIRECTORY下的临时文件，
+ * 读取时使用内存映射的方式读取文件，请求结束时删除临时文件。
+ * <p>
+ * Windows下存在内存映射的文件无法删除（映射只能在GC回收后释放），所以Windows下读取时直接将文件读入内存。
+ * 删除失败的临时文件不使用deleteOnExit（每次调用都会添加到JVM全局的列表中），而是在下次启动时删除。
+ * <p>
+ * 所有溢出文件的总字节数不会超过stream_cache.max_spill_size，超过后不再缓存写入的数据。
+ */
+public class RASPSpillFile {
+
+	/**
+	 * 写入缓冲区大小
+	 */
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * 溢出文件前缀
+	 */
+	private static final String FILE_PREFIX = "stream-cache-";
+
+	/**
+	 * 当前所有溢出文件的总字节数
+	 */
+	private static final AtomicLong SPILLED_BYTES = new AtomicLong();
+
+	/**
+	 * 是否使用内存映射读取溢出文件
+	 */
+	private static final boolean MEMORY_MAPPED = !System.getProperty("os.name", "").toLowerCase().startsWith("windows");
+
+	static {
+		deleteStaleFiles();
+	}
+
+	private final File file;
+
+	private final RandomAccessFile randomAccessFile;
+
+	private final FileChannel channel;
+
+	/**
+	 * 写入缓冲区，避免单字节写入时每次都写文件
+	 */
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+	/**
+	 * 已写入的字节数（包含写入缓冲区中的字节）
+	 */
+	private int size;
+
+	/**
+	 * 已映射的文件数据，写入新数据后需要重新映射
+	 */
+	private ByteBuffer mapped;
+
+	private boolean released;
+
+	private RASPSpillFile(File file) throws IOException {
+		this.file = file;
+		this.randomAccessFile = new RandomAccessFile(file, "rw");
+		this.channel = randomAccessFile.getChannel();
+	}
+
+	/**
+	 * 删除上次运行时未能删除的溢出文件
+	 */
+	private static void deleteStaleFiles() {
+		File[] files = RASP_DATABASE_DIRECTORY.listFiles();
+
+		if (files == null) {
+			return;
+		}
+
+		for (File file : files) {
+			if (file.getName().startsWith(FILE_PREFIX) && file.isFile() && !file.delete()) {
+				AGENT_LOGGER.warn("{}删除流缓存文件失败：{}", AGENT_NAME, file);
+			}
+		}
+	}
+
+	/**
+	 * 创建溢出文件
+	 *
+	 * @return 溢出文件，创建失败时返回null
+	 */
+	public static RASPSpillFile create() {
+		File file = null;
+
+		try {
+			file = File.createTempFile(FILE_PREFIX, ".tmp", RASP_DATABASE_DIRECTORY);
+
+			return new RASPSpillFile(file);
+		} catch (IOException e) {
+			AGENT_LOGGER.error(AGENT_NAME + "创建流缓存文件异常：" + e, e);
+
+			if (file != null && !file.delete()) {
+				AGENT_LOGGER.warn("{}删除流缓存文件失败：{}", AGENT_NAME, file);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * 写入数据，超过全局溢出文件大小限制时只写入未超出的部分
+	 *
+	 * @param b   数据
+	 * @param off 偏移量
+	 * @param len 长度
+	 * @return 实际写入的字节数
+	 */
+	public synchronized int write(byte[] b, int off, int len) throws IOException {
+		if (released) {
+			return 0;
+		}
+
+		len = reserve(len);
+
+		for (int remaining = len; remaining > 0; ) {
+			if (!buffer.hasRemaining()) {
+				flush();
+			}
+
+			int n = Math.min(buffer.remaining(), remaining);
+
+			buffer.put(b, off, n);
+			off += n;
+			remaining -= n;
+		}
+
+		size += len;
+
+		return len;
+	}
+
+	/**
+	 * 写入单个字节
+	 *
+	 * @param b 字节
+	 * @return 是否写入成功
+	 */
+	public synchronized boolean write(int b) throws IOException {
+		if (released || reserve(1) == 0) {
+			return false;
+		}
+
+		if (!buffer.hasRemaining()) {
+			flush();
+		}
+
+		buffer.put((byte) b);
+		size++;
+
+		return true;
+	}
+
+	/**
+	 * 从全局溢出字节数中申请len个字节
+	 *
+	 * @return 实际申请到的字节数
+	 */
+	private static int reserve(int len) {
+		long max = AGENT_PROPERTIES.getStreamCacheMaxSpillSize();
+
+		while (true) {
+			long spilled = SPILLED_BYTES.get();
+			int  n       = (int) Math.max(0, Math.min(len, max - spilled));
+
+			if (n == 0 || SPILLED_BYTES.compareAndSet(spilled, spilled + n)) {
+				return n;
+			}
+		}
+	}
+
+	private void flush() throws IOException {
+		buffer.flip();
+
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+
+		buffer.clear();
+	}
+
+	/**
+	 * 获取溢出文件的只读内存映射（Windows下为读入内存的文件数据），未写入新数据时重复使用已有的映射
+	 *
+	 * @return 文件数据
+	 */
+	public synchronized ByteBuffer map() throws IOException {
+		if (released) {
+			throw new IOException("Stream cache file released: " + file);
+		}
+
+		if (mapped == null || mapped.capacity() != size) {
+			if (buffer.position() > 0) {
+				flush();
+			}
+
+			mapped = MEMORY_MAPPED ? channel.map(READ_ONLY, 0, size) : read();
+		}
+
+		// 每个输入流使用独立的读取位置
+		return mapped.duplicate();
+	}
+
+	/**
+	 * 读取溢出文件的所有数据
+	 */
+	private ByteBuffer read() throws IOException {
+		ByteBuffer data = ByteBuffer.allocate(size);
+
+		while (data.hasRemaining()) {
+			if (channel.read(data, data.position()) < 0) {
+				throw new IOException("Unexpected end of stream cache file: " + file);
+			}
+		}
+
+		data.flip();
+
+		return data;
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * 关闭并删除溢出文件，已映射的数据在GC回收后释放（主动解除映射时其他线程继续读取会导致JVM崩溃）
+	 */
+	public synchronized void release() {
+		if (released) {
+			return;
+		}
+
+		released = true;
+		mapped = null;
+
+		SPILLED_BYTES.addAndGet(-size);
+
+		closeQuietly(randomAccessFile);
+
+		if (!file.delete()) {
+			AGENT_LOGGER.warn("{}删除流缓存文件失败：{}", AGENT_NAME, file);
+		}
+	}
+
+	/**
+	 * 获取当前所有溢出文件的总字节数
+	 *
+	 * @return 字节数
+	 */
+	public static long getSpilledBytes() {
+		return SPILLED_BYTES.get();
+	}
+
+}
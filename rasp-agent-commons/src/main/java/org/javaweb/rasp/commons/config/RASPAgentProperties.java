@@ -1,9 +1,13 @@
 package org.javaweb.rasp.commons.config;
 
+import org.javaweb.rasp.commons.log.RASPLogEncryptMode;
 import org.javaweb.rasp.commons.logback.core.util.FileSize;
+import org.javaweb.rasp.commons.sync.RASPOverflowPolicy;
 
 import java.util.concurrent.TimeUnit;
 
+import static java.util.zip.Deflater.BEST_COMPRESSION;
+import static java.util.zip.Deflater.DEFAULT_COMPRESSION;
 import static org.javaweb.rasp.commons.constants.RASPConfigConstants.*;
 import static org.javaweb.rasp.commons.constants.RASPConstants.DEFAULT_PROTECTED_PACKAGE_REGEXP;
 import static org.javaweb.rasp.commons.constants.RASPConstants.JAVASSIST;
@@ -16,6 +20,8 @@ public class RASPAgentProperties extends RASPProperties {
 
 	private String rc4Key;
 
+	private RASPLogEncryptMode logEncryptMode;
+
 	private String connectKey;
 
 	private String apiUrl;
@@ -34,14 +40,99 @@ public class RASPAgentProperties extends RASPProperties {
 
 	private String proxyIpHeader;
 
+	private volatile RASPCidrTrie trustedProxies = RASPCidrTrie.EMPTY;
+
 	private String logLevel;
 
 	private String version;
 
 	private String logBufferSize;
 
+	private int logQueueSize;
+
+	private RASPOverflowPolicy logQueueOverflowPolicy;
+
+	private int logQueueBlockTimeout;
+
+	private int logQueueSampleRate;
+
+	private long bufferPoolMaxSize;
+
+	private int streamCacheSpillThreshold;
+
+	private long streamCacheMaxSpillSize;
+
+	private boolean streamCacheTruncateBlock;
+
+	private boolean streamCacheStreamDecode;
+
+	private int streamCacheCompressLevel;
+
+	private boolean binaryLogFormat;
+
+	private int logBlockSize;
+
+	private boolean accessLogAggregate;
+
+	private int accessLogAggregateInterval;
+
+	private int accessLogAggregateMaxKeys;
+
+	private int attackLogCoalesceWindow;
+
+	private int attackLogCoalesceMaxKeys;
+
+	private int attackLogCoalesceSamples;
+
+	private int attackLogTraceDepth;
+
 	private static final String DEFAULT_BUFFER_SIZE = "10MB";
 
+	/**
+	 * 默认流缓存池最大缓存字节数
+	 */
+	private static final String DEFAULT_BUFFER_POOL_SIZE = "32MB";
+
+	/**
+	 * 默认流缓存内存阈值，默认不写入临时文件
+	 */
+	private static final String DEFAULT_SPILL_THRESHOLD = "0";
+
+	/**
+	 * 默认流缓存临时文件最大总字节数
+	 */
+	private static final String DEFAULT_MAX_SPILL_SIZE = "512MB";
+
+	/**
+	 * 默认二进制日志块大小
+	 */
+	private static final String DEFAULT_LOG_BLOCK_SIZE = "64KB";
+
+	/**
+	 * 二进制日志块最大大小
+	 */
+	private static final long MAX_LOG_BLOCK_SIZE = 16 * 1024 * 1024;
+
+	/**
+	 * 默认内存中最大缓存的RASP日志数
+	 */
+	private static final int DEFAULT_LOG_QUEUE_SIZE = 1024;
+
+	/**
+	 * 默认聚合访问日志统计周期（秒）
+	 */
+	private static final int DEFAULT_ACCESS_LOG_AGGREGATE_INTERVAL = 60;
+
+	/**
+	 * 默认每个Web应用最大聚合统计项数
+	 */
+	private static final int DEFAULT_ACCESS_LOG_AGGREGATE_MAX_KEYS = 1000;
+
+	/**
+	 * 默认攻击日志合并最大缓存攻击数
+	 */
+	private static final int DEFAULT_ATTACK_LOG_COALESCE_MAX_KEYS = 1000;
+
 	/**
 	 * 最大间隔时间：1天
 	 */
@@ -54,6 +145,11 @@ public class RASPAgentProperties extends RASPProperties {
 		this.logVersion = configMap.getString(LOG_VERSION);
 		this.siteID = configMap.getString(SITE_ID);
 		this.rc4Key = configMap.getString(SYSTEM_RC4_KEY);
+
+		this.logEncryptMode = RASPLogEncryptMode.parse(
+				configMap.getString(SYSTEM_LOG_ENCRYPT_MODE), RASPLogEncryptMode.RC4
+		);
+
 		this.connectKey = configMap.getString(SYSTEM_CONNECT_KEY);
 		this.apiUrl = configMap.getString(SYSTEM_API_URL);
 		this.includeHookClassName = configMap.getString(INCLUDE_HOOK_CLASS_NAME);
@@ -78,6 +174,7 @@ public class RASPAgentProperties extends RASPProperties {
 		}
 
 		this.proxyIpHeader = configMap.getString(PROXY_IP_HEADER);
+		this.trustedProxies = new RASPCidrTrie(configMap.getArray(PROXY_IP_TRUSTED));
 		this.logLevel = configMap.getString(LOG_LEVEL);
 		this.version = configMap.getString(VERSION);
 		this.logBufferSize = configMap.getString(LOG_BUFFER_SIZE, DEFAULT_BUFFER_SIZE);
@@ -88,6 +185,111 @@ public class RASPAgentProperties extends RASPProperties {
 		} catch (IllegalArgumentException e) {
 			this.logBufferSize = DEFAULT_BUFFER_SIZE;
 		}
+
+		this.logQueueSize = configMap.getInt(LOG_QUEUE_SIZE, DEFAULT_LOG_QUEUE_SIZE);
+
+		if (logQueueSize < 1) {
+			this.logQueueSize = DEFAULT_LOG_QUEUE_SIZE;
+		}
+
+		this.logQueueOverflowPolicy = RASPOverflowPolicy.parse(
+				configMap.getString(LOG_QUEUE_OVERFLOW_POLICY), RASPOverflowPolicy.DROP_NEWEST
+		);
+
+		this.logQueueBlockTimeout = configMap.getInt(LOG_QUEUE_BLOCK_TIMEOUT, 10);
+		this.logQueueSampleRate = configMap.getInt(LOG_QUEUE_SAMPLE_RATE, 100);
+
+		try {
+			// 检测流缓存池大小设置是否正确
+			this.bufferPoolMaxSize = FileSize.valueOf(
+					configMap.getString(BUFFER_POOL_MAX_SIZE, DEFAULT_BUFFER_POOL_SIZE)
+			).getSize();
+		} catch (IllegalArgumentException e) {
+			this.bufferPoolMaxSize = FileSize.valueOf(DEFAULT_BUFFER_POOL_SIZE).getSize();
+		}
+
+		try {
+			// 检测流缓存内存阈值设置是否正确，阈值不能超过int最大值
+			long threshold = FileSize.valueOf(
+					configMap.getString(STREAM_CACHE_SPILL_THRESHOLD, DEFAULT_SPILL_THRESHOLD)
+			).getSize();
+
+			this.streamCacheSpillThreshold = (int) Math.min(threshold, Integer.MAX_VALUE);
+		} catch (IllegalArgumentException e) {
+			this.streamCacheSpillThreshold = (int) FileSize.valueOf(DEFAULT_SPILL_THRESHOLD).getSize();
+		}
+
+		try {
+			this.streamCacheMaxSpillSize = FileSize.valueOf(
+					configMap.getString(STREAM_CACHE_MAX_SPILL_SIZE, DEFAULT_MAX_SPILL_SIZE)
+			).getSize();
+		} catch (IllegalArgumentException e) {
+			this.streamCacheMaxSpillSize = FileSize.valueOf(DEFAULT_MAX_SPILL_SIZE).getSize();
+		}
+
+		this.streamCacheTruncateBlock = configMap.getBoolean(STREAM_CACHE_TRUNCATE_BLOCK, false);
+		this.streamCacheStreamDecode = configMap.getBoolean(STREAM_CACHE_STREAM_DECODE, false);
+
+		this.streamCacheCompressLevel = configMap.getInt(STREAM_CACHE_COMPRESS_LEVEL, DEFAULT_COMPRESSION);
+
+		// 检测压缩级别范围
+		if (streamCacheCompressLevel < DEFAULT_COMPRESSION || streamCacheCompressLevel > BEST_COMPRESSION) {
+			this.streamCacheCompressLevel = DEFAULT_COMPRESSION;
+		}
+
+		this.binaryLogFormat = "binary".equalsIgnoreCase(configMap.getString(LOG_FORMAT, "text").trim());
+
+		try {
+			long size = FileSize.valueOf(configMap.getString(LOG_BLOCK_SIZE, DEFAULT_LOG_BLOCK_SIZE)).getSize();
+
+			// 检测日志块大小范围
+			if (size < 1 || size > MAX_LOG_BLOCK_SIZE) {
+				size = FileSize.valueOf(DEFAULT_LOG_BLOCK_SIZE).getSize();
+			}
+
+			this.logBlockSize = (int) size;
+		} catch (IllegalArgumentException e) {
+			this.logBlockSize = (int) FileSize.valueOf(DEFAULT_LOG_BLOCK_SIZE).getSize();
+		}
+
+		this.accessLogAggregate = "aggregate".equalsIgnoreCase(configMap.getString(ACCESS_LOG_MODE, "detail").trim());
+
+		this.accessLogAggregateInterval = configMap.getInt(
+				ACCESS_LOG_AGGREGATE_INTERVAL, DEFAULT_ACCESS_LOG_AGGREGATE_INTERVAL
+		);
+
+		// 设置聚合访问日志统计周期范围
+		if (accessLogAggregateInterval < 1 || accessLogAggregateInterval > MAX_TIME_INTERVAL) {
+			this.accessLogAggregateInterval = DEFAULT_ACCESS_LOG_AGGREGATE_INTERVAL;
+		}
+
+		this.accessLogAggregateMaxKeys = configMap.getInt(
+				ACCESS_LOG_AGGREGATE_MAX_KEYS, DEFAULT_ACCESS_LOG_AGGREGATE_MAX_KEYS
+		);
+
+		if (accessLogAggregateMaxKeys < 1) {
+			this.accessLogAggregateMaxKeys = DEFAULT_ACCESS_LOG_AGGREGATE_MAX_KEYS;
+		}
+
+		this.attackLogCoalesceWindow = configMap.getInt(ATTACK_LOG_COALESCE_WINDOW, 0);
+
+		// 设置攻击日志合并窗口范围，0表示不合并
+		if (attackLogCoalesceWindow < 0 || attackLogCoalesceWindow > MAX_TIME_INTERVAL) {
+			this.attackLogCoalesceWindow = 0;
+		}
+
+		this.attackLogCoalesceMaxKeys = configMap.getInt(
+				ATTACK_LOG_COALESCE_MAX_KEYS, DEFAULT_ATTACK_LOG_COALESCE_MAX_KEYS
+		);
+
+		if (attackLogCoalesceMaxKeys < 1) {
+			this.attackLogCoalesceMaxKeys = DEFAULT_ATTACK_LOG_COALESCE_MAX_KEYS;
+		}
+
+		this.attackLogCoalesceSamples = Math.max(configMap.getInt(ATTACK_LOG_COALESCE_SAMPLES, 3), 0);
+
+		// 攻击日志调用链深度，0表示不限制
+		this.attackLogTraceDepth = Math.max(configMap.getInt(ATTACK_LOG_TRACE_DEPTH, 0), 0);
 	}
 
 	public String getLogVersion() {
@@ -102,6 +304,10 @@ public class RASPAgentProperties extends RASPProperties {
 		return rc4Key;
 	}
 
+	public RASPLogEncryptMode getLogEncryptMode() {
+		return logEncryptMode;
+	}
+
 	public String getConnectKey() {
 		return connectKey;
 	}
@@ -138,6 +344,10 @@ public class RASPAgentProperties extends RASPProperties {
 		return proxyIpHeader;
 	}
 
+	public RASPCidrTrie getTrustedProxies() {
+		return trustedProxies;
+	}
+
 	public String getLogLevel() {
 		return logLevel;
 	}
@@ -150,4 +360,80 @@ public class RASPAgentProperties extends RASPProperties {
 		return logBufferSize;
 	}
 
-}
\ No newline at end of file
+	public int getLogQueueSize() {
+		return logQueueSize;
+	}
+
+	public RASPOverflowPolicy getLogQueueOverflowPolicy() {
+		return logQueueOverflowPolicy;
+	}
+
+	public int getLogQueueBlockTimeout() {
+		return logQueueBlockTimeout;
+	}
+
+	public int getLogQueueSampleRate() {
+		return logQueueSampleRate;
+	}
+
+	public long getBufferPoolMaxSize() {
+		return bufferPoolMaxSize;
+	}
+
+	public int getStreamCacheSpillThreshold() {
+		return streamCacheSpillThreshold;
+	}
+
+	public long getStreamCacheMaxSpillSize() {
+		return streamCacheMaxSpillSize;
+	}
+
+	public boolean isStreamCacheTruncateBlock() {
+		return streamCacheTruncateBlock;
+	}
+
+	public boolean isStreamCacheStreamDecode() {
+		return streamCacheStreamDecode;
+	}
+
+	public int getStreamCacheCompressLevel() {
+		return streamCacheCompressLevel;
+	}
+
+	public boolean isBinaryLogFormat() {
+		return binaryLogFormat;
+	}
+
+	public int getLogBlockSize() {
+		return logBlockSize;
+	}
+
+	public boolean isAccessLogAggregate() {
+		return accessLogAggregate;
+	}
+
+	public int getAccessLogAggregateInterval() {
+		return accessLogAggregateInterval;
+	}
+
+	public int getAccessLogAggregateMaxKeys() {
+		return accessLogAggregateMaxKeys;
+	}
+
+	public int getAttackLogCoalesceWindow() {
+		return attackLogCoalesceWindow;
+	}
+
+	public int getAttackLogCoalesceMaxKeys() {
+		return attackLogCoalesceMaxKeys;
+	}
+
+	public int getAttackLogCoalesceSamples() {
+		return attackLogCoalesceSamples;
+	}
+
+	public int getAttackLogTraceDepth() {
+		return attackLogTraceDepth;
+	}
+
+}
@@ -1,5 +1,6 @@
 package org.javaweb.rasp.commons.config;
 
+import java.rasp.proxy.loader.RASPModuleType;
 import java.util.*;
 
 import static org.javaweb.rasp.commons.constants.RASPAppConstants.*;
@@ -16,9 +17,9 @@ public class RASPAppProperties extends RASPProperties {
 	private String appID;
 
 	/**
-	 * RASP 当前开放的防御模块
+	 * RASP 当前开放的防御模块，按模块序号（RASPModuleType#getOrdinal）标记，重新加载配置时替换为新的对象
 	 */
-	protected int[] openModules;
+	protected BitSet openModules;
 
 	/**
 	 * 是否是静默模式: true、false
@@ -40,6 +41,11 @@ public class RASPAppProperties extends RASPProperties {
 	 */
 	private String[] ipBlacklist;
 
+	/**
+	 * IP黑名单前缀树，重新加载配置时整体替换
+	 */
+	private volatile RASPCidrTrie ipBlacklistTrie = RASPCidrTrie.EMPTY;
+
 	/**
 	 * URL黑名单列表
 	 */
@@ -55,6 +61,16 @@ public class RASPAppProperties extends RASPProperties {
 	 */
 	private String[] whitelist;
 
+	/**
+	 * 白名单路径前缀树，重新加载配置时整体替换
+	 */
+	private volatile RASPPathTrie whitelistTrie = RASPPathTrie.EMPTY;
+
+	/**
+	 * URL黑名单路径前缀树，重新加载配置时整体替换
+	 */
+	private volatile RASPPathTrie urlBlacklistTrie = RASPPathTrie.EMPTY;
+
 	/**
 	 * 补丁列表
 	 */
@@ -76,16 +92,19 @@ public class RASPAppProperties extends RASPProperties {
 		this.appID = (String) configMap.get(APP_ID);
 		String[] modules = configMap.getArray(MODULES_OPEN);
 
-		this.openModules = new int[modules.length];
+		BitSet modulesSet = new BitSet();
 
-		for (int i = 0; i < openModules.length; i++) {
-			this.openModules[i] = modules[i].hashCode();
+		for (String module : modules) {
+			modulesSet.set(RASPModuleType.getOrdinal(module));
 		}
 
+		this.openModules = modulesSet;
+
 		this.moduleDefense = configMap.getBoolean(MODULE_DEFENSE, true);
 		this.silent = configMap.getBoolean(SILENT, false);
 		this.raspProcessTimeout = configMap.getInt(RASP_PROCESS_TIMEOUT, 0);
 		this.ipBlacklist = configMap.getArray(IP_BLACKLIST);
+		this.ipBlacklistTrie = new RASPCidrTrie(ipBlacklist);
 		this.urlBlacklist = configMap.getArray(URL_BLACKLIST);
 		this.headerWhitelist = configMap.getArray(HEADER_WHITELIST);
 
@@ -119,6 +138,10 @@ public class RASPAppProperties extends RASPProperties {
 			urlBlacklist[i] = appendFirstSlash(urlNormalize(urlBlacklist[i]));
 		}
 
+		// 编译白名单、URL黑名单前缀树
+		this.whitelistTrie = new RASPPathTrie(whitelist);
+		this.urlBlacklistTrie = new RASPPathTrie(urlBlacklist);
+
 		this.servletStreamHook = configMap.getBoolean(SERVLET_STREAM_HOOK, false);
 		this.servletStreamMaxCacheSize = configMap.getInt(SERVLET_STREAM_MAX_CACHE_SIZE, 1);
 	}
@@ -127,7 +150,7 @@ public class RASPAppProperties extends RASPProperties {
 		return appID;
 	}
 
-	public int[] getOpenModules() {
+	public BitSet getOpenModules() {
 		return openModules;
 	}
 
@@ -147,6 +170,20 @@ public class RASPAppProperties extends RASPProperties {
 		return ipBlacklist;
 	}
 
+	public RASPCidrTrie getIpBlacklistTrie() {
+		return ipBlacklistTrie;
+	}
+
+	/**
+	 * 检测IP地址是否是IP黑名单（支持CIDR）
+	 *
+	 * @param address IP地址（IPV4Utils.textToNumericFormatV4/V6的返回值）
+	 * @return 是否是IP黑名单
+	 */
+	public boolean isIpBlacklist(byte[] address) {
+		return ipBlacklistTrie.contains(address);
+	}
+
 	public String[] getUrlBlacklist() {
 		return urlBlacklist;
 	}
@@ -159,6 +196,24 @@ public class RASPAppProperties extends RASPProperties {
 		return whitelist;
 	}
 
+	public RASPPathTrie getWhitelistTrie() {
+		return whitelistTrie;
+	}
+
+	public RASPPathTrie getUrlBlacklistTrie() {
+		return urlBlacklistTrie;
+	}
+
+	/**
+	 * 检测请求路径是否是URL黑名单（目录匹配）
+	 *
+	 * @param path 标准化后的请求路径
+	 * @return 是否是URL黑名单
+	 */
+	public boolean isUrlBlacklist(String path) {
+		return urlBlacklistTrie.matches(path);
+	}
+
 	public List<Map<String, Object>> getPatchList() {
 		return patchList;
 	}
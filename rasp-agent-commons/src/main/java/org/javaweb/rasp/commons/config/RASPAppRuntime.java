@@ -0,0 +1,147 @@
+package org.javaweb.rasp.commons.config;
+
+import org.javaweb.rasp.commons.log.RASPAccessLogAggregator;
+import org.javaweb.rasp.commons.log.RASPBinaryLogEncoder;
+import org.javaweb.rasp.commons.log.RASPLogger;
+import org.javaweb.rasp.commons.logback.classic.Logger;
+
+import java.io.File;
+
+import static org.javaweb.rasp.commons.config.RASPConfiguration.*;
+import static org.javaweb.rasp.commons.constants.RASPConstants.*;
+import static org.javaweb.rasp.commons.log.RASPLogger.*;
+import static org.javaweb.rasp.commons.logback.classic.Level.INFO;
+
+/**
+ * Web应用运行时对象，每个contextPath只创建一次，缓存Web应用配置、日志目录和访问/攻击/调用链日志Logger，
+ * 请求线程记录日志时无需再遍历Logger上下文查找Logger。
+ */
+public class RASPAppRuntime {
+
+	/**
+	 * 标准的Web应用contextPath，如："/ROOT"
+	 */
+	private final String contextPath;
+
+	/**
+	 * Web应用Context名称，自动替换"/"为"_"，如："/console/ibm/"返回"console_ibm"
+	 */
+	private final String contextName;
+
+	/**
+	 * Web应用日志目录
+	 */
+	private final File logDirectory;
+
+	/**
+	 * Web应用配置对象
+	 */
+	private final RASPPropertiesConfiguration<RASPAppProperties> applicationConfig;
+
+	private final Logger accessLogger;
+
+	private final Logger attackLogger;
+
+	/**
+	 * 调用链日志Logger，第一次使用时创建
+	 */
+	private volatile Logger traceLogger;
+
+	/**
+	 * 访问日志聚合统计（access_log.mode=aggregate）
+	 */
+	private final RASPAccessLogAggregator accessLogAggregator;
+
+	public RASPAppRuntime(String contextPath, RASPPropertiesConfiguration<RASPAppProperties> applicationConfig) {
+		this.contextPath = contextPath;
+		this.contextName = contextPath.substring(1).replace("/", "_");
+		this.logDirectory = new File(RASP_LOG_DIRECTORY, contextName);
+		this.applicationConfig = applicationConfig;
+
+		// 初始化RASP访问日志和攻击日志对象
+		this.accessLogger = createAppLogger(ACCESS_LOG_FILE_NAME, ACCESS_LOGGER_PREFIX);
+		this.attackLogger = createAppLogger(ATTACK_LOG_FILE_NAME, ATTACK_LOGGER_PREFIX);
+
+		this.accessLogAggregator = new RASPAccessLogAggregator(
+				contextPath, AGENT_PROPERTIES.getAccessLogAggregateMaxKeys()
+		);
+	}
+
+	/**
+	 * 创建当前Web应用的Logger，如果Logger已初始化则直接返回，不会重复创建（会导致日志生成重复记录）
+	 *
+	 * @param fileName     文件名
+	 * @param loggerPrefix logger前缀
+	 * @return 当前Web应用Logger
+	 */
+	public Logger createAppLogger(String fileName, String loggerPrefix) {
+		// 生成当前应用的Logger名称
+		String loggerName = createLoggerName(loggerPrefix, contextName);
+
+		synchronized (RASPAppRuntime.class) {
+			if (!hasLogger(loggerName)) {
+				if (!logDirectory.exists() && !logDirectory.mkdirs()) {
+					AGENT_LOGGER.error("初始化{}日志对象失败，无法创建目录：{}", contextName, logDirectory);
+				}
+
+				String fileSize = AGENT_PROPERTIES.getLogBufferSize();
+				File   logFile  = new File(logDirectory, fileName);
+
+				if (AGENT_PROPERTIES.isBinaryLogFormat()) {
+					RASPBinaryLogEncoder encoder = new RASPBinaryLogEncoder(
+							AGENT_PROPERTIES.getLogBlockSize(), AGENT_PROPERTIES.getFlushInterval() * 1000L
+					);
+
+					return createRASPLogger(loggerName, logFile, INFO, encoder, fileSize);
+				}
+
+				return createRASPLogger(loggerName, logFile, INFO, "%msg%n", fileSize);
+			}
+		}
+
+		return RASPLogger.getLogger(loggerName);
+	}
+
+	public String getContextPath() {
+		return contextPath;
+	}
+
+	public String getContextName() {
+		return contextName;
+	}
+
+	public File getLogDirectory() {
+		return logDirectory;
+	}
+
+	public RASPPropertiesConfiguration<RASPAppProperties> getApplicationConfig() {
+		return applicationConfig;
+	}
+
+	public RASPAppProperties getAppProperties() {
+		return applicationConfig.getRaspProperties();
+	}
+
+	public Logger getAccessLogger() {
+		return accessLogger;
+	}
+
+	public Logger getAttackLogger() {
+		return attackLogger;
+	}
+
+	public RASPAccessLogAggregator getAccessLogAggregator() {
+		return accessLogAggregator;
+	}
+
+	public Logger getTraceLogger() {
+		Logger logger = traceLogger;
+
+		if (logger == null) {
+			this.traceLogger = logger = createAppLogger(TRACE_LOG_FILE_NAME, TRACE_LOGGER_PREFIX);
+		}
+
+		return logger;
+	}
+
+}
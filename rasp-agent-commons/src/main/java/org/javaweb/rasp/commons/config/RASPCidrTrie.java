@@ -0,0 +1,399 @@
+package org.javaweb.rasp.commons.config;
+
+import static java.util.Arrays.copyOf;
+import static org.javaweb.rasp.commons.utils.IPV4Utils.textToNumericFormatV4;
+import static org.javaweb.rasp.commons.utils.IPV4Utils.textToNumericFormatV6;
+
+/**
+ * IPv4/IPv6 CIDR前缀树（Patricia树，路径压缩的二叉前缀树），用于IP黑名单、可信代理IP段匹配。
+ * IPv4地址按IPv4映射的IPv6地址（::ffff:a.b.c.d）存储，所有地址统一为128位。
+ * <p>
+ * 节点使用数组存储，避免百万级IP段时创建大量节点对象；前缀树在加载配置时创建，创建后不再修改，多线程读取时无需加锁，
+ * 匹配时间只和地址位数有关，与IP段数量无关，匹配过程不会创建任何对象。
+ */
+public class RASPCidrTrie {
+
+	/**
+	 * 空前缀树
+	 */
+	public static final RASPCidrTrie EMPTY = new RASPCidrTrie(new String[0]);
+
+	private static final int ADDRESS_BITS = 128;
+
+	/**
+	 * IPv4映射的IPv6地址前缀位数
+	 */
+	private static final int IPV4_MAPPED_BITS = 96;
+
+	private static final long IPV4_MAPPED_PREFIX = 0x0000FFFF00000000L;
+
+	/**
+	 * 每个节点占用的long数：前缀高64位、前缀低64位、前缀位数和是否是完整IP段、左右子节点
+	 */
+	private static final int NODE_SIZE = 4;
+
+	private static final int HIGH = 0;
+
+	private static final int LOW = 1;
+
+	private static final int META = 2;
+
+	private static final int CHILDREN = 3;
+
+	/**
+	 * 标记节点是一个完整的IP段
+	 */
+	private static final long TERMINAL = 1L << 8;
+
+	/**
+	 * 没有子节点
+	 */
+	private static final int NO_CHILD = -1;
+
+	/**
+	 * 节点数组，同一个节点的数据连续存储，匹配时每个节点只需读取一次内存
+	 */
+	private long[] nodes;
+
+	private int nodeCount;
+
+	/**
+	 * 已添加的IP段数
+	 */
+	private final int size;
+
+	/**
+	 * 创建CIDR前缀树，支持：IP地址（如：192.168.1.1、::1）和CIDR（如：10.0.0.0/8、2001:db8::/32），无法解析的配置会被忽略
+	 *
+	 * @param cidrList IP段列表
+	 */
+	public RASPCidrTrie(String[] cidrList) {
+		this.nodes = new long[Math.max(16, cidrList.length * 2) * NODE_SIZE];
+
+		// 根节点
+		newNode(0, 0, 0, false);
+
+		byte[] buffer = new byte[16];
+		int    count  = 0;
+
+		for (String cidr : cidrList) {
+			if (cidr != null && add(cidr.trim(), buffer)) {
+				count++;
+			}
+		}
+
+		this.size = count;
+
+		compact();
+	}
+
+	/**
+	 * 按层序（广度优先）重新排列节点，上层节点连续存储以提高CPU缓存命中率，同时移除被包含的IP段遗留的无效节点
+	 */
+	private void compact() {
+		long[] compacted = new long[Math.max(NODE_SIZE, nodeCount * NODE_SIZE)];
+		int[]  queue     = new int[nodeCount];
+		int    head      = 0;
+		int    tail      = 0;
+
+		queue[tail++] = 0;
+
+		while (head < tail) {
+			int  node     = queue[head];
+			int  offset   = head * NODE_SIZE;
+			long children = nodes[node + CHILDREN];
+			int  left     = (int) (children >> 32);
+			int  right    = (int) children;
+
+			System.arraycopy(nodes, node, compacted, offset, NODE_SIZE);
+
+			// 子节点在新数组中的位置等于其入队顺序
+			if (left != NO_CHILD) {
+				queue[tail] = left;
+				left = tail++ * NODE_SIZE;
+			}
+
+			if (right != NO_CHILD) {
+				queue[tail] = right;
+				right = tail++ * NODE_SIZE;
+			}
+
+			compacted[offset + CHILDREN] = children(left, right);
+			head++;
+		}
+
+		this.nodes = copyOf(compacted, tail * NODE_SIZE);
+		this.nodeCount = tail;
+	}
+
+	/**
+	 * 解析并添加IP段
+	 *
+	 * @param cidr   IP段
+	 * @param buffer IP地址解析缓存
+	 * @return 是否添加成功
+	 */
+	private boolean add(String cidr, byte[] buffer) {
+		int slash = cidr.indexOf('/');
+		int end   = slash >= 0 ? slash : cidr.length();
+		int bits;
+
+		if (textToNumericFormatV4(cidr, 0, end, buffer, 0)) {
+			bits = parsePrefixLength(cidr, slash, 32);
+
+			if (bits < 0) {
+				return false;
+			}
+
+			insert(0, IPV4_MAPPED_PREFIX | (toInt(buffer, 0) & 0xFFFFFFFFL), bits + IPV4_MAPPED_BITS);
+		} else if (textToNumericFormatV6(cidr, 0, end, buffer)) {
+			bits = parsePrefixLength(cidr, slash, ADDRESS_BITS);
+
+			if (bits < 0) {
+				return false;
+			}
+
+			insert(toLong(buffer, 0), toLong(buffer, 8), bits);
+		} else {
+			return false;
+		}
+
+		return true;
+	}
+
+	private static int parsePrefixLength(String cidr, int slash, int maxBits) {
+		if (slash < 0) {
+			return maxBits;
+		}
+
+		int bits = 0;
+
+		if (slash == cidr.length() - 1 || cidr.length() - slash > 4) {
+			return -1;
+		}
+
+		for (int i = slash + 1; i < cidr.length(); i++) {
+			int digit = Character.digit(cidr.charAt(i), 10);
+
+			if (digit < 0) {
+				return -1;
+			}
+
+			bits = bits * 10 + digit;
+		}
+
+		return bits <= maxBits ? bits : -1;
+	}
+
+	private void insert(long hi, long lo, int bits) {
+		hi &= mask(bits);
+		lo &= mask(bits - 64);
+
+		int node = 0;
+
+		while (true) {
+			// 已被更短的IP段包含
+			if (isTerminal(node)) {
+				return;
+			}
+
+			int nodeBits = prefixLength(node);
+
+			if (nodeBits == bits) {
+				// 当前节点成为完整IP段，子节点已被包含，无需保留
+				nodes[node + META] |= TERMINAL;
+				nodes[node + CHILDREN] = children(NO_CHILD, NO_CHILD);
+				return;
+			}
+
+			boolean bit   = bit(hi, lo, nodeBits);
+			int     child = getChild(node, bit);
+
+			if (child == NO_CHILD) {
+				setChild(node, bit, newNode(hi, lo, bits, true));
+				return;
+			}
+
+			int childBits = prefixLength(child);
+			int common    = commonPrefixLength(hi, lo, nodes[child + HIGH], nodes[child + LOW]);
+
+			common = Math.min(Math.min(common, bits), childBits);
+
+			if (common == childBits) {
+				node = child;
+				continue;
+			}
+
+			// 分裂节点：新建公共前缀节点，原子节点挂在公共前缀节点下
+			int split = newNode(hi & mask(common), lo & mask(common - 64), common, common == bits);
+			setChild(node, bit, split);
+
+			if (common == bits) {
+				return;
+			}
+
+			setChild(split, bit(nodes[child + HIGH], nodes[child + LOW], common), child);
+			setChild(split, bit(hi, lo, common), newNode(hi, lo, bits, true));
+
+			return;
+		}
+	}
+
+	/**
+	 * 检测IP地址是否在前缀树中的任意IP段内
+	 *
+	 * @param address IP地址（4字节IPv4地址或16字节IPv6地址，如：IPV4Utils.textToNumericFormatV4/V6的返回值）
+	 * @return 是否匹配
+	 */
+	public boolean contains(byte[] address) {
+		if (size == 0 || address == null) {
+			return false;
+		}
+
+		if (address.length == 4) {
+			return contains(0, IPV4_MAPPED_PREFIX | (toInt(address, 0) & 0xFFFFFFFFL));
+		} else if (address.length == 16) {
+			return contains(toLong(address, 0), toLong(address, 8));
+		}
+
+		return false;
+	}
+
+	/**
+	 * 检测128位IP地址是否在前缀树中的任意IP段内
+	 *
+	 * @param hi IP地址高64位
+	 * @param lo IP地址低64位
+	 * @return 是否匹配
+	 */
+	public boolean contains(long hi, long lo) {
+		long[] nodes = this.nodes;
+		int    node  = 0;
+
+		while (true) {
+			long meta = nodes[node + META];
+
+			if ((meta & TERMINAL) != 0) {
+				return true;
+			}
+
+			int bits = (int) (meta & 0xFF);
+
+			if (bits == ADDRESS_BITS) {
+				return false;
+			}
+
+			long children = nodes[node + CHILDREN];
+
+			node = bit(hi, lo, bits) ? (int) children : (int) (children >> 32);
+
+			if (node == NO_CHILD) {
+				return false;
+			}
+
+			int childBits = (int) (nodes[node + META] & 0xFF);
+
+			if (((hi ^ nodes[node + HIGH]) & mask(childBits)) != 0 ||
+					((lo ^ nodes[node + LOW]) & mask(childBits - 64)) != 0) {
+
+				return false;
+			}
+		}
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * 创建节点
+	 *
+	 * @return 节点在节点数组中的起始位置
+	 */
+	private int newNode(long hi, long lo, int bits, boolean isTerminal) {
+		int node = nodeCount * NODE_SIZE;
+
+		if (node == nodes.length) {
+			nodes = copyOf(nodes, nodes.length * 2);
+		}
+
+		nodes[node + HIGH] = hi;
+		nodes[node + LOW] = lo;
+		nodes[node + META] = isTerminal ? bits | TERMINAL : bits;
+		nodes[node + CHILDREN] = children(NO_CHILD, NO_CHILD);
+		nodeCount++;
+
+		return node;
+	}
+
+	private boolean isTerminal(int node) {
+		return (nodes[node + META] & TERMINAL) != 0;
+	}
+
+	private int prefixLength(int node) {
+		return (int) (nodes[node + META] & 0xFF);
+	}
+
+	private int getChild(int node, boolean bit) {
+		long children = nodes[node + CHILDREN];
+
+		return bit ? (int) children : (int) (children >> 32);
+	}
+
+	private void setChild(int node, boolean bit, int child) {
+		long children = nodes[node + CHILDREN];
+		int  left     = (int) (children >> 32);
+		int  right    = (int) children;
+
+		nodes[node + CHILDREN] = bit ? children(left, child) : children(child, right);
+	}
+
+	/**
+	 * 左子节点存储在高32位，右子节点存储在低32位
+	 */
+	private static long children(int left, int right) {
+		return ((long) left << 32) | (right & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * 获取64位前缀掩码，bits小于等于0时返回0，大于等于64时返回全1
+	 */
+	private static long mask(int bits) {
+		if (bits <= 0) {
+			return 0;
+		}
+
+		return bits >= 64 ? -1L : -1L << (64 - bits);
+	}
+
+	/**
+	 * 获取128位地址中第index位（从高位开始，从0计数）
+	 */
+	private static boolean bit(long hi, long lo, int index) {
+		return index < 64 ? ((hi >>> (63 - index)) & 1) != 0 : ((lo >>> (127 - index)) & 1) != 0;
+	}
+
+	private static int commonPrefixLength(long hi1, long lo1, long hi2, long lo2) {
+		long x = hi1 ^ hi2;
+
+		if (x != 0) {
+			return Long.numberOfLeadingZeros(x);
+		}
+
+		return 64 + Long.numberOfLeadingZeros(lo1 ^ lo2);
+	}
+
+	private static int toInt(byte[] bytes, int offset) {
+		return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16) |
+				((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+	}
+
+	private static long toLong(byte[] bytes, int offset) {
+		return ((long) toInt(bytes, offset) << 32) | (toInt(bytes, offset + 4) & 0xFFFFFFFFL);
+	}
+
+}
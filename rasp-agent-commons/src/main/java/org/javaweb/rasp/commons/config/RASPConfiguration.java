@@ -6,6 +6,7 @@ import org.javaweb.rasp.commons.logback.classic.Level;
 import org.javaweb.rasp.commons.logback.classic.Logger;
 
 import java.io.File;
+import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -104,10 +105,10 @@ public class RASPConfiguration {
 	public static final File DEFAULT_CONFIG_FILE = new File(RASP_CONFIG_DIRECTORY, DEFAULT_AGENT_APP_FILE_NAME);
 
 	/**
-	 * 容器所有应用配置文件对象
+	 * 容器所有应用的运行时对象（应用配置文件对象、日志Logger等）
 	 */
-	private static final Map<Integer, RASPPropertiesConfiguration<RASPAppProperties>> APPLICATION_CONFIG_MAP =
-			new ConcurrentHashMap<Integer, RASPPropertiesConfiguration<RASPAppProperties>>();
+	private static final Map<Integer, RASPAppRuntime> APPLICATION_CONFIG_MAP =
+			new ConcurrentHashMap<Integer, RASPAppRuntime>();
 
 	public static final long RASP_START_TIME = currentTimeMillis();
 
@@ -196,32 +197,54 @@ public class RASPConfiguration {
 	}
 
 	/**
-	 * 获取Web应用配置文件对象，先从内存中读取（使用contextPath的hashcode缓存），如果读取不到再读取配置文件；
+	 * 获取Web应用运行时对象，先从内存中读取（使用contextPath的hashcode缓存），如果读取不到再读取配置文件；
 	 * 第一次读取时会初始化Web应用日志对象。
 	 *
 	 * @param ctx RASP上下文
-	 * @return Web应用配置文件对象
+	 * @return Web应用运行时对象
 	 */
-	public static RASPPropertiesConfiguration<RASPAppProperties> getApplicationConfig(RASPContext ctx) {
+	public static RASPAppRuntime getAppRuntime(RASPContext ctx) {
 		String contextPath = ctx.getContextPath();
 		int    hashCode    = contextPath.hashCode();
 
-		// 获取缓存中的Web应用配置
-		RASPPropertiesConfiguration<RASPAppProperties> config = APPLICATION_CONFIG_MAP.get(hashCode);
+		// 获取缓存中的Web应用运行时对象
+		RASPAppRuntime runtime = APPLICATION_CONFIG_MAP.get(hashCode);
 
-		if (config != null) {
-			return config;
+		if (runtime != null) {
+			return runtime;
 		}
 
-		// 初始化RASP访问日志和攻击日志对象
-		ctx.initAppLogger();
+		synchronized (APPLICATION_CONFIG_MAP) {
+			runtime = APPLICATION_CONFIG_MAP.get(hashCode);
 
-		// 获取Web应用配置
-		config = readApplicationConfigFile(contextPath);
+			if (runtime == null) {
+				// 读取Web应用配置并初始化RASP访问日志和攻击日志对象
+				runtime = new RASPAppRuntime(contextPath, readApplicationConfigFile(contextPath));
 
-		APPLICATION_CONFIG_MAP.put(hashCode, config);
+				APPLICATION_CONFIG_MAP.put(hashCode, runtime);
+			}
+		}
 
-		return config;
+		return runtime;
+	}
+
+	/**
+	 * 获取所有已初始化的Web应用运行时对象
+	 *
+	 * @return Web应用运行时对象
+	 */
+	public static Collection<RASPAppRuntime> getAppRuntimes() {
+		return APPLICATION_CONFIG_MAP.values();
+	}
+
+	/**
+	 * 获取Web应用配置文件对象
+	 *
+	 * @param ctx RASP上下文
+	 * @return Web应用配置文件对象
+	 */
+	public static RASPPropertiesConfiguration<RASPAppProperties> getApplicationConfig(RASPContext ctx) {
+		return getAppRuntime(ctx).getApplicationConfig();
 	}
 
 	public static RASPPropertiesConfiguration<RASPAppProperties> readApplicationConfigFile(String contextPath) {
@@ -274,9 +297,9 @@ public class RASPConfiguration {
 			int hashCode = resolvePath.hashCode();
 
 			// 获取缓存中的Web应用配置
-			RASPPropertiesConfiguration<RASPAppProperties> config = APPLICATION_CONFIG_MAP.get(hashCode);
+			RASPAppRuntime runtime = APPLICATION_CONFIG_MAP.get(hashCode);
 
-			if (config != null) return config;
+			if (runtime != null) return runtime.getApplicationConfig();
 		}
 
 		return readApplicationConfigFile(contextPath);
@@ -0,0 +1,197 @@
+package org.javaweb.rasp.commons.config;
+
+/**
+ * 按"/"分段的URL路径前缀树，用于白名单、URL黑名单匹配。
+ * 路径匹配规则和目录匹配一致：配置"/data"时匹配"/data"和"/data/index.jsp"，不匹配"/database"。
+ * <p>
+ * 前缀树在加载配置时创建，创建后不再修改，多线程读取时无需加锁；匹配时直接按请求路径的字符区间查找子节点，
+ * 时间复杂度为O(路径长度)，不会创建任何对象。
+ */
+public class RASPPathTrie {
+
+	/**
+	 * 空前缀树
+	 */
+	public static final RASPPathTrie EMPTY = new RASPPathTrie(new String[0]);
+
+	private final Node root = new Node();
+
+	/**
+	 * 已添加的路径数
+	 */
+	private final int size;
+
+	/**
+	 * 创建路径前缀树，路径必须是标准化后的路径（如：urlNormalize处理后的路径），空路径会被忽略
+	 *
+	 * @param paths 路径数组
+	 */
+	public RASPPathTrie(String[] paths) {
+		int count = 0;
+
+		for (String path : paths) {
+			if (path != null && path.length() > 0) {
+				add(path);
+				count++;
+			}
+		}
+
+		this.size = count;
+	}
+
+	private void add(String path) {
+		Node node  = root;
+		int  start = 0;
+
+		while (true) {
+			int end = path.indexOf('/', start);
+
+			if (end < 0) {
+				end = path.length();
+			}
+
+			node = node.addChild(path.substring(start, end));
+
+			if (end == path.length()) {
+				node.terminal = true;
+				return;
+			}
+
+			start = end + 1;
+		}
+	}
+
+	/**
+	 * 检测路径是否匹配前缀树中的任意路径（完全相同或是其子目录）
+	 *
+	 * @param path 标准化后的请求路径
+	 * @return 是否匹配
+	 */
+	public boolean matches(String path) {
+		if (size == 0 || path == null) {
+			return false;
+		}
+
+		Node node   = root;
+		int  length = path.length();
+		int  start  = 0;
+
+		while (true) {
+			int hash = 0;
+			int end  = start;
+
+			// 计算当前路径段的hashCode（与String#hashCode一致），直到"/"或路径结尾
+			for (char c; end < length && (c = path.charAt(end)) != '/'; end++) {
+				hash = 31 * hash + c;
+			}
+
+			node = node.getChild(path, start, end, hash);
+
+			if (node == null) {
+				return false;
+			}
+
+			// 目录匹配，如：/data/index.jsp -> /data
+			if (node.terminal) {
+				return true;
+			}
+
+			if (end == length) {
+				return false;
+			}
+
+			start = end + 1;
+		}
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * 前缀树节点，子节点使用开放寻址的哈希表存储，Key为路径段
+	 */
+	private static final class Node {
+
+		private boolean terminal;
+
+		private String[] keys;
+
+		private Node[] children;
+
+		private int childCount;
+
+		Node addChild(String key) {
+			if (keys == null) {
+				keys = new String[2];
+				children = new Node[2];
+			} else if ((childCount + 1) * 2 > keys.length) {
+				resize();
+			}
+
+			int mask  = keys.length - 1;
+			int index = key.hashCode() & mask;
+
+			for (String k; (k = keys[index]) != null; index = (index + 1) & mask) {
+				if (k.equals(key)) {
+					return children[index];
+				}
+			}
+
+			Node child = new Node();
+			keys[index] = key;
+			children[index] = child;
+			childCount++;
+
+			return child;
+		}
+
+		Node getChild(String path, int start, int end, int hash) {
+			if (keys == null) {
+				return null;
+			}
+
+			int mask  = keys.length - 1;
+			int len   = end - start;
+			int index = hash & mask;
+
+			for (String k; (k = keys[index]) != null; index = (index + 1) & mask) {
+				if (k.length() == len && path.regionMatches(start, k, 0, len)) {
+					return children[index];
+				}
+			}
+
+			return null;
+		}
+
+		private void resize() {
+			String[] oldKeys     = keys;
+			Node[]   oldChildren = children;
+			int      mask        = oldKeys.length * 2 - 1;
+
+			keys = new String[oldKeys.length * 2];
+			children = new Node[oldKeys.length * 2];
+
+			for (int i = 0; i < oldKeys.length; i++) {
+				String key = oldKeys[i];
+
+				if (key != null) {
+					int index = key.hashCode() & mask;
+
+					while (keys[index] != null) {
+						index = (index + 1) & mask;
+					}
+
+					keys[index] = key;
+					children[index] = oldChildren[i];
+				}
+			}
+		}
+
+	}
+
+}
@@ -3,7 +3,6 @@ package org.javaweb.rasp.commons.config;
 import org.javaweb.rasp.commons.context.RASPContext;
 
 import static org.javaweb.rasp.commons.config.RASPConfiguration.AGENT_LOGGER;
-import static org.javaweb.rasp.commons.utils.StringUtils.isEmpty;
 import static org.javaweb.rasp.commons.utils.StringUtils.isNotEmpty;
 import static org.javaweb.rasp.commons.utils.URLUtils.urlNormalize;
 import static org.javaweb.rasp.loader.AgentConstants.AGENT_NAME;
@@ -24,29 +23,15 @@ public class RASPWhitelist {
 		try {
 			RASPAppProperties properties = context.getAppProperties();
 
-			// 获取白名单列表
-			String[] whiteList = properties.getWhitelist();
+			// 获取白名单前缀树
+			RASPPathTrie whitelist = properties.getWhitelistTrie();
 
-			if (whiteList.length > 0) {
+			if (!whitelist.isEmpty()) {
 				String requestURI = context.getRequestPath();
 
 				if (isNotEmpty(requestURI)) {
-					// 将请求URL地址转换成标准的路径
-					String path = urlNormalize(requestURI);
-
-					// 检测当前的文件路径是否包含在白名单
-					for (String url : whiteList) {
-						if (isEmpty(url)) {
-							continue;
-						}
-
-						int len = url.length();
-
-						// 目录匹配，如：/data/index.jsp -> /data
-						if (path.startsWith(url) && (path.length() == len || path.charAt(len) == '/')) {
-							return true;
-						}
-					}
+					// 将请求URL地址转换成标准的路径，检测当前的文件路径是否包含在白名单（目录匹配，如：/data/index.jsp -> /data）
+					return whitelist.matches(urlNormalize(requestURI));
 				}
 			}
 		} catch (Exception e) {
@@ -20,6 +20,11 @@ public class RASPConfigConstants {
 	 */
 	public static final String SYSTEM_RC4_KEY = "system.rc4_key";
 
+	/**
+	 * RASP 攻击日志加密方式：rc4（默认，逐行加密）、aes_gcm（按批加密成日志帧，密钥由RC4 Key派生）
+	 */
+	public static final String SYSTEM_LOG_ENCRYPT_MODE = "system.log_encrypt_mode";
+
 	/**
 	 * RASP 云端通讯KEY
 	 */
@@ -65,6 +70,11 @@ public class RASPConfigConstants {
 	 */
 	public static final String PROXY_IP_HEADER = "proxy_ip_header";
 
+	/**
+	 * 可信的反向代理IP段（如：10.0.0.0/8,192.168.1.1），配置后只有来自可信代理的请求才会读取代理IP请求头
+	 */
+	public static final String PROXY_IP_TRUSTED = "proxy_ip_trusted";
+
 	/**
 	 * RASP日志输出级别
 	 */
@@ -80,4 +90,100 @@ public class RASPConfigConstants {
 	 */
 	public static final String LOG_BUFFER_SIZE = "log_buffer_size";
 
+	/**
+	 * 内存中最大缓存的RASP日志数
+	 */
+	public static final String LOG_QUEUE_SIZE = "log_queue.size";
+
+	/**
+	 * 日志队列已满时的处理策略：drop_newest、drop_oldest、sample、block
+	 */
+	public static final String LOG_QUEUE_OVERFLOW_POLICY = "log_queue.overflow_policy";
+
+	/**
+	 * block策略下请求线程最大等待时间（毫秒）
+	 */
+	public static final String LOG_QUEUE_BLOCK_TIMEOUT = "log_queue.block_timeout";
+
+	/**
+	 * sample策略的采样率，每N条溢出日志保留1条
+	 */
+	public static final String LOG_QUEUE_SAMPLE_RATE = "log_queue.sample_rate";
+
+	/**
+	 * 请求/响应流缓存池最大缓存字节数，如：32MB，设置为0时不缓存
+	 */
+	public static final String BUFFER_POOL_MAX_SIZE = "buffer_pool.max_size";
+
+	/**
+	 * 流缓存内存阈值，缓存的数据超过该值后写入临时文件，如：1MB，默认为0（不写入临时文件）
+	 */
+	public static final String STREAM_CACHE_SPILL_THRESHOLD = "stream_cache.spill_threshold";
+
+	/**
+	 * 流缓存临时文件最大总字节数，如：512MB
+	 */
+	public static final String STREAM_CACHE_MAX_SPILL_SIZE = "stream_cache.max_spill_size";
+
+	/**
+	 * 流缓存临时文件达到最大总字节数导致请求体缓存不完整时是否阻断请求（非静默模式），
+	 * 默认false：只记录警告日志，不检测该请求体
+	 */
+	public static final String STREAM_CACHE_TRUNCATE_BLOCK = "stream_cache.truncate_block";
+
+	/**
+	 * 是否流式解析JSON/XML请求体（写入缓存时同步解析请求参数），只对RASPParameterSerialization实现生效，默认false
+	 */
+	public static final String STREAM_CACHE_STREAM_DECODE = "stream_cache.stream_decode";
+
+	/**
+	 * 流缓存GZIP压缩级别（-1 ~ 9），-1为默认压缩级别
+	 */
+	public static final String STREAM_CACHE_COMPRESS_LEVEL = "stream_cache.compress_level";
+
+	/**
+	 * Web应用日志格式：text（默认，每行一条日志）、binary（按日志块压缩的二进制格式），修改后重启生效
+	 */
+	public static final String LOG_FORMAT = "log_format";
+
+	/**
+	 * 二进制日志块大小（压缩前），如：64KB
+	 */
+	public static final String LOG_BLOCK_SIZE = "log_block_size";
+
+	/**
+	 * 访问日志模式：detail（默认，每个请求一条日志）、aggregate（按URL、请求方法和响应状态码聚合统计）
+	 */
+	public static final String ACCESS_LOG_MODE = "access_log.mode";
+
+	/**
+	 * 聚合访问日志统计周期（秒）
+	 */
+	public static final String ACCESS_LOG_AGGREGATE_INTERVAL = "access_log.aggregate_interval";
+
+	/**
+	 * 每个Web应用最大聚合统计项数，超出后计入"__other__"统计项
+	 */
+	public static final String ACCESS_LOG_AGGREGATE_MAX_KEYS = "access_log.aggregate_max_keys";
+
+	/**
+	 * 攻击日志合并窗口（秒），同一攻击在合并窗口内只记录第一条完整日志，之后每个窗口输出一条合并日志，设置为0时不合并
+	 */
+	public static final String ATTACK_LOG_COALESCE_WINDOW = "attack_log.coalesce_window";
+
+	/**
+	 * 攻击日志合并最大缓存攻击数，超出后不再合并
+	 */
+	public static final String ATTACK_LOG_COALESCE_MAX_KEYS = "attack_log.coalesce_max_keys";
+
+	/**
+	 * 每条攻击合并日志最多采样的攻击参数值数
+	 */
+	public static final String ATTACK_LOG_COALESCE_SAMPLES = "attack_log.coalesce_samples";
+
+	/**
+	 * 攻击日志调用链最大深度（HookProxy之后的层数），设置为0时不限制
+	 */
+	public static final String ATTACK_LOG_TRACE_DEPTH = "attack_log.trace_depth";
+
 }
@@ -4,31 +4,29 @@ import org.javaweb.rasp.commons.MethodHookEvent;
 import org.javaweb.rasp.commons.attack.RASPAttackInfo;
 import org.javaweb.rasp.commons.cache.RASPRequestCached;
 import org.javaweb.rasp.commons.config.RASPAppProperties;
+import org.javaweb.rasp.commons.config.RASPAppRuntime;
 import org.javaweb.rasp.commons.config.RASPConfiguration;
 import org.javaweb.rasp.commons.config.RASPPropertiesConfiguration;
 import org.javaweb.rasp.commons.decoder.RASPDataDecoder;
 import org.javaweb.rasp.commons.log.RASPAccessLog;
 import org.javaweb.rasp.commons.log.RASPAttackLog;
 import org.javaweb.rasp.commons.log.RASPLogData;
-import org.javaweb.rasp.commons.log.RASPLogger;
 import org.javaweb.rasp.commons.logback.classic.Logger;
 
 import java.io.Closeable;
-import java.io.File;
 import java.rasp.proxy.loader.RASPModuleType;
-import java.util.HashSet;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import static java.lang.System.nanoTime;
-import static org.javaweb.rasp.commons.config.RASPConfiguration.*;
-import static org.javaweb.rasp.commons.constants.RASPConstants.*;
-import static org.javaweb.rasp.commons.log.RASPLogger.*;
-import static org.javaweb.rasp.commons.logback.classic.Level.INFO;
+import static org.javaweb.rasp.commons.config.RASPConfiguration.AGENT_LOGGER;
+import static org.javaweb.rasp.commons.config.RASPConfiguration.AGENT_PROPERTIES;
+import static org.javaweb.rasp.commons.log.RASPLogSerializer.toJsonBytes;
 import static org.javaweb.rasp.commons.sync.RASPLoggerSyncConfig.addRASPLogData;
-import static org.javaweb.rasp.commons.utils.ArrayUtils.arrayContains;
-import static org.javaweb.rasp.commons.utils.JsonUtils.toJson;
+import static org.javaweb.rasp.commons.sync.RASPLoggerSyncConfig.coalesceAttackLog;
 import static org.javaweb.rasp.commons.utils.URLUtils.getStandardContextPath;
 import static org.javaweb.rasp.loader.AgentConstants.AGENT_NAME;
 
@@ -67,7 +65,7 @@ public abstract class RASPContext implements Closeable {
 	/**
 	 * 上下文是否已关闭
 	 */
-	protected boolean contextClosed = false;
+	protected volatile boolean contextClosed = false;
 
 	/**
 	 * 请求开始的纳秒
@@ -91,6 +89,11 @@ public abstract class RASPContext implements Closeable {
 
 	protected RASPRequestCached cachedRequest;
 
+	/**
+	 * Web应用运行时对象（应用配置、日志Logger）
+	 */
+	protected final RASPAppRuntime appRuntime;
+
 	/**
 	 * RASP 应用配置对象
 	 */
@@ -102,9 +105,24 @@ public abstract class RASPContext implements Closeable {
 	protected final RASPAppProperties appProperties;
 
 	/**
-	 * 记录当前context发生的攻击列表
+	 * 记录当前context发生的攻击类型，按模块序号（RASPModuleType#getOrdinal）标记
+	 */
+	protected final BitSet raspAttackTypeList = new BitSet();
+
+	/**
+	 * 当前请求需要检测的模块，第一次调用mustFilter时初始化，白名单请求为空集合
+	 */
+	private BitSet filterModules;
+
+	/**
+	 * RASP检测熔断时间（纳秒），<=0 表示不限制
 	 */
-	protected final Set<RASPModuleType> raspAttackTypeList = new HashSet<RASPModuleType>();
+	private long processTimeoutNanos;
+
+	/**
+	 * 白名单请求不检测任何模块
+	 */
+	private static final BitSet EMPTY_MODULES = new BitSet(0);
 
 	public RASPContext(MethodHookEvent event) {
 		this(event, "/ROOT");
@@ -117,8 +135,10 @@ public abstract class RASPContext implements Closeable {
 		this.cacheClass = event.getThisObject();
 		this.cachedRequest = new RASPRequestCached();
 
-		// 获取Web应用配置，第一次请求的时候会比较耗时，因为初始化日志对象和配置文件
-		this.applicationConfig = RASPConfiguration.getApplicationConfig(this);
+		// 获取Web应用运行时对象，第一次请求的时候会比较耗时，因为初始化日志对象和配置文件
+		this.appRuntime = RASPConfiguration.getAppRuntime(this);
+		this.contextName = appRuntime.getContextName();
+		this.applicationConfig = appRuntime.getApplicationConfig();
 		this.appProperties = applicationConfig.getRaspProperties();
 		this.silent = appProperties.isSilent();
 		this.moduleDefense = appProperties.isModuleDefense();
@@ -160,7 +180,7 @@ public abstract class RASPContext implements Closeable {
 	 */
 	public void addAttackInfo(RASPAttackInfo attack) {
 		// 同一次请求中的同一个类型的攻击只记录一次
-		if (raspAttackTypeList.contains(attack.getRaspModuleType())) {
+		if (hasAttackType(attack.getRaspModuleType())) {
 			return;
 		}
 
@@ -178,34 +198,14 @@ public abstract class RASPContext implements Closeable {
 	}
 
 	/**
-	 * 动态获取当前Web应用的Logger
+	 * 动态获取当前Web应用的Logger，访问日志、攻击日志和调用链日志应直接使用RASPAppRuntime中缓存的Logger
 	 *
 	 * @param fileName     文件名
 	 * @param loggerPrefix logger后缀
 	 * @return 当前Web应用Logger
 	 */
 	public Logger getAppLogger(String fileName, String loggerPrefix) {
-		String fileSize = AGENT_PROPERTIES.getLogBufferSize();
-
-		// 初始化contextName
-		String contextName = getContextName();
-
-		// 生成当前应用的Logger名称
-		String loggerName = createLoggerName(loggerPrefix, contextName);
-
-		// 检测Logger是否已初始化，无需重复创建logger（会导致日志生成重复记录）
-		if (!hasLogger(loggerName)) {
-			// RASP日志目录
-			File logDir = new File(RASP_LOG_DIRECTORY, contextName);
-
-			if (!logDir.exists() && !logDir.mkdirs()) {
-				AGENT_LOGGER.error("初始化{}日志对象失败，无法创建目录：{}", contextName, logDir);
-			}
-
-			return createRASPLogger(loggerName, new File(logDir, fileName), INFO, "%msg%n", fileSize);
-		}
-
-		return RASPLogger.getLogger(loggerName);
+		return appRuntime.createAppLogger(fileName, loggerPrefix);
 	}
 
 	/**
@@ -250,7 +250,23 @@ public abstract class RASPContext implements Closeable {
 	 * @return 攻击集合
 	 */
 	public Set<RASPModuleType> getRaspAttackTypeList() {
-		return raspAttackTypeList;
+		Set<RASPModuleType> types = new LinkedHashSet<RASPModuleType>();
+
+		for (int i = raspAttackTypeList.nextSetBit(0); i >= 0; i = raspAttackTypeList.nextSetBit(i + 1)) {
+			types.add(RASPModuleType.valueOf(i));
+		}
+
+		return types;
+	}
+
+	/**
+	 * 当前context中是否已记录该类型的攻击
+	 *
+	 * @param moduleType 模块类型
+	 * @return 是否已记录
+	 */
+	public boolean hasAttackType(RASPModuleType moduleType) {
+		return raspAttackTypeList.get(moduleType.getOrdinal());
 	}
 
 	/**
@@ -265,26 +281,20 @@ public abstract class RASPContext implements Closeable {
 			return false;
 		}
 
-		// 检测是否是白名单URL
-		if (isWhitelist()) {
-			return false;
-		}
+		BitSet modules = filterModules;
 
-		RASPAppProperties appProperties = getAppProperties();
+		// 第一次检测时缓存当前请求需要检测的模块：白名单URL不检测任何模块
+		if (modules == null) {
+			modules = initFilterModules();
+		}
 
 		// 待检测的模块是否开启
-		if (!arrayContains(appProperties.getOpenModules(), moduleType.hashCode())) {
+		if (!modules.get(moduleType.getOrdinal())) {
 			return false;
 		}
 
-		// 计算RASP已消耗的时间（ns -> ms）
-		long timeInterval = (nanoTime() - getRequestStartNanoTime()) / 1000000;
-
-		// RASP检测时间熔断配置
-		int timeout = appProperties.getRaspProcessTimeout();
-
-		// 检测RASP模块处理时间是否触发熔断（ms）
-		if (timeout > 0 && timeInterval > timeout) {
+		// 检测RASP模块处理时间是否触发熔断
+		if (processTimeoutNanos > 0 && nanoTime() - getRequestStartNanoTime() > processTimeoutNanos) {
 			// 触发RASP熔断机制后禁用RASP模块检测
 			this.setModuleDefense(false);
 
@@ -294,6 +304,23 @@ public abstract class RASPContext implements Closeable {
 		return true;
 	}
 
+	private BitSet initFilterModules() {
+		RASPAppProperties appProperties = getAppProperties();
+
+		// RASP检测时间熔断配置（ms -> ns）
+		this.processTimeoutNanos = appProperties.getRaspProcessTimeout() * 1000000L;
+		this.filterModules = isWhitelist() ? EMPTY_MODULES : appProperties.getOpenModules();
+
+		return filterModules;
+	}
+
+	/**
+	 * 清除缓存的待检测模块，请求路径或白名单状态改变后必须调用
+	 */
+	protected void resetFilterModules() {
+		this.filterModules = null;
+	}
+
 	/**
 	 * 获取应用的Context名称，自动替换"/"为"_"，如："/console/ibm/"返回"console_ibm"
 	 *
@@ -322,7 +349,7 @@ public abstract class RASPContext implements Closeable {
 	 * @return 攻击日志Logger对象
 	 */
 	public Logger initAttackLogger() {
-		return getAppLogger(ATTACK_LOG_FILE_NAME, ATTACK_LOGGER_PREFIX);
+		return appRuntime.getAttackLogger();
 	}
 
 	/**
@@ -331,17 +358,33 @@ public abstract class RASPContext implements Closeable {
 	 * @return 访问日志Logger对象
 	 */
 	public Logger initAccessLogger() {
-		return getAppLogger(ACCESS_LOG_FILE_NAME, ACCESS_LOGGER_PREFIX);
+		return appRuntime.getAccessLogger();
+	}
+
+	/**
+	 * 获取RASP调用链日志Logger对象
+	 *
+	 * @return 调用链日志Logger对象
+	 */
+	public Logger initTraceLogger() {
+		return appRuntime.getTraceLogger();
 	}
 
 	public void initAppLogger() {
-		// 初始化访问日志
+		// 访问日志和攻击日志在创建Web应用运行时对象时已初始化
 		initAccessLogger();
-
-		// 初始化攻击日志
 		initAttackLogger();
 	}
 
+	/**
+	 * 获取Web应用运行时对象
+	 *
+	 * @return Web应用运行时对象
+	 */
+	public RASPAppRuntime getAppRuntime() {
+		return appRuntime;
+	}
+
 	public void addAttackLog(RASPAttackInfo attack) {
 		if (attack == null) {
 			return;
@@ -349,15 +392,15 @@ public abstract class RASPContext implements Closeable {
 
 		try {
 			// 缓存攻击类型，防止重复记录
-			raspAttackTypeList.add(attack.getRaspModuleType());
+			raspAttackTypeList.set(attack.getRaspModuleType().getOrdinal());
 
 			Logger        logger    = initAttackLogger();
-			RASPAttackLog attackLog = createAttackLog(attack);
+			RASPAttackLog attackLog = coalesceAttackLog(this, attack, logger);
 
 			// 记录攻击请求
 			if (attackLog != null) {
 				// 记录攻击日志
-				addRASPLogData(new RASPLogData(toJson(attackLog), logger, true));
+				addRASPLogData(new RASPLogData(attackLog, logger, true));
 			}
 		} catch (Exception e) {
 			AGENT_LOGGER.error(AGENT_NAME + "写入攻击日志异常：" + e, e);
@@ -368,6 +411,16 @@ public abstract class RASPContext implements Closeable {
 		// 记录访问日志（必须开启Servlet输入流Hook）
 		if (appProperties.isServletStreamHook()) {
 			try {
+				// 聚合访问日志模式只在内存中统计，由日志同步线程定时输出
+				if (AGENT_PROPERTIES.isAccessLogAggregate()) {
+					appRuntime.getAccessLogAggregator().add(
+							getRequestPath(), getRequestMethod(), getResponseStatus(),
+							getRequestContentLength(), nanoTime() - requestStartNanoTime
+					);
+
+					return;
+				}
+
 				RASPAccessLog accessLog = createAccessLog();
 
 				if (accessLog != null) {
@@ -375,7 +428,7 @@ public abstract class RASPContext implements Closeable {
 					Logger accessLogger = initAccessLogger();
 
 					// 记录访问日志
-					addRASPLogData(new RASPLogData(toJson(accessLog), accessLogger, false));
+					addRASPLogData(new RASPLogData(toJsonBytes(accessLog), accessLogger, false));
 				}
 			} catch (Exception e) {
 				AGENT_LOGGER.error(AGENT_NAME + "写入访问日志异常：" + e, e);
@@ -391,6 +444,33 @@ public abstract class RASPContext implements Closeable {
 		return new RASPAccessLog(this);
 	}
 
+	/**
+	 * 获取请求方法，非Http请求返回null
+	 *
+	 * @return 请求方法
+	 */
+	public String getRequestMethod() {
+		return null;
+	}
+
+	/**
+	 * 获取响应状态码，无法获取时返回0
+	 *
+	 * @return 响应状态码
+	 */
+	public int getResponseStatus() {
+		return 0;
+	}
+
+	/**
+	 * 获取请求体长度，无法获取时返回-1
+	 *
+	 * @return 请求体长度
+	 */
+	public long getRequestContentLength() {
+		return -1;
+	}
+
 	/**
 	 * 获取Web应用配置对象
 	 *
@@ -0,0 +1,50 @@
+package org.javaweb.rasp.commons.context;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 传递RASP上下文的线程池，提交（submit、invokeAll等）的任务最终都会调用execute，
+ * 在execute中使用提交任务线程的RASP上下文包装任务。
+ */
+public class RASPContextExecutorService extends AbstractExecutorService {
+
+	private final ExecutorService executor;
+
+	public RASPContextExecutorService(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		executor.execute(RASPContextPropagation.wrap(command));
+	}
+
+	@Override
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		return executor.shutdownNow();
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return executor.isShutdown();
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return executor.isTerminated();
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return executor.awaitTermination(timeout, unit);
+	}
+
+}
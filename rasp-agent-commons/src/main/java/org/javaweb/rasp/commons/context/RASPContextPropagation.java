@@ -0,0 +1,138 @@
+package org.javaweb.rasp.commons.context;
+
+import java.util.concurrent.Callable;
+
+import static org.javaweb.rasp.commons.context.RASPRequestContextManager.getContext;
+import static org.javaweb.rasp.commons.context.RASPRequestContextManager.restoreContext;
+
+/**
+ * RASP上下文传递，请求中创建的子线程会继承RASP上下文，但线程池中已创建的线程不会，
+ * 需要在这类线程中处理当前请求时（如：线程池、Servlet 3.0 AsyncContext#start），使用wrap方法包装任务，
+ * 任务执行前设置提交任务时的RASP上下文，执行后恢复线程原来的RASP上下文。
+ * <p>
+ * 被包装的任务可能在请求结束后才执行，任务执行时请求已结束则不设置RASP上下文。
+ */
+public class RASPContextPropagation {
+
+	/**
+	 * 包装Runnable，当前线程没有RASP上下文时返回原对象
+	 *
+	 * @param task 任务
+	 * @return 传递RASP上下文的任务
+	 */
+	public static Runnable wrap(Runnable task) {
+		RASPContext context = capture();
+
+		if (context == null || task == null || task instanceof ContextRunnable) {
+			return task;
+		}
+
+		return new ContextRunnable(context, task);
+	}
+
+	/**
+	 * 包装Callable，当前线程没有RASP上下文时返回原对象
+	 *
+	 * @param task 任务
+	 * @param <T>  返回值类型
+	 * @return 传递RASP上下文的任务
+	 */
+	public static <T> Callable<T> wrap(Callable<T> task) {
+		RASPContext context = capture();
+
+		if (context == null || task == null || task instanceof ContextCallable) {
+			return task;
+		}
+
+		return new ContextCallable<T>(context, task);
+	}
+
+	/**
+	 * 获取当前线程中需要传递的RASP上下文
+	 *
+	 * @return RASP上下文
+	 */
+	public static RASPContext capture() {
+		RASPContext context = getContext();
+
+		if (context == null || context.isContextClosed()) {
+			return null;
+		}
+
+		return context;
+	}
+
+	/**
+	 * 设置当前线程的RASP上下文，请求已结束时不设置
+	 *
+	 * @param context 传递的RASP上下文
+	 * @return 当前线程原来的RASP上下文，执行结束后需要调用detach恢复
+	 */
+	public static RASPContext attach(RASPContext context) {
+		RASPContext previous = getContext();
+
+		if (context != previous) {
+			restoreContext(context != null && !context.isContextClosed() ? context : null);
+		}
+
+		return previous;
+	}
+
+	/**
+	 * 恢复当前线程原来的RASP上下文，原来没有RASP上下文时清除
+	 *
+	 * @param previous attach返回的RASP上下文
+	 */
+	public static void detach(RASPContext previous) {
+		restoreContext(previous);
+	}
+
+	private static class ContextRunnable implements Runnable {
+
+		private final RASPContext context;
+
+		private final Runnable task;
+
+		ContextRunnable(RASPContext context, Runnable task) {
+			this.context = context;
+			this.task = task;
+		}
+
+		@Override
+		public void run() {
+			RASPContext previous = attach(context);
+
+			try {
+				task.run();
+			} finally {
+				detach(previous);
+			}
+		}
+
+	}
+
+	private static class ContextCallable<T> implements Callable<T> {
+
+		private final RASPContext context;
+
+		private final Callable<T> task;
+
+		ContextCallable(RASPContext context, Callable<T> task) {
+			this.context = context;
+			this.task = task;
+		}
+
+		@Override
+		public T call() throws Exception {
+			RASPContext previous = attach(context);
+
+			try {
+				return task.call();
+			} finally {
+				detach(previous);
+			}
+		}
+
+	}
+
+}
@@ -7,6 +7,7 @@ import java.net.Socket;
 import java.nio.channels.SocketChannel;
 
 import static org.javaweb.rasp.commons.config.RASPWhitelist.isWhitelistRequest;
+import static org.javaweb.rasp.commons.utils.IPV4Utils.parseIPAddress;
 
 public abstract class RASPDefaultContext extends RASPContext {
 
@@ -35,6 +36,13 @@ public abstract class RASPDefaultContext extends RASPContext {
 	 */
 	protected boolean whitelist = true;
 
+	/**
+	 * 解析后的客户端IP地址，第一次使用时解析
+	 */
+	private byte[] requestAddress;
+
+	private boolean requestAddressParsed;
+
 	public RASPDefaultContext(MethodHookEvent event, String requestIP, String serverIP, int serverPort) {
 		super(event);
 
@@ -62,6 +70,29 @@ public abstract class RASPDefaultContext extends RASPContext {
 		return this.requestIP;
 	}
 
+	/**
+	 * 获取解析后的客户端IP地址（IPv4为4字节，IPv6为16字节），同一个请求只解析一次
+	 *
+	 * @return 客户端IP地址，无法解析时返回null
+	 */
+	public byte[] getRequestAddress() {
+		if (!requestAddressParsed) {
+			this.requestAddress = parseIPAddress(requestIP);
+			this.requestAddressParsed = true;
+		}
+
+		return requestAddress;
+	}
+
+	/**
+	 * 检测客户端IP是否是IP黑名单
+	 *
+	 * @return 是否是IP黑名单
+	 */
+	public boolean isIpBlacklist() {
+		return appProperties.isIpBlacklist(getRequestAddress());
+	}
+
 	@Override
 	public String getServerIP() {
 		return serverIP;
@@ -75,6 +106,8 @@ public abstract class RASPDefaultContext extends RASPContext {
 	public void initRequestPath(String requestPath) {
 		this.requestPath = requestPath;
 		this.whitelist = isWhitelistRequest(this);
+
+		resetFilterModules();
 	}
 
 	@Override
@@ -44,7 +44,7 @@ public class RASPRequestContextManager {
 	}
 
 	/**
-	 * Http请求上下文
+	 * Http请求上下文，请求中创建的子线程会继承，线程池中已创建的线程需要通过RASPContextPropagation传递
 	 */
 	private static final ThreadLocal<RASPContext> RASP_CONTEXT = new InheritableThreadLocal<RASPContext>();
 
@@ -97,6 +97,19 @@ public class RASPRequestContextManager {
 		return context;
 	}
 
+	/**
+	 * 恢复当前线程的RASP上下文，context为null时清除
+	 *
+	 * @param context RASP上下文
+	 */
+	static void restoreContext(RASPContext context) {
+		if (context != null) {
+			RASP_CONTEXT.set(context);
+		} else {
+			RASP_CONTEXT.remove();
+		}
+	}
+
 	/**
 	 * 注册request防御模块
 	 */
@@ -9,10 +9,44 @@ import java.io.File;
 
 public abstract class RASPServletRequestContext extends RASPRequestContext {
 
+	/**
+	 * Servlet 3.0以下的容器不支持HttpServletResponse#getStatus
+	 */
+	private static volatile boolean responseStatusUnsupported;
+
 	public RASPServletRequestContext(MethodHookEvent event, String contextPath, String requestPath) {
 		super(event, contextPath, requestPath);
 	}
 
+	@Override
+	public String getRequestMethod() {
+		HttpServletRequestProxy request = getServletRequest();
+
+		return request != null ? request.getMethod() : null;
+	}
+
+	@Override
+	public int getResponseStatus() {
+		HttpServletResponseProxy response = getServletResponse();
+
+		if (response == null || responseStatusUnsupported) {
+			return 0;
+		}
+
+		try {
+			return response.getStatus();
+		} catch (Throwable t) {
+			responseStatusUnsupported = true;
+
+			return 0;
+		}
+	}
+
+	@Override
+	public long getRequestContentLength() {
+		return getContentLength();
+	}
+
 	public abstract String getUserAgent();
 
 	public abstract boolean isJspFile();
@@ -0,0 +1,352 @@
+package org.javaweb.rasp.commons.decoder;
+
+import java.io.IOException;
+
+/**
+ * JSON流式解析器，解析出字符串和数字类型的值，参数路径和JsonReader#getPath一致，如："$.user.roles[0]"。
+ * <p>
+ * 解析器是一个可在任意字符处暂停的状态机，每次只处理当前写入的字符，不需要等待请求体完整后再解析。
+ */
+public class RASPJsonStreamDecoder extends RASPStreamDecoder {
+
+	/**
+	 * 等待值
+	 */
+	private static final int VALUE = 0;
+
+	/**
+	 * 对象开始后等待第一个名称或"}"
+	 */
+	private static final int FIRST_NAME = 1;
+
+	/**
+	 * 等待名称
+	 */
+	private static final int NAME = 2;
+
+	/**
+	 * 等待":"
+	 */
+	private static final int COLON = 3;
+
+	/**
+	 * 等待","或结束符
+	 */
+	private static final int COMMA = 4;
+
+	/**
+	 * 数组开始后等待第一个值或"]"
+	 */
+	private static final int FIRST_VALUE = 5;
+
+	/**
+	 * 字符串中
+	 */
+	private static final int STRING = 6;
+
+	/**
+	 * 字符串转义字符
+	 */
+	private static final int ESCAPE = 7;
+
+	/**
+	 * 字符串Unicode转义字符（\\uXXXX）
+	 */
+	private static final int UNICODE = 8;
+
+	/**
+	 * 数字中
+	 */
+	private static final int NUMBER = 9;
+
+	/**
+	 * true、false、null中
+	 */
+	private static final int LITERAL = 10;
+
+	/**
+	 * 顶层值已解析完成
+	 */
+	private static final int DONE = 11;
+
+	private int state = VALUE;
+
+	/**
+	 * 当前字符串是否是对象名称
+	 */
+	private boolean nameString;
+
+	private int unicodeValue;
+
+	private int unicodeLength;
+
+	/**
+	 * 每层是否是数组
+	 */
+	private final boolean[] arrays = new boolean[MAX_DEPTH];
+
+	/**
+	 * 每层当前的对象名称
+	 */
+	private final String[] names = new String[MAX_DEPTH];
+
+	/**
+	 * 每层当前的数组下标
+	 */
+	private final int[] indices = new int[MAX_DEPTH];
+
+	private int depth;
+
+	public RASPJsonStreamDecoder(RASPParameterListener listener) {
+		super(listener);
+	}
+
+	@Override
+	protected void process(char[] chars, int off, int len) throws IOException {
+		int end = off + len;
+
+		for (int i = off; i < end && !isFailed(); i++) {
+			char c = chars[i];
+
+			switch (state) {
+				case STRING:
+					if (c == '"') {
+						endString();
+					} else if (c == '\\') {
+						state = ESCAPE;
+					} else {
+						appendValue(c);
+					}
+
+					break;
+				case ESCAPE:
+					escape(c);
+					break;
+				case UNICODE:
+					unicode(c);
+					break;
+				case NUMBER:
+				case LITERAL:
+					if (isLiteralChar(c)) {
+						appendValue(c);
+					} else {
+						endLiteral();
+
+						// 当前字符是数字/常量之后的分隔符，需要重新处理
+						i--;
+					}
+
+					break;
+				default:
+					structure(c);
+			}
+		}
+	}
+
+	private void structure(char c) throws IOException {
+		if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+			return;
+		}
+
+		switch (state) {
+			case VALUE:
+				beginValue(c);
+				break;
+			case FIRST_VALUE:
+				if (c == ']') {
+					endContainer();
+				} else {
+					beginValue(c);
+				}
+
+				break;
+			case FIRST_NAME:
+			case NAME:
+				if (c == '"') {
+					nameString = true;
+					value.setLength(0);
+					state = STRING;
+				} else if (c == '}' && state == FIRST_NAME) {
+					endContainer();
+				} else {
+					fail();
+				}
+
+				break;
+			case COLON:
+				if (c == ':') {
+					state = VALUE;
+				} else {
+					fail();
+				}
+
+				break;
+			case COMMA:
+				if (depth == 0) {
+					fail();
+				} else if (c == ',') {
+					if (arrays[depth - 1]) {
+						indices[depth - 1]++;
+						state = VALUE;
+					} else {
+						state = NAME;
+					}
+				} else if (c == (arrays[depth - 1] ? ']' : '}')) {
+					endContainer();
+				} else {
+					fail();
+				}
+
+				break;
+			default:
+				// 顶层值之后只允许空白字符
+				fail();
+		}
+	}
+
+	private void beginValue(char c) {
+		if (c == '"') {
+			nameString = false;
+			value.setLength(0);
+			state = STRING;
+		} else if (c == '{' || c == '[') {
+			if (depth == MAX_DEPTH) {
+				fail();
+				return;
+			}
+
+			boolean array = c == '[';
+
+			arrays[depth] = array;
+			names[depth] = null;
+			indices[depth] = 0;
+			depth++;
+			state = array ? FIRST_VALUE : FIRST_NAME;
+		} else if (c == '-' || (c >= '0' && c <= '9')) {
+			value.setLength(0);
+			value.append(c);
+			state = NUMBER;
+		} else if (c == 't' || c == 'f' || c == 'n') {
+			value.setLength(0);
+			value.append(c);
+			state = LITERAL;
+		} else {
+			fail();
+		}
+	}
+
+	private void endContainer() {
+		depth--;
+		endValue();
+	}
+
+	/**
+	 * 值解析完成
+	 */
+	private void endValue() {
+		state = depth == 0 ? DONE : COMMA;
+	}
+
+	private void endString() throws IOException {
+		if (nameString) {
+			names[depth - 1] = value.toString();
+			state = COLON;
+		} else {
+			emitValue();
+			endValue();
+		}
+	}
+
+	private void endLiteral() throws IOException {
+		if (state == NUMBER) {
+			emitValue();
+		} else {
+			String literal = value.toString();
+
+			if (!"true".equals(literal) && !"false".equals(literal) && !"null".equals(literal)) {
+				fail();
+				return;
+			}
+		}
+
+		endValue();
+	}
+
+	private void emitValue() throws IOException {
+		StringBuilder path = pathBuilder().append('$');
+
+		for (int i = 0; i < depth; i++) {
+			if (arrays[i]) {
+				path.append('[').append(indices[i]).append(']');
+			} else if (names[i] != null) {
+				path.append('.').append(names[i]);
+			}
+		}
+
+		emit(value.toString());
+	}
+
+	private void escape(char c) {
+		state = STRING;
+
+		switch (c) {
+			case 'b':
+				appendValue('\b');
+				break;
+			case 'f':
+				appendValue('\f');
+				break;
+			case 'n':
+				appendValue('\n');
+				break;
+			case 'r':
+				appendValue('\r');
+				break;
+			case 't':
+				appendValue('\t');
+				break;
+			case 'u':
+				unicodeValue = 0;
+				unicodeLength = 0;
+				state = UNICODE;
+				break;
+			default:
+				// \"、\\、\/以及其他非标准转义直接使用转义后的字符
+				appendValue(c);
+		}
+	}
+
+	private void unicode(char c) {
+		int digit = Character.digit(c, 16);
+
+		if (digit < 0) {
+			fail();
+			return;
+		}
+
+		unicodeValue = (unicodeValue << 4) | digit;
+
+		if (++unicodeLength == 4) {
+			appendValue((char) unicodeValue);
+			state = STRING;
+		}
+	}
+
+	private static boolean isLiteralChar(char c) {
+		return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') ||
+				c == '-' || c == '+' || c == '.';
+	}
+
+	@Override
+	protected void finish() throws IOException {
+		// 顶层值为数字时没有结束符
+		if (state == NUMBER || state == LITERAL) {
+			endLiteral();
+		}
+
+		if (state != DONE) {
+			fail();
+		}
+	}
+
+}
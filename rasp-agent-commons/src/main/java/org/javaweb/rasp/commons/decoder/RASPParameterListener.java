@@ -0,0 +1,19 @@
+package org.javaweb.rasp.commons.decoder;
+
+import java.io.IOException;
+
+/**
+ * 流式解析请求参数监听器，RASPStreamDecoder每解析出一个完整的参数值时回调
+ */
+public interface RASPParameterListener {
+
+	/**
+	 * 解析到请求参数
+	 *
+	 * @param key   参数路径，如JSON："$.user.name"，XML："/user/name"、"/user/@id"
+	 * @param value 参数值
+	 * @throws IOException 需要终止请求时抛出异常
+	 */
+	void onParameter(String key, String value) throws IOException;
+
+}
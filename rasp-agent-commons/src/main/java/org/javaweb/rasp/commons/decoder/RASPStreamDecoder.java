@@ -0,0 +1,224 @@
+package org.javaweb.rasp.commons.decoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * 流式请求体解析器，请求体字节写入RASPOutputStreamCache时同步解析，不需要等待请求体缓存完成后再转换成字符串解析。
+ * <p>
+ * 解析器按UTF-8解码字节，解析过程中只缓存当前参数值和参数路径，内存占用与请求体大小无关；
+ * 当请求体格式错误、嵌套层数/参数值长度/参数数量超过限制或包含不支持的内容时停止解析，
+ * 调用方应检测isCompleted并在未完成时使用完整请求体重新解析。
+ */
+public abstract class RASPStreamDecoder {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * 最大嵌套层数
+	 */
+	protected static final int MAX_DEPTH = 128;
+
+	/**
+	 * 单个参数值最大字符数
+	 */
+	protected static final int MAX_VALUE_LENGTH = 256 * 1024;
+
+	/**
+	 * 最大参数数量
+	 */
+	protected static final int MAX_PARAMETERS = 10000;
+
+	private static final int BUFFER_SIZE = 4096;
+
+	private final CharsetDecoder charsetDecoder = UTF_8.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+	private final ByteBuffer byteBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+	private final CharBuffer charBuffer = CharBuffer.allocate(BUFFER_SIZE);
+
+	private final RASPParameterListener listener;
+
+	/**
+	 * 参数值缓存
+	 */
+	protected final StringBuilder value = new StringBuilder();
+
+	/**
+	 * 参数路径缓存
+	 */
+	private final StringBuilder path = new StringBuilder();
+
+	private int parameterCount;
+
+	/**
+	 * 是否已停止解析
+	 */
+	private boolean failed;
+
+	private boolean ended;
+
+	protected RASPStreamDecoder(RASPParameterListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * 写入请求体字节
+	 *
+	 * @param b   字节数组
+	 * @param off 偏移量
+	 * @param len 长度
+	 * @throws IOException 参数监听器要求终止请求
+	 */
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0 && !failed && !ended) {
+			int n = Math.min(byteBuffer.remaining(), len);
+
+			byteBuffer.put(b, off, n);
+			off += n;
+			len -= n;
+
+			decode(false);
+		}
+	}
+
+	/**
+	 * 写入单个字节
+	 *
+	 * @param b 字节
+	 * @throws IOException 参数监听器要求终止请求
+	 */
+	public void write(int b) throws IOException {
+		if (!failed && !ended) {
+			byteBuffer.put((byte) b);
+
+			if (!byteBuffer.hasRemaining()) {
+				decode(false);
+			}
+		}
+	}
+
+	/**
+	 * 请求体写入完成，处理剩余的字节
+	 *
+	 * @throws IOException 参数监听器要求终止请求
+	 */
+	public void end() throws IOException {
+		if (failed || ended) {
+			return;
+		}
+
+		decode(true);
+
+		if (!failed) {
+			finish();
+		}
+
+		ended = true;
+	}
+
+	private void decode(boolean endOfInput) throws IOException {
+		byteBuffer.flip();
+
+		while (true) {
+			boolean overflow = charsetDecoder.decode(byteBuffer, charBuffer, endOfInput).isOverflow();
+
+			if (endOfInput && !overflow) {
+				charsetDecoder.flush(charBuffer);
+			}
+
+			charBuffer.flip();
+
+			if (charBuffer.hasRemaining()) {
+				process(charBuffer.array(), charBuffer.position(), charBuffer.remaining());
+			}
+
+			charBuffer.clear();
+
+			if (!overflow || failed) {
+				break;
+			}
+		}
+
+		byteBuffer.compact();
+	}
+
+	/**
+	 * 是否已完整解析请求体，未完成时需要使用完整请求体重新解析
+	 *
+	 * @return 是否完成
+	 */
+	public boolean isCompleted() {
+		return ended && !failed;
+	}
+
+	public boolean isFailed() {
+		return failed;
+	}
+
+	/**
+	 * 停止解析，请求体不完整（如：缓存时丢弃了部分数据）时也需要调用，之后需要使用完整请求体解析
+	 */
+	public void fail() {
+		this.failed = true;
+	}
+
+	/**
+	 * 追加参数值字符，超过最大长度时停止解析
+	 */
+	protected boolean appendValue(char c) {
+		if (value.length() >= MAX_VALUE_LENGTH) {
+			fail();
+			return false;
+		}
+
+		value.append(c);
+
+		return true;
+	}
+
+	/**
+	 * 获取参数路径缓存，子类拼接参数路径后调用emit
+	 */
+	protected StringBuilder pathBuilder() {
+		path.setLength(0);
+
+		return path;
+	}
+
+	/**
+	 * 回调参数监听器
+	 */
+	protected void emit(String value) throws IOException {
+		if (++parameterCount > MAX_PARAMETERS) {
+			fail();
+			return;
+		}
+
+		listener.onParameter(path.toString(), value);
+	}
+
+	/**
+	 * 解析字符
+	 *
+	 * @param chars 字符数组
+	 * @param off   偏移量
+	 * @param len   长度
+	 * @throws IOException 参数监听器要求终止请求
+	 */
+	protected abstract void process(char[] chars, int off, int len) throws IOException;
+
+	/**
+	 * 请求体解析完成，检测解析器是否处于结束状态，未结束时应调用fail
+	 *
+	 * @throws IOException 参数监听器要求终止请求
+	 */
+	protected abstract void finish() throws IOException;
+
+}
@@ -0,0 +1,545 @@
+package org.javaweb.rasp.commons.decoder;
+
+import java.io.IOException;
+
+/**
+ * XML流式解析器（类似StAX的事件扫描），解析出元素文本和属性值，参数路径如："/user/name"、"/user/@id"。
+ * <p>
+ * 解析器是一个可在任意字符处暂停的状态机，支持注释、CDATA、处理指令和预定义实体/字符实体；
+ * 包含DOCTYPE（可能定义外部实体）或非UTF-8编码声明的请求体会停止解析，由完整请求体解析流程处理。
+ */
+public class RASPXmlStreamDecoder extends RASPStreamDecoder {
+
+	/**
+	 * 元素文本
+	 */
+	private static final int TEXT = 0;
+
+	/**
+	 * "<"之后
+	 */
+	private static final int LT = 1;
+
+	/**
+	 * 开始标签名称
+	 */
+	private static final int START_TAG = 2;
+
+	/**
+	 * 开始标签属性之间
+	 */
+	private static final int ATTRIBUTES = 3;
+
+	/**
+	 * 属性名称
+	 */
+	private static final int ATTRIBUTE_NAME = 4;
+
+	/**
+	 * 属性名称之后等待"="
+	 */
+	private static final int ATTRIBUTE_EQ = 5;
+
+	/**
+	 * "="之后等待引号
+	 */
+	private static final int ATTRIBUTE_QUOTE = 6;
+
+	/**
+	 * 属性值
+	 */
+	private static final int ATTRIBUTE_VALUE = 7;
+
+	/**
+	 * 空元素"/"之后等待">"
+	 */
+	private static final int EMPTY_TAG = 8;
+
+	/**
+	 * 结束标签
+	 */
+	private static final int END_TAG = 9;
+
+	/**
+	 * "<!"之后
+	 */
+	private static final int BANG = 10;
+
+	private static final int COMMENT = 11;
+
+	private static final int CDATA = 12;
+
+	/**
+	 * 处理指令
+	 */
+	private static final int PI = 13;
+
+	/**
+	 * 实体引用
+	 */
+	private static final int ENTITY = 14;
+
+	private static final String COMMENT_START = "--";
+
+	private static final String CDATA_START = "[CDATA[";
+
+	/**
+	 * 标签名称、属性名称、实体名称、处理指令最大长度
+	 */
+	private static final int MAX_NAME_LENGTH = 1024;
+
+	private int state = TEXT;
+
+	/**
+	 * 实体引用结束后返回的状态
+	 */
+	private int entityReturnState;
+
+	private final StringBuilder name = new StringBuilder();
+
+	private final StringBuilder attributeName = new StringBuilder();
+
+	/**
+	 * 实体名称、"<!"之后的字符、处理指令内容
+	 */
+	private final StringBuilder buffer = new StringBuilder();
+
+	private char quote;
+
+	/**
+	 * 注释/CDATA/处理指令结束符之前连续的"-"、"]"、"?"数量
+	 */
+	private int endMarks;
+
+	private final String[] elements = new String[MAX_DEPTH];
+
+	private int depth;
+
+	/**
+	 * 根元素是否已结束
+	 */
+	private boolean rootClosed;
+
+	public RASPXmlStreamDecoder(RASPParameterListener listener) {
+		super(listener);
+	}
+
+	@Override
+	protected void process(char[] chars, int off, int len) throws IOException {
+		int end = off + len;
+
+		for (int i = off; i < end && !isFailed(); i++) {
+			char c = chars[i];
+
+			switch (state) {
+				case TEXT:
+					text(c);
+					break;
+				case LT:
+					lt(c);
+					break;
+				case START_TAG:
+					startTag(c);
+					break;
+				case ATTRIBUTES:
+					attributes(c);
+					break;
+				case ATTRIBUTE_NAME:
+					attributeName(c);
+					break;
+				case ATTRIBUTE_EQ:
+					if (c == '=') {
+						state = ATTRIBUTE_QUOTE;
+					} else if (!isWhitespace(c)) {
+						fail();
+					}
+
+					break;
+				case ATTRIBUTE_QUOTE:
+					if (c == '"' || c == '\'') {
+						quote = c;
+						value.setLength(0);
+						state = ATTRIBUTE_VALUE;
+					} else if (!isWhitespace(c)) {
+						fail();
+					}
+
+					break;
+				case ATTRIBUTE_VALUE:
+					attributeValue(c);
+					break;
+				case EMPTY_TAG:
+					if (c == '>') {
+						pushElement();
+						popElement();
+						state = TEXT;
+					} else {
+						fail();
+					}
+
+					break;
+				case END_TAG:
+					endTag(c);
+					break;
+				case BANG:
+					bang(c);
+					break;
+				case COMMENT:
+					comment(c);
+					break;
+				case CDATA:
+					cdata(c);
+					break;
+				case PI:
+					pi(c);
+					break;
+				case ENTITY:
+					entity(c);
+					break;
+				default:
+					fail();
+			}
+		}
+	}
+
+	private void text(char c) {
+		if (c == '<') {
+			state = LT;
+		} else if (depth == 0) {
+			// 根元素之外只允许空白字符
+			if (!isWhitespace(c)) {
+				fail();
+			}
+		} else if (c == '&') {
+			beginEntity(TEXT);
+		} else {
+			appendValue(c);
+		}
+	}
+
+	private void lt(char c) throws IOException {
+		if (c == '/') {
+			flushText();
+			name.setLength(0);
+			state = END_TAG;
+		} else if (c == '!') {
+			buffer.setLength(0);
+			state = BANG;
+		} else if (c == '?') {
+			buffer.setLength(0);
+			endMarks = 0;
+			state = PI;
+		} else if (isNameChar(c) && !rootClosed) {
+			flushText();
+			name.setLength(0);
+			name.append(c);
+			state = START_TAG;
+		} else {
+			fail();
+		}
+	}
+
+	private void startTag(char c) {
+		if (isNameChar(c)) {
+			appendName(name, c);
+		} else if (isWhitespace(c)) {
+			state = ATTRIBUTES;
+		} else if (c == '>') {
+			pushElement();
+			state = TEXT;
+		} else if (c == '/') {
+			state = EMPTY_TAG;
+		} else {
+			fail();
+		}
+	}
+
+	private void attributes(char c) {
+		if (c == '>') {
+			pushElement();
+			state = TEXT;
+		} else if (c == '/') {
+			state = EMPTY_TAG;
+		} else if (isNameChar(c)) {
+			attributeName.setLength(0);
+			attributeName.append(c);
+			state = ATTRIBUTE_NAME;
+		} else if (!isWhitespace(c)) {
+			fail();
+		}
+	}
+
+	private void attributeName(char c) {
+		if (isNameChar(c)) {
+			appendName(attributeName, c);
+		} else if (c == '=') {
+			state = ATTRIBUTE_QUOTE;
+		} else if (isWhitespace(c)) {
+			state = ATTRIBUTE_EQ;
+		} else {
+			fail();
+		}
+	}
+
+	private void attributeValue(char c) throws IOException {
+		if (c == quote) {
+			StringBuilder path = elementPath();
+			path.append('/').append(name).append("/@").append(attributeName);
+
+			emit(value.toString());
+			value.setLength(0);
+			state = ATTRIBUTES;
+		} else if (c == '&') {
+			beginEntity(ATTRIBUTE_VALUE);
+		} else if (c == '<') {
+			fail();
+		} else {
+			appendValue(c);
+		}
+	}
+
+	private void endTag(char c) {
+		if (c == '>') {
+			if (depth == 0 || !elements[depth - 1].contentEquals(name)) {
+				fail();
+				return;
+			}
+
+			popElement();
+			state = TEXT;
+		} else if (isNameChar(c)) {
+			appendName(name, c);
+		} else if (!isWhitespace(c)) {
+			fail();
+		}
+	}
+
+	private void bang(char c) {
+		buffer.append(c);
+
+		if (COMMENT_START.contentEquals(buffer)) {
+			endMarks = 0;
+			state = COMMENT;
+		} else if (CDATA_START.contentEquals(buffer)) {
+			// 根元素之外不允许CDATA
+			if (depth == 0) {
+				fail();
+				return;
+			}
+
+			endMarks = 0;
+			state = CDATA;
+		} else if (!COMMENT_START.startsWith(buffer.toString()) && !CDATA_START.startsWith(buffer.toString())) {
+			// DOCTYPE等声明可能定义外部实体，停止解析
+			fail();
+		}
+	}
+
+	private void comment(char c) {
+		if (c == '-') {
+			endMarks++;
+		} else if (c == '>' && endMarks >= 2) {
+			state = TEXT;
+		} else {
+			endMarks = 0;
+		}
+	}
+
+	private void cdata(char c) {
+		if (c == ']') {
+			endMarks++;
+			return;
+		}
+
+		if (c == '>' && endMarks >= 2) {
+			appendMarks(endMarks - 2);
+			state = TEXT;
+		} else {
+			appendMarks(endMarks);
+			appendValue(c);
+		}
+
+		endMarks = 0;
+	}
+
+	private void appendMarks(int count) {
+		for (int i = 0; i < count; i++) {
+			appendValue(']');
+		}
+	}
+
+	private void pi(char c) {
+		if (c == '>' && endMarks > 0) {
+			endPI();
+			state = TEXT;
+			return;
+		}
+
+		if (endMarks > 0 && buffer.length() < MAX_NAME_LENGTH) {
+			buffer.append('?');
+		}
+
+		endMarks = c == '?' ? 1 : 0;
+
+		if (endMarks == 0 && buffer.length() < MAX_NAME_LENGTH) {
+			buffer.append(c);
+		}
+	}
+
+	/**
+	 * 检测XML声明中的编码，非UTF-8编码时停止解析
+	 */
+	private void endPI() {
+		String pi = buffer.toString();
+
+		if (!pi.startsWith("xml") || pi.length() < 4 || !isWhitespace(pi.charAt(3))) {
+			return;
+		}
+
+		int index = pi.indexOf("encoding");
+
+		if (index < 0) {
+			return;
+		}
+
+		int start = index + "encoding".length();
+
+		while (start < pi.length() && (pi.charAt(start) == '=' || isWhitespace(pi.charAt(start)))) {
+			start++;
+		}
+
+		if (start < pi.length()) {
+			char q   = pi.charAt(start);
+			int  end = pi.indexOf(q, start + 1);
+
+			if (end > 0) {
+				String encoding = pi.substring(start + 1, end);
+
+				if (!"UTF-8".equalsIgnoreCase(encoding) && !"UTF8".equalsIgnoreCase(encoding) &&
+						!"US-ASCII".equalsIgnoreCase(encoding)) {
+
+					fail();
+				}
+			}
+		}
+	}
+
+	private void beginEntity(int returnState) {
+		entityReturnState = returnState;
+		buffer.setLength(0);
+		state = ENTITY;
+	}
+
+	private void entity(char c) {
+		if (c != ';') {
+			if (buffer.length() >= 16) {
+				fail();
+			} else {
+				buffer.append(c);
+			}
+
+			return;
+		}
+
+		String entity = buffer.toString();
+
+		state = entityReturnState;
+
+		if ("lt".equals(entity)) {
+			appendValue('<');
+		} else if ("gt".equals(entity)) {
+			appendValue('>');
+		} else if ("amp".equals(entity)) {
+			appendValue('&');
+		} else if ("quot".equals(entity)) {
+			appendValue('"');
+		} else if ("apos".equals(entity)) {
+			appendValue('\'');
+		} else if (entity.startsWith("#")) {
+			try {
+				int codePoint = entity.startsWith("#x") ?
+						Integer.parseInt(entity.substring(2), 16) : Integer.parseInt(entity.substring(1));
+
+				for (char ch : Character.toChars(codePoint)) {
+					appendValue(ch);
+				}
+			} catch (IllegalArgumentException e) {
+				fail();
+			}
+		} else {
+			// 自定义实体需要DTD，停止解析
+			fail();
+		}
+	}
+
+	private void flushText() throws IOException {
+		if (depth > 0 && !isBlank(value)) {
+			elementPath();
+			emit(value.toString());
+		}
+
+		value.setLength(0);
+	}
+
+	private StringBuilder elementPath() {
+		StringBuilder path = pathBuilder();
+
+		for (int i = 0; i < depth; i++) {
+			path.append('/').append(elements[i]);
+		}
+
+		return path;
+	}
+
+	private void pushElement() {
+		if (depth == MAX_DEPTH) {
+			fail();
+			return;
+		}
+
+		elements[depth++] = name.toString();
+	}
+
+	private void popElement() {
+		elements[--depth] = null;
+		value.setLength(0);
+
+		if (depth == 0) {
+			rootClosed = true;
+		}
+	}
+
+	private void appendName(StringBuilder sb, char c) {
+		if (sb.length() >= MAX_NAME_LENGTH) {
+			fail();
+		} else {
+			sb.append(c);
+		}
+	}
+
+	private static boolean isNameChar(char c) {
+		return Character.isLetterOrDigit(c) || c == '_' || c == ':' || c == '-' || c == '.';
+	}
+
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+	}
+
+	private static boolean isBlank(CharSequence cs) {
+		for (int i = 0; i < cs.length(); i++) {
+			if (!isWhitespace(cs.charAt(i))) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	@Override
+	protected void finish() {
+		if (!rootClosed || state != TEXT) {
+			fail();
+		}
+	}
+
+}
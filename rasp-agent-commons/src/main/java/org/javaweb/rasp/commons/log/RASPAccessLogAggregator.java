@@ -0,0 +1,330 @@
+package org.javaweb.rasp.commons.log;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.System.currentTimeMillis;
+
+/**
+ * Web应用访问日志聚合，按（URL、请求方法、响应状态码）在内存中统计请求数、请求字节数和耗时直方图，
+ * 由日志同步线程按统计周期调用flush输出聚合访问日志（RASPAccessSummaryLog），每个统计项每个周期一条。
+ * <p>
+ * 最多统计maxKeys个统计项，超出后新的请求计入OTHER统计项。flush时会移除当前周期没有请求的统计项，
+ * 因此持续有请求的URL会一直保留，偶尔访问的URL在空闲一个周期后释放位置。
+ * URL中的数字、UUID等ID片段会被替换成"{id}"，避免同一个接口因为路径参数产生大量统计项。
+ */
+public class RASPAccessLogAggregator {
+
+	/**
+	 * 超过最大统计数时使用的URL
+	 */
+	public static final String OTHER = "__other__";
+
+	/**
+	 * 归一化URL最大长度
+	 */
+	private static final int MAX_URL_LENGTH = 256;
+
+	private final String contextPath;
+
+	private final int maxKeys;
+
+	private final ConcurrentMap<Key, Stats> statsMap = new ConcurrentHashMap<Key, Stats>();
+
+	/**
+	 * 统计项数，ConcurrentHashMap#size需要遍历所有分段
+	 */
+	private final AtomicInteger keyCount = new AtomicInteger();
+
+	private final Stats other = new Stats();
+
+	/**
+	 * 当前统计周期开始时间
+	 */
+	private volatile long startTime = currentTimeMillis();
+
+	public RASPAccessLogAggregator(String contextPath, int maxKeys) {
+		this.contextPath = contextPath;
+		this.maxKeys = maxKeys;
+	}
+
+	/**
+	 * 记录一次请求
+	 *
+	 * @param requestUrl    请求URL
+	 * @param requestMethod 请求方法
+	 * @param status        响应状态码
+	 * @param requestBytes  请求体字节数
+	 * @param latencyNanos  请求耗时（纳秒）
+	 */
+	public void add(String requestUrl, String requestMethod, int status, long requestBytes, long latencyNanos) {
+		Key   key   = new Key(normalizeUrl(requestUrl), requestMethod, status);
+		Stats stats = statsMap.get(key);
+
+		if (stats == null) {
+			stats = newStats(key);
+		}
+
+		stats.add(requestBytes, latencyNanos / 1000);
+	}
+
+	private Stats newStats(Key key) {
+		// 统计项已满
+		if (keyCount.incrementAndGet() > maxKeys) {
+			keyCount.decrementAndGet();
+
+			Stats stats = statsMap.get(key);
+
+			return stats != null ? stats : other;
+		}
+
+		Stats stats = new Stats();
+		Stats old   = statsMap.putIfAbsent(key, stats);
+
+		if (old != null) {
+			keyCount.decrementAndGet();
+
+			return old;
+		}
+
+		return stats;
+	}
+
+	/**
+	 * 输出并重置当前统计周期的统计数据，只应在日志同步线程中调用
+	 *
+	 * @return 聚合访问日志
+	 */
+	public List<RASPAccessSummaryLog> flush() {
+		List<RASPAccessSummaryLog> logs    = new ArrayList<RASPAccessSummaryLog>();
+		long                       endTime = currentTimeMillis();
+		long                       start   = startTime;
+
+		this.startTime = endTime;
+
+		Iterator<Map.Entry<Key, Stats>> it = statsMap.entrySet().iterator();
+
+		while (it.hasNext()) {
+			Map.Entry<Key, Stats> entry = it.next();
+			Key                   key   = entry.getKey();
+			Stats                 stats = entry.getValue();
+			RASPAccessSummaryLog  log   = stats.flush(key.url, key.method, key.status, start, endTime);
+
+			if (log != null) {
+				logs.add(log);
+			} else if (statsMap.remove(key, stats)) {
+				// 当前周期没有请求，释放统计项
+				keyCount.decrementAndGet();
+
+				// 移除前可能有请求线程刚获取到该统计项，计入OTHER统计项
+				if (stats.count.get() > 0) {
+					other.merge(stats);
+				}
+			}
+		}
+
+		RASPAccessSummaryLog log = other.flush(OTHER, "*", 0, start, endTime);
+
+		if (log != null) {
+			logs.add(log);
+		}
+
+		return logs;
+	}
+
+	/**
+	 * 归一化请求URL，将纯数字、UUID和长十六进制的路径片段替换为"{id}"，去掉";jsessionid"等路径参数
+	 *
+	 * @param url 请求URL
+	 * @return 归一化后的URL
+	 */
+	public static String normalizeUrl(String url) {
+		if (url == null) {
+			return "";
+		}
+
+		int semicolon = url.indexOf(';');
+
+		if (semicolon >= 0) {
+			url = url.substring(0, semicolon);
+		}
+
+		StringBuilder sb    = null;
+		int           start = 0;
+		int           len   = url.length();
+
+		for (int i = 0; i <= len; i++) {
+			if (i < len && url.charAt(i) != '/') {
+				continue;
+			}
+
+			if (isIdSegment(url, start, i)) {
+				if (sb == null) {
+					sb = new StringBuilder(len);
+					sb.append(url, 0, start);
+				}
+
+				sb.append("{id}");
+			} else if (sb != null) {
+				sb.append(url, start, i);
+			}
+
+			if (sb != null && i < len) {
+				sb.append('/');
+			}
+
+			start = i + 1;
+		}
+
+		String normalized = sb != null ? sb.toString() : url;
+
+		return normalized.length() > MAX_URL_LENGTH ? normalized.substring(0, MAX_URL_LENGTH) : normalized;
+	}
+
+	private static boolean isIdSegment(String url, int start, int end) {
+		int length = end - start;
+
+		if (length == 0) {
+			return false;
+		}
+
+		boolean allDigits = true;
+		boolean hasDigit  = false;
+
+		for (int i = start; i < end; i++) {
+			char c = url.charAt(i);
+
+			if (c >= '0' && c <= '9') {
+				hasDigit = true;
+			} else if ((c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F') || c == '-') {
+				allDigits = false;
+			} else {
+				return false;
+			}
+		}
+
+		// 纯数字，或包含数字的16位以上十六进制字符串（如UUID、MD5）
+		return allDigits || (hasDigit && length >= 16);
+	}
+
+	public String getContextPath() {
+		return contextPath;
+	}
+
+	private static class Key {
+
+		private final String url;
+
+		private final String method;
+
+		private final int status;
+
+		private final int hash;
+
+		Key(String url, String method, int status) {
+			this.url = url;
+			this.method = method != null ? method : "-";
+			this.status = status;
+			this.hash = (this.url.hashCode() * 31 + this.method.hashCode()) * 31 + status;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+
+			if (!(o instanceof Key)) {
+				return false;
+			}
+
+			Key key = (Key) o;
+
+			return status == key.status && url.equals(key.url) && method.equals(key.method);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+	}
+
+	private class Stats {
+
+		private final AtomicLong count = new AtomicLong();
+
+		private final AtomicLong bytes = new AtomicLong();
+
+		private final AtomicLong latencySum = new AtomicLong();
+
+		private final AtomicLong latencyMin = new AtomicLong(Long.MAX_VALUE);
+
+		private final AtomicLong latencyMax = new AtomicLong();
+
+		private final RASPLatencyHistogram histogram = new RASPLatencyHistogram();
+
+		void add(long requestBytes, long latencyMicros) {
+			count.incrementAndGet();
+
+			if (requestBytes > 0) {
+				bytes.addAndGet(requestBytes);
+			}
+
+			latencySum.addAndGet(latencyMicros);
+			histogram.record(latencyMicros);
+			updateMin(latencyMicros);
+			updateMax(latencyMicros);
+		}
+
+		private void updateMin(long latencyMicros) {
+			long min;
+
+			while (latencyMicros < (min = latencyMin.get()) && !latencyMin.compareAndSet(min, latencyMicros)) {
+			}
+		}
+
+		private void updateMax(long latencyMicros) {
+			long max;
+
+			while (latencyMicros > (max = latencyMax.get()) && !latencyMax.compareAndSet(max, latencyMicros)) {
+			}
+		}
+
+		/**
+		 * 合并被移除的统计项
+		 */
+		void merge(Stats stats) {
+			count.addAndGet(stats.count.getAndSet(0));
+			bytes.addAndGet(stats.bytes.getAndSet(0));
+			latencySum.addAndGet(stats.latencySum.getAndSet(0));
+			histogram.add(stats.histogram.getAndReset());
+			updateMin(stats.latencyMin.getAndSet(Long.MAX_VALUE));
+			updateMax(stats.latencyMax.getAndSet(0));
+		}
+
+		RASPAccessSummaryLog flush(String url, String method, int status, long start, long end) {
+			long total = count.getAndSet(0);
+
+			if (total == 0) {
+				return null;
+			}
+
+			long min = latencyMin.getAndSet(Long.MAX_VALUE);
+
+			return new RASPAccessSummaryLog(
+					contextPath, url, method, status, start, end, total, bytes.getAndSet(0),
+					min == Long.MAX_VALUE ? 0 : min, latencyMax.getAndSet(0), latencySum.getAndSet(0),
+					histogram.getAndReset()
+			);
+		}
+
+	}
+
+}
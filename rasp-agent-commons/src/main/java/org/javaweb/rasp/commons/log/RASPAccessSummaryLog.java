@@ -0,0 +1,183 @@
+package org.javaweb.rasp.commons.log;
+
+import org.javaweb.rasp.commons.gson.annotations.SerializedName;
+
+import java.io.Serializable;
+import java.util.TimeZone;
+
+/**
+ * 聚合访问日志，记录一个统计周期内同一个（contextPath、URL、请求方法、响应状态码）的请求汇总
+ */
+public class RASPAccessSummaryLog implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final String TIME_ZONE = TimeZone.getDefault().getID();
+
+	@SerializedName("log_type")
+	private final String logType = "access_summary";
+
+	@SerializedName("context_path")
+	private final String contextPath;
+
+	/**
+	 * 归一化后的请求URL，超过最大统计数的请求为RASPAccessLogAggregator#OTHER
+	 */
+	@SerializedName("request_url")
+	private final String requestUrl;
+
+	@SerializedName("request_method")
+	private final String requestMethod;
+
+	@SerializedName("status")
+	private final int status;
+
+	@SerializedName("start_time")
+	private final long startTime;
+
+	@SerializedName("end_time")
+	private final long endTime;
+
+	@SerializedName("count")
+	private final long count;
+
+	/**
+	 * 请求体字节数（Content-Length）
+	 */
+	@SerializedName("request_bytes")
+	private final long requestBytes;
+
+	/**
+	 * 请求耗时，单位：微秒
+	 */
+	@SerializedName("latency_min")
+	private final long latencyMin;
+
+	@SerializedName("latency_max")
+	private final long latencyMax;
+
+	@SerializedName("latency_sum")
+	private final long latencySum;
+
+	@SerializedName("latency_p50")
+	private final long latencyP50;
+
+	@SerializedName("latency_p90")
+	private final long latencyP90;
+
+	@SerializedName("latency_p99")
+	private final long latencyP99;
+
+	/**
+	 * 耗时直方图，只包含计数不为0的桶：[[桶上界, 计数], ...]
+	 */
+	@SerializedName("latency_histogram")
+	private final long[][] latencyHistogram;
+
+	@SerializedName("timezone")
+	private final String timezone = TIME_ZONE;
+
+	public RASPAccessSummaryLog(String contextPath, String requestUrl, String requestMethod, int status,
+	                            long startTime, long endTime, long count, long requestBytes,
+	                            long latencyMin, long latencyMax, long latencySum, int[] histogram) {
+
+		this.contextPath = contextPath;
+		this.requestUrl = requestUrl;
+		this.requestMethod = requestMethod;
+		this.status = status;
+		this.startTime = startTime;
+		this.endTime = endTime;
+		this.count = count;
+		this.requestBytes = requestBytes;
+		this.latencyMin = latencyMin;
+		this.latencyMax = latencyMax;
+		this.latencySum = latencySum;
+
+		// 直方图计数之和可能和count有细微差别（统计周期切换时并发写入）
+		long total = 0;
+		int  size  = 0;
+
+		for (int c : histogram) {
+			if (c > 0) {
+				total += c;
+				size++;
+			}
+		}
+
+		this.latencyP50 = RASPLatencyHistogram.quantile(histogram, total, 0.5);
+		this.latencyP90 = RASPLatencyHistogram.quantile(histogram, total, 0.9);
+		this.latencyP99 = RASPLatencyHistogram.quantile(histogram, total, 0.99);
+		this.latencyHistogram = new long[size][];
+
+		for (int i = 0, j = 0; i < histogram.length; i++) {
+			if (histogram[i] > 0) {
+				this.latencyHistogram[j++] = new long[]{RASPLatencyHistogram.upperBound(i), histogram[i]};
+			}
+		}
+	}
+
+	public String getContextPath() {
+		return contextPath;
+	}
+
+	public String getRequestUrl() {
+		return requestUrl;
+	}
+
+	public String getRequestMethod() {
+		return requestMethod;
+	}
+
+	public int getStatus() {
+		return status;
+	}
+
+	public long getStartTime() {
+		return startTime;
+	}
+
+	public long getEndTime() {
+		return endTime;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getRequestBytes() {
+		return requestBytes;
+	}
+
+	public long getLatencyMin() {
+		return latencyMin;
+	}
+
+	public long getLatencyMax() {
+		return latencyMax;
+	}
+
+	public long getLatencySum() {
+		return latencySum;
+	}
+
+	public long getLatencyP50() {
+		return latencyP50;
+	}
+
+	public long getLatencyP90() {
+		return latencyP90;
+	}
+
+	public long getLatencyP99() {
+		return latencyP99;
+	}
+
+	public long[][] getLatencyHistogram() {
+		return latencyHistogram;
+	}
+
+	public String getTimezone() {
+		return timezone;
+	}
+
+}
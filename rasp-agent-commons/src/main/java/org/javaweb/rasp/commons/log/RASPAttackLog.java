@@ -1,6 +1,7 @@
 package org.javaweb.rasp.commons.log;
 
 import org.javaweb.rasp.commons.attack.RASPAttackInfo;
+import org.javaweb.rasp.commons.attack.RASPAttackTrace;
 import org.javaweb.rasp.commons.context.RASPContext;
 import org.javaweb.rasp.commons.gson.annotations.SerializedName;
 
@@ -62,6 +63,17 @@ public class RASPAttackLog implements Serializable {
 	@SerializedName("hook_trace_elements")
 	protected String hookTraceElements;
 
+	/**
+	 * Hook调用链指纹，相同调用链的指纹相同
+	 */
+	@SerializedName("hook_trace_hash")
+	protected String hookTraceHash;
+
+	/**
+	 * Hook调用链，序列化日志时（日志同步线程）才生成hookTraceElements
+	 */
+	private transient RASPAttackTrace hookTrace;
+
 	public RASPAttackLog(RASPContext context, RASPAttackInfo attack) {
 		this.logVersion = AGENT_PROPERTIES.getLogVersion();
 		this.appId = context.getAppProperties().getAppID();
@@ -80,7 +92,53 @@ public class RASPAttackLog implements Serializable {
 		this.attackPosition = attack.getPosition().name();
 		this.attackType = attack.getType();
 		this.attackHash = attack.getAttackHash();
-		this.hookTraceElements = attack.getTraceElements();
+		this.hookTrace = attack.getTrace();
+	}
+
+	/**
+	 * 复制攻击日志，用于生成攻击合并日志
+	 *
+	 * @param log  攻击日志
+	 * @param time 日志时间
+	 */
+	protected RASPAttackLog(RASPAttackLog log, long time) {
+		this.logVersion = log.logVersion;
+		this.appId = log.appId;
+		this.time = time;
+		this.timezone = log.timezone;
+		this.silent = log.silent;
+		this.attackBlockRequest = log.attackBlockRequest;
+		this.attackParameter = log.attackParameter;
+		this.attackValues = log.attackValues;
+		this.attackPosition = log.attackPosition;
+		this.attackType = log.attackType;
+		this.attackHash = log.attackHash;
+		this.hookClassName = log.hookClassName;
+		this.hookMethodName = log.hookMethodName;
+		this.hookMethodArgsDesc = log.hookMethodArgsDesc;
+		this.hookTraceElements = log.getHookTraceElements();
+		this.hookTraceHash = log.hookTraceHash;
+	}
+
+	/**
+	 * 获取Hook调用链，第一次调用时生成调用链字符串
+	 *
+	 * @return Hook调用链
+	 */
+	public String getHookTraceElements() {
+		if (hookTrace != null) {
+			this.hookTraceElements = hookTrace.getTraceElements();
+			this.hookTraceHash = hookTrace.getFingerprintHex();
+			this.hookTrace = null;
+		}
+
+		return hookTraceElements;
+	}
+
+	public String getHookTraceHash() {
+		getHookTraceElements();
+
+		return hookTraceHash;
 	}
 
 	public String getLogVersion() {
@@ -0,0 +1,258 @@
+package org.javaweb.rasp.commons.log;
+
+import org.javaweb.rasp.commons.attack.RASPAttackInfo;
+import org.javaweb.rasp.commons.context.RASPContext;
+import org.javaweb.rasp.commons.logback.classic.Logger;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.System.currentTimeMillis;
+import static org.javaweb.rasp.commons.utils.StringUtils.checkMaxLength;
+
+/**
+ * 攻击日志合并，扫描器短时间内发送大量攻击请求时，同一攻击（Web应用、防御模块、攻击参数、攻击位置、客户端IP）
+ * 在合并窗口内只记录第一条完整的攻击日志，之后只计数并采样部分攻击参数值，
+ * 由日志同步线程每个合并窗口输出一条攻击合并日志（RASPAttackSummaryLog）。
+ * <p>
+ * 最多缓存maxKeys个攻击，超出后不再合并（记录完整的攻击日志）。一个合并窗口内没有再次发生的攻击会被移除，
+ * 之后再次发生时重新记录完整的攻击日志。
+ * <p>
+ * 合并Key只使用请求线程中已有的字段，不使用调用链指纹（计算指纹需要在请求线程中生成调用链）。
+ */
+public class RASPAttackLogCoalescer {
+
+	/**
+	 * 采样的攻击参数值最大长度
+	 */
+	private static final int MAX_SAMPLE_LENGTH = 1000;
+
+	private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<Key, Entry>();
+
+	private final AtomicInteger size = new AtomicInteger();
+
+	/**
+	 * 合并攻击日志
+	 *
+	 * @param context  RASP上下文
+	 * @param attack   攻击信息
+	 * @param logger   攻击日志Logger
+	 * @param maxKeys  最大缓存攻击数
+	 * @param samples  每个合并窗口最多采样的攻击参数值数
+	 * @return 需要记录的攻击日志，攻击已被合并时返回null
+	 */
+	public RASPAttackLog offer(RASPContext context, RASPAttackInfo attack, Logger logger, int maxKeys, int samples) {
+		Key   key   = new Key(context, attack);
+		Entry entry = entries.get(key);
+
+		if (entry != null && entry.add(attack, samples)) {
+			return null;
+		}
+
+		RASPAttackLog log = context.createAttackLog(attack);
+
+		if (log == null) {
+			return null;
+		}
+
+		// 缓存已满时不再合并
+		if (size.incrementAndGet() > maxKeys) {
+			size.decrementAndGet();
+
+			return log;
+		}
+
+		Entry old = entries.putIfAbsent(key, new Entry(log, logger));
+
+		// 其他线程同时记录了同一攻击，合并到已有的攻击中
+		if (old != null) {
+			size.decrementAndGet();
+
+			if (old.add(attack, samples)) {
+				return null;
+			}
+		}
+
+		return log;
+	}
+
+	/**
+	 * 输出已到合并窗口的攻击合并日志，移除一个合并窗口内没有再次发生的攻击，只应在日志同步线程中调用
+	 *
+	 * @param window 合并窗口（毫秒）
+	 * @return 攻击合并日志
+	 */
+	public List<RASPLogData> flush(long window) {
+		List<RASPLogData>               logs = new ArrayList<RASPLogData>();
+		long                            now  = currentTimeMillis();
+		Iterator<Map.Entry<Key, Entry>> it   = entries.entrySet().iterator();
+
+		while (it.hasNext()) {
+			Map.Entry<Key, Entry> e     = it.next();
+			Entry                 entry = e.getValue();
+
+			if (now - entry.windowStart < window) {
+				continue;
+			}
+
+			if (entry.count.get() == 0) {
+				// 一个合并窗口内没有再次发生
+				if (entries.remove(e.getKey(), entry)) {
+					size.decrementAndGet();
+					entry.removed = true;
+				}
+			}
+
+			RASPAttackSummaryLog log = entry.flush(now);
+
+			if (log != null) {
+				logs.add(new RASPLogData(RASPLogSerializer.toJsonBytes(log), entry.logger, true));
+			}
+		}
+
+		return logs;
+	}
+
+	private static class Key {
+
+		private final String contextPath;
+
+		private final String type;
+
+		private final String parameter;
+
+		private final String position;
+
+		private final String requestIP;
+
+		private final int hash;
+
+		Key(RASPContext context, RASPAttackInfo attack) {
+			this.contextPath = context.getContextPath();
+			this.type = attack.getType();
+			this.parameter = attack.getParameter();
+			this.position = attack.getPosition() != null ? attack.getPosition().name() : null;
+			this.requestIP = context.getRequestIP();
+
+			int h = hashCode(contextPath);
+			h = h * 31 + hashCode(type);
+			h = h * 31 + hashCode(parameter);
+			h = h * 31 + hashCode(position);
+			h = h * 31 + hashCode(requestIP);
+
+			this.hash = h;
+		}
+
+		private static int hashCode(String str) {
+			return str != null ? str.hashCode() : 0;
+		}
+
+		private static boolean equals(String a, String b) {
+			return a == null ? b == null : a.equals(b);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+
+			if (!(o instanceof Key)) {
+				return false;
+			}
+
+			Key key = (Key) o;
+
+			return hash == key.hash && equals(contextPath, key.contextPath) && equals(type, key.type) &&
+					equals(parameter, key.parameter) && equals(position, key.position) &&
+					equals(requestIP, key.requestIP);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+	}
+
+	private static class Entry {
+
+		/**
+		 * 第一条完整的攻击日志
+		 */
+		private final RASPAttackLog log;
+
+		private final Logger logger;
+
+		/**
+		 * 当前合并窗口内合并的攻击次数
+		 */
+		private final AtomicLong count = new AtomicLong();
+
+		/**
+		 * 当前合并窗口内采样的攻击参数值
+		 */
+		private final List<String> samples = new ArrayList<String>();
+
+		private volatile long windowStart = currentTimeMillis();
+
+		/**
+		 * 已从缓存中移除，之后的攻击需要重新记录完整的攻击日志
+		 */
+		private volatile boolean removed;
+
+		Entry(RASPAttackLog log, Logger logger) {
+			this.log = log;
+			this.logger = logger;
+		}
+
+		/**
+		 * 合并一次攻击
+		 *
+		 * @return 是否已合并
+		 */
+		boolean add(RASPAttackInfo attack, int maxSamples) {
+			if (removed) {
+				return false;
+			}
+
+			count.incrementAndGet();
+
+			String[] values = attack.getValues();
+
+			if (maxSamples > 0 && values != null && values.length > 0 && values[0] != null) {
+				synchronized (samples) {
+					if (samples.size() < maxSamples && !samples.contains(values[0])) {
+						samples.add(checkMaxLength(values[0], MAX_SAMPLE_LENGTH));
+					}
+				}
+			}
+
+			return true;
+		}
+
+		RASPAttackSummaryLog flush(long now) {
+			long start = windowStart;
+			long total = count.getAndSet(0);
+
+			this.windowStart = now;
+
+			String[] values;
+
+			synchronized (samples) {
+				values = samples.toArray(new String[samples.size()]);
+				samples.clear();
+			}
+
+			return total > 0 ? new RASPAttackSummaryLog(log, total, values, start, now) : null;
+		}
+
+	}
+
+}
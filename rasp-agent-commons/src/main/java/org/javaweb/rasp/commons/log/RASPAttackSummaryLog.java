@@ -0,0 +1,44 @@
+package org.javaweb.rasp.commons.log;
+
+import org.javaweb.rasp.commons.gson.annotations.SerializedName;
+
+/**
+ * 攻击合并日志，记录合并窗口内被合并（未单独记录）的同一攻击的次数和部分攻击参数值。
+ * 除attack_values为采样的攻击参数值外，其他字段和该攻击第一条完整记录的攻击日志一致（包括attack_hash）。
+ */
+public class RASPAttackSummaryLog extends RASPAttackLog {
+
+	private static final long serialVersionUID = 1L;
+
+	@SerializedName("attack_summary")
+	private final boolean attackSummary = true;
+
+	/**
+	 * 合并的攻击次数
+	 */
+	@SerializedName("attack_count")
+	private final long attackCount;
+
+	/**
+	 * 合并窗口开始时间
+	 */
+	@SerializedName("window_start")
+	private final long windowStart;
+
+	public RASPAttackSummaryLog(RASPAttackLog log, long attackCount, String[] samples, long windowStart, long time) {
+		super(log, time);
+
+		this.attackCount = attackCount;
+		this.windowStart = windowStart;
+		this.attackValues = samples;
+	}
+
+	public long getAttackCount() {
+		return attackCount;
+	}
+
+	public long getWindowStart() {
+		return windowStart;
+	}
+
+}
@@ -0,0 +1,98 @@
+package org.javaweb.rasp.commons.log;
+
+import java.io.*;
+import java.security.GeneralSecurityException;
+
+import static org.javaweb.rasp.commons.constants.RASPConstants.DEFAULT_ENCODING;
+import static org.javaweb.rasp.commons.utils.EncryptUtils.deContent;
+
+/**
+ * RASP二进制日志转换工具，将二进制日志转换成每行一条的JSON日志，用于调试。
+ * <p>
+ * 指定RC4 Key时同时解密攻击日志（包括AES-GCM日志帧），否则原样输出日志记录：
+ * <pre>
+ * java -cp rasp-agent.jar org.javaweb.rasp.commons.log.RASPBinaryLogConverter 日志文件 [输出文件] [RC4 Key]
+ * </pre>
+ */
+public class RASPBinaryLogConverter {
+
+	/**
+	 * 转换二进制日志
+	 *
+	 * @param in     二进制日志文件
+	 * @param out    输出
+	 * @param rc4Key RC4 Key，为空时不解密
+	 * @return 转换的日志条数
+	 * @throws IOException 读写文件异常
+	 */
+	public static int convert(File in, Writer out, String rc4Key) throws IOException {
+		RASPBinaryLogReader reader = new RASPBinaryLogReader(in);
+		int                 count  = 0;
+
+		try {
+			while (reader.next()) {
+				String record = reader.getRecord();
+
+				if (rc4Key == null || rc4Key.length() == 0) {
+					writeLine(out, record);
+					count++;
+				} else if (RASPLogFrame.isFrame(record)) {
+					try {
+						for (String log : RASPLogFrame.decode(record, rc4Key)) {
+							writeLine(out, log);
+							count++;
+						}
+					} catch (GeneralSecurityException e) {
+						System.err.println("解密日志帧失败：" + e);
+					}
+				} else {
+					// 访问日志等未加密的日志直接输出
+					writeLine(out, record.startsWith("{") ? record : deContent(record, rc4Key));
+					count++;
+				}
+			}
+
+			if (reader.getCorruptBlocks() > 0) {
+				System.err.println("跳过" + reader.getCorruptBlocks() + "个损坏的日志块");
+			}
+		} finally {
+			reader.close();
+		}
+
+		out.flush();
+
+		return count;
+	}
+
+	private static void writeLine(Writer out, String line) throws IOException {
+		out.write(line);
+		out.write('\n');
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: java " + RASPBinaryLogConverter.class.getName() + " <in> [out] [rc4Key]");
+			System.exit(1);
+		}
+
+		File in = new File(args[0]);
+
+		if (!RASPBinaryLogReader.isBinaryLog(in)) {
+			System.err.println(in + "不是RASP二进制日志文件!");
+			System.exit(1);
+		}
+
+		String       rc4Key = args.length > 2 ? args[2] : null;
+		OutputStream os     = args.length > 1 && !"-".equals(args[1]) ? new FileOutputStream(args[1]) : System.out;
+		Writer       out    = new BufferedWriter(new OutputStreamWriter(os, DEFAULT_ENCODING));
+
+		try {
+			convert(in, out, rc4Key);
+		} finally {
+			if (os != System.out) {
+				out.close();
+			}
+		}
+	}
+
+}
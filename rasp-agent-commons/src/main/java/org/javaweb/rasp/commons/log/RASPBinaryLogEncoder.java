@@ -0,0 +1,277 @@
+package org.javaweb.rasp.commons.log;
+
+import org.javaweb.rasp.commons.logback.classic.spi.ILoggingEvent;
+import org.javaweb.rasp.commons.logback.core.encoder.EncoderBase;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import static org.javaweb.rasp.commons.constants.RASPConstants.DEFAULT_ENCODING;
+import static org.javaweb.rasp.commons.log.RASPBinaryLogFormat.*;
+
+/**
+ * RASP二进制日志编码器，日志记录先写入日志块缓存，日志块写满、缓存时间超过flushInterval或日志文件关闭（切割日志）时
+ * 压缩并输出日志块，日志文件关闭时输出段索引，格式见RASPBinaryLogFormat。
+ * 没有新日志时由日志同步线程定时调用flush(false)输出超时的日志块，读取日志文件前调用flush(true)。
+ * <p>
+ * 日志块输出前Agent异常退出会丢失当前日志块中的日志。段索引的偏移量按日志块输出顺序计算，
+ * 日志只应由日志同步线程写入，读取时偏移量错误的索引会被忽略。
+ */
+public class RASPBinaryLogEncoder extends EncoderBase<ILoggingEvent> {
+
+	private static final byte[] EMPTY = new byte[0];
+
+	private final int blockSize;
+
+	/**
+	 * 日志块最长缓存时间（毫秒）
+	 */
+	private final long flushInterval;
+
+	private final Deflater deflater;
+
+	private final CRC32 crc = new CRC32();
+
+	private byte[] block;
+
+	private int count;
+
+	private int recordCount;
+
+	private long firstTimestamp;
+
+	private long lastTimestamp;
+
+	/**
+	 * 第一条记录写入日志块的时间
+	 */
+	private long blockCreateTime;
+
+	/**
+	 * 当前段已输出的字节数
+	 */
+	private long segmentLength;
+
+	/**
+	 * 段索引：{最后一条记录时间, 偏移量, ...}
+	 */
+	private long[] index = new long[64];
+
+	private int indexCount;
+
+	private byte[] compressed = new byte[0];
+
+	/**
+	 * @param blockSize     日志块大小（压缩前）
+	 * @param flushInterval 日志块最长缓存时间（毫秒）
+	 */
+	public RASPBinaryLogEncoder(int blockSize, long flushInterval) {
+		this.blockSize = blockSize > 0 ? blockSize : DEFAULT_BLOCK_SIZE;
+		this.flushInterval = flushInterval;
+		this.block = new byte[this.blockSize];
+		this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+	}
+
+	@Override
+	public synchronized byte[] headerBytes() {
+		resetBlock();
+		indexCount = 0;
+
+		byte[] header = new byte[SEGMENT_HEADER_LENGTH];
+		writeInt(header, 0, SEGMENT_MAGIC);
+		header[4] = VERSION;
+
+		segmentLength = header.length;
+
+		return header;
+	}
+
+	@Override
+	public synchronized byte[] encode(ILoggingEvent event) {
+		String message = event.getFormattedMessage();
+
+		if (message == null) {
+			return EMPTY;
+		}
+
+		byte[] bytes;
+
+		try {
+			bytes = message.getBytes(DEFAULT_ENCODING);
+		} catch (UnsupportedEncodingException e) {
+			return EMPTY;
+		}
+
+		long   timestamp = event.getTimeStamp();
+		byte[] out       = EMPTY;
+
+		// 当前日志块已满或缓存超时，先输出当前日志块
+		if (recordCount > 0 && (count + RECORD_HEADER_LENGTH + bytes.length > blockSize ||
+				System.currentTimeMillis() - blockCreateTime > flushInterval)) {
+
+			out = flushBlock();
+		}
+
+		appendRecord(timestamp, bytes);
+
+		if (count >= blockSize) {
+			out = concat(out, flushBlock());
+		}
+
+		return out;
+	}
+
+	/**
+	 * 输出当前缓存的日志块
+	 *
+	 * @param force 是否强制输出，false时只输出缓存时间超过flushInterval的日志块
+	 * @return 日志块，没有需要输出的日志块时返回空数组
+	 */
+	public synchronized byte[] flush(boolean force) {
+		if (recordCount == 0 || (!force && System.currentTimeMillis() - blockCreateTime < flushInterval)) {
+			return EMPTY;
+		}
+
+		return flushBlock();
+	}
+
+	@Override
+	public synchronized byte[] footerBytes() {
+		byte[] out = flushBlock();
+
+		int    length = 8 + indexCount * INDEX_ENTRY_LENGTH + TRAILER_LENGTH;
+		byte[] footer = new byte[length];
+
+		writeInt(footer, 0, INDEX_MAGIC);
+		writeInt(footer, 4, indexCount);
+
+		for (int i = 0; i < indexCount; i++) {
+			int off = 8 + i * INDEX_ENTRY_LENGTH;
+
+			writeLong(footer, off, index[i * 2]);
+			writeLong(footer, off + 8, index[i * 2 + 1]);
+		}
+
+		writeLong(footer, length - 16, segmentLength);
+		writeInt(footer, length - 8, indexCount);
+		writeInt(footer, length - 4, TRAILER_MAGIC);
+
+		indexCount = 0;
+		segmentLength = 0;
+
+		return concat(out, footer);
+	}
+
+	private void appendRecord(long timestamp, byte[] bytes) {
+		int length = RECORD_HEADER_LENGTH + bytes.length;
+
+		// 单条记录超过日志块大小时单独作为一个日志块
+		if (count + length > block.length) {
+			block = Arrays.copyOf(block, count + length);
+		}
+
+		writeInt(block, count, bytes.length);
+		writeLong(block, count + 4, timestamp);
+		System.arraycopy(bytes, 0, block, count + RECORD_HEADER_LENGTH, bytes.length);
+
+		if (recordCount == 0) {
+			firstTimestamp = timestamp;
+			lastTimestamp = timestamp;
+			blockCreateTime = System.currentTimeMillis();
+		} else {
+			firstTimestamp = Math.min(firstTimestamp, timestamp);
+			lastTimestamp = Math.max(lastTimestamp, timestamp);
+		}
+
+		count += length;
+		recordCount++;
+	}
+
+	/**
+	 * 压缩并输出当前日志块，同时记录段索引
+	 */
+	private byte[] flushBlock() {
+		if (recordCount == 0) {
+			return EMPTY;
+		}
+
+		deflater.reset();
+		deflater.setInput(block, 0, count);
+		deflater.finish();
+
+		if (compressed.length < count) {
+			compressed = new byte[count];
+		}
+
+		int length = 0;
+
+		// 压缩后大于原始数据时直接存储原始数据
+		while (!deflater.finished() && length < count) {
+			length += deflater.deflate(compressed, length, count - length);
+		}
+
+		boolean useCompressed = deflater.finished() && length < count;
+		byte[]  data          = useCompressed ? compressed : block;
+		int     dataLength    = useCompressed ? length : count;
+
+		crc.reset();
+		crc.update(data, 0, dataLength);
+
+		byte[] out = new byte[BLOCK_HEADER_LENGTH + dataLength];
+
+		writeInt(out, 0, BLOCK_MAGIC);
+		writeInt(out, 4, useCompressed ? FLAG_COMPRESSED : 0);
+		writeInt(out, 8, recordCount);
+		writeInt(out, 12, count);
+		writeInt(out, 16, dataLength);
+		writeLong(out, 20, firstTimestamp);
+		writeLong(out, 28, lastTimestamp);
+		writeInt(out, 36, (int) crc.getValue());
+		System.arraycopy(data, 0, out, BLOCK_HEADER_LENGTH, dataLength);
+
+		addIndex(lastTimestamp, segmentLength);
+		segmentLength += out.length;
+
+		resetBlock();
+
+		return out;
+	}
+
+	private void addIndex(long timestamp, long offset) {
+		if (indexCount * 2 + 2 > index.length) {
+			index = Arrays.copyOf(index, index.length * 2);
+		}
+
+		index[indexCount * 2] = timestamp;
+		index[indexCount * 2 + 1] = offset;
+		indexCount++;
+	}
+
+	private void resetBlock() {
+		count = 0;
+		recordCount = 0;
+
+		// 超长记录扩容的日志块恢复默认大小
+		if (block.length > blockSize) {
+			block = new byte[blockSize];
+		}
+	}
+
+	private static byte[] concat(byte[] a, byte[] b) {
+		if (a.length == 0) {
+			return b;
+		}
+
+		if (b.length == 0) {
+			return a;
+		}
+
+		byte[] bytes = Arrays.copyOf(a, a.length + b.length);
+		System.arraycopy(b, 0, bytes, a.length, b.length);
+
+		return bytes;
+	}
+
+}
@@ -0,0 +1,90 @@
+package org.javaweb.rasp.commons.log;
+
+/**
+ * RASP二进制日志格式，所有整数均为大端序。
+ * <p>
+ * 日志文件由一个或多个段组成，每次打开日志文件时写入段头，关闭时写入段索引：
+ * <pre>
+ * 段头：  SEGMENT_MAGIC(4) + 版本号(1) + 保留(3)
+ * 日志块：BLOCK_MAGIC(4) + 标志位(4) + 记录数(4) + 原始长度(4) + 存储长度(4)
+ *        + 第一条记录时间(8) + 最后一条记录时间(8) + 存储数据的CRC32(4) + 存储数据
+ * 段索引：INDEX_MAGIC(4) + 索引数(4) + 索引项(16 * 索引数) + 段长度(8) + 索引数(4) + TRAILER_MAGIC(4)
+ * </pre>
+ * 日志块中的每条记录为：长度(4) + 时间(8) + UTF-8编码的日志内容，标志位包含FLAG_COMPRESSED时
+ * 存储数据为Deflate（nowrap）压缩后的记录。
+ * 索引项为：日志块最后一条记录时间（块内最大时间）(8) + 日志块相对段头的偏移量(8)，段长度为段头到段索引之间的字节数，
+ * 读取时可以从文件末尾定位段索引，按时间查找日志块。
+ */
+public class RASPBinaryLogFormat {
+
+	/**
+	 * "RLOG"
+	 */
+	public static final int SEGMENT_MAGIC = 0x524C4F47;
+
+	/**
+	 * "RBLK"
+	 */
+	public static final int BLOCK_MAGIC = 0x52424C4B;
+
+	/**
+	 * "RIDX"
+	 */
+	public static final int INDEX_MAGIC = 0x52494458;
+
+	/**
+	 * "REND"
+	 */
+	public static final int TRAILER_MAGIC = 0x52454E44;
+
+	public static final byte VERSION = 1;
+
+	public static final int SEGMENT_HEADER_LENGTH = 8;
+
+	public static final int BLOCK_HEADER_LENGTH = 40;
+
+	public static final int RECORD_HEADER_LENGTH = 12;
+
+	public static final int INDEX_ENTRY_LENGTH = 16;
+
+	/**
+	 * 段索引尾部长度：段长度(8) + 索引数(4) + TRAILER_MAGIC(4)
+	 */
+	public static final int TRAILER_LENGTH = 16;
+
+	/**
+	 * 日志块数据已压缩
+	 */
+	public static final int FLAG_COMPRESSED = 1;
+
+	/**
+	 * 默认日志块大小（压缩前）
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+	/**
+	 * 日志块最大大小，读取时超过该大小的日志块视为损坏
+	 */
+	public static final int MAX_BLOCK_SIZE = 64 * 1024 * 1024;
+
+	static void writeInt(byte[] b, int off, int i) {
+		b[off] = (byte) (i >>> 24);
+		b[off + 1] = (byte) (i >>> 16);
+		b[off + 2] = (byte) (i >>> 8);
+		b[off + 3] = (byte) i;
+	}
+
+	static void writeLong(byte[] b, int off, long l) {
+		writeInt(b, off, (int) (l >>> 32));
+		writeInt(b, off + 4, (int) l);
+	}
+
+	static int readInt(byte[] b, int off) {
+		return (b[off] & 0xFF) << 24 | (b[off + 1] & 0xFF) << 16 | (b[off + 2] & 0xFF) << 8 | (b[off + 3] & 0xFF);
+	}
+
+	static long readLong(byte[] b, int off) {
+		return ((long) readInt(b, off) << 32) | (readInt(b, off + 4) & 0xFFFFFFFFL);
+	}
+
+}
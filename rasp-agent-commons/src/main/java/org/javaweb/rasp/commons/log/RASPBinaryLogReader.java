@@ -0,0 +1,395 @@
+package org.javaweb.rasp.commons.log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static org.javaweb.rasp.commons.constants.RASPConstants.DEFAULT_ENCODING;
+import static org.javaweb.rasp.commons.log.RASPBinaryLogFormat.*;
+
+/**
+ * RASP二进制日志流式读取，每次只解压一个日志块，格式见RASPBinaryLogFormat。
+ * <p>
+ * CRC校验失败或格式错误的日志块会被跳过并计入getCorruptBlocks，文件末尾不完整的日志块（Agent异常退出）视为文件结束。
+ * <pre>
+ * RASPBinaryLogReader reader = new RASPBinaryLogReader(file);
+ *
+ * try {
+ *     reader.seek(startTime);
+ *
+ *     while (reader.next()) {
+ *         process(reader.getTimestamp(), reader.getRecord());
+ *     }
+ * } finally {
+ *     reader.close();
+ * }
+ * </pre>
+ */
+public class RASPBinaryLogReader implements Closeable {
+
+	private final RandomAccessFile file;
+
+	private final long length;
+
+	private final Inflater inflater = new Inflater(true);
+
+	private final CRC32 crc = new CRC32();
+
+	private final byte[] header = new byte[BLOCK_HEADER_LENGTH];
+
+	/**
+	 * 下一个日志块（或段头、段索引）的位置
+	 */
+	private long position;
+
+	/**
+	 * 当前日志块的位置
+	 */
+	private long blockPosition;
+
+	/**
+	 * 当前日志块中已读取的记录数
+	 */
+	private int blockRecordIndex;
+
+	private byte[] stored = new byte[DEFAULT_BLOCK_SIZE];
+
+	/**
+	 * 当前日志块解压后的数据
+	 */
+	private byte[] data = new byte[DEFAULT_BLOCK_SIZE];
+
+	private int dataPos;
+
+	private int dataEnd;
+
+	/**
+	 * 跳过时间早于该值的日志
+	 */
+	private long minTimestamp = Long.MIN_VALUE;
+
+	private long timestamp;
+
+	private String record;
+
+	private int corruptBlocks;
+
+	public RASPBinaryLogReader(File file) throws IOException {
+		this.file = new RandomAccessFile(file, "r");
+		this.length = this.file.length();
+	}
+
+	/**
+	 * 检测文件是否是RASP二进制日志
+	 *
+	 * @param file 日志文件
+	 * @return 是否是二进制日志
+	 */
+	public static boolean isBinaryLog(File file) {
+		RandomAccessFile raf = null;
+
+		try {
+			raf = new RandomAccessFile(file, "r");
+
+			return raf.length() >= SEGMENT_HEADER_LENGTH && raf.readInt() == SEGMENT_MAGIC;
+		} catch (IOException e) {
+			return false;
+		} finally {
+			if (raf != null) {
+				try {
+					raf.close();
+				} catch (IOException ignored) {
+				}
+			}
+		}
+	}
+
+	/**
+	 * 定位到指定时间，之后next只返回时间不早于timestamp的日志。
+	 * 文件只有一个段且包含段索引时根据索引直接定位日志块，否则从文件开头读取日志块头跳过更早的日志块。
+	 *
+	 * @param timestamp 时间（毫秒）
+	 * @throws IOException 读取文件异常
+	 */
+	public void seek(long timestamp) throws IOException {
+		this.minTimestamp = timestamp;
+		this.position = findBlock(timestamp);
+		this.dataPos = this.dataEnd = 0;
+	}
+
+	/**
+	 * 根据段索引查找第一个最后记录时间不早于timestamp的日志块
+	 */
+	private long findBlock(long timestamp) throws IOException {
+		if (length < SEGMENT_HEADER_LENGTH + 8 + TRAILER_LENGTH) {
+			return 0;
+		}
+
+		byte[] trailer = new byte[TRAILER_LENGTH];
+
+		file.seek(length - TRAILER_LENGTH);
+		file.readFully(trailer);
+
+		long segmentLength = readLong(trailer, 0);
+		int  count         = readInt(trailer, 8);
+		long indexStart    = length - TRAILER_LENGTH - (long) count * INDEX_ENTRY_LENGTH - 8;
+
+		// 只有一个段时段索引才能覆盖所有日志块
+		if (readInt(trailer, 12) != TRAILER_MAGIC || count < 0 || indexStart != segmentLength) {
+			return 0;
+		}
+
+		byte[] index = new byte[count * INDEX_ENTRY_LENGTH];
+
+		file.seek(indexStart + 8);
+		file.readFully(index);
+
+		for (int i = 0; i < count; i++) {
+			int off = i * INDEX_ENTRY_LENGTH;
+
+			if (readLong(index, off) >= timestamp) {
+				long offset = readLong(index, off + 8);
+
+				// 索引偏移量错误时从文件开头读取
+				return offset < length && readIntAt(offset) == BLOCK_MAGIC ? offset : 0;
+			}
+		}
+
+		// 所有日志块都早于timestamp
+		return indexStart;
+	}
+
+	/**
+	 * 定位到getCheckpointPosition、getCheckpointRecordIndex返回的读取位置，用于中断后继续读取
+	 *
+	 * @param position    日志块位置
+	 * @param recordIndex 日志块中已读取的记录数
+	 * @throws IOException 读取文件异常
+	 */
+	public void resume(long position, int recordIndex) throws IOException {
+		this.minTimestamp = Long.MIN_VALUE;
+		this.position = position;
+		this.dataPos = this.dataEnd = 0;
+
+		for (int i = 0; i < recordIndex; i++) {
+			if (!next()) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * 获取当前读取位置所在的日志块位置，当前日志块已读完时返回下一个日志块的位置
+	 *
+	 * @return 日志块位置
+	 */
+	public long getCheckpointPosition() {
+		return dataPos < dataEnd ? blockPosition : position;
+	}
+
+	/**
+	 * 获取当前日志块中已读取的记录数，当前日志块已读完时返回0
+	 *
+	 * @return 已读取的记录数
+	 */
+	public int getCheckpointRecordIndex() {
+		return dataPos < dataEnd ? blockRecordIndex : 0;
+	}
+
+	private int readIntAt(long pos) throws IOException {
+		file.seek(pos);
+
+		return file.readInt();
+	}
+
+	/**
+	 * 读取下一条日志
+	 *
+	 * @return 是否还有日志
+	 * @throws IOException 读取文件异常
+	 */
+	public boolean next() throws IOException {
+		while (true) {
+			if (dataPos >= dataEnd && !readBlock()) {
+				record = null;
+
+				return false;
+			}
+
+			int len = readInt(data, dataPos);
+
+			if (len < 0 || dataPos + RECORD_HEADER_LENGTH + len > dataEnd) {
+				// 记录长度错误，跳过当前日志块剩余的记录
+				corruptBlocks++;
+				dataPos = dataEnd;
+				continue;
+			}
+
+			long time  = readLong(data, dataPos + 4);
+			int  start = dataPos + RECORD_HEADER_LENGTH;
+
+			dataPos = start + len;
+			blockRecordIndex++;
+
+			if (time >= minTimestamp) {
+				timestamp = time;
+				record = new String(data, start, len, DEFAULT_ENCODING);
+
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * 读取下一个日志块
+	 */
+	private boolean readBlock() throws IOException {
+		while (position + 4 <= length) {
+			int n = (int) Math.min(BLOCK_HEADER_LENGTH, length - position);
+
+			file.seek(position);
+			file.readFully(header, 0, n);
+
+			int magic = readInt(header, 0);
+
+			if (magic == SEGMENT_MAGIC) {
+				position += SEGMENT_HEADER_LENGTH;
+			} else if (magic == INDEX_MAGIC && n >= 8 && readInt(header, 4) >= 0) {
+				position += 8 + (long) readInt(header, 4) * INDEX_ENTRY_LENGTH + TRAILER_LENGTH;
+			} else if (magic == BLOCK_MAGIC && n == BLOCK_HEADER_LENGTH) {
+				int  flags        = readInt(header, 4);
+				int  rawLength    = readInt(header, 12);
+				int  storedLength = readInt(header, 16);
+				long lastTime     = readLong(header, 28);
+
+				if (rawLength < 0 || rawLength > MAX_BLOCK_SIZE || storedLength < 0 || storedLength > MAX_BLOCK_SIZE) {
+					corruptBlocks++;
+					break;
+				}
+
+				long blockStart = position + BLOCK_HEADER_LENGTH;
+				long block      = position;
+
+				// 日志块不完整
+				if (blockStart + storedLength > length) {
+					break;
+				}
+
+				position = blockStart + storedLength;
+
+				// 日志块中所有日志都早于seek时间
+				if (lastTime < minTimestamp) {
+					continue;
+				}
+
+				if (readStored(blockStart, storedLength, readInt(header, 36)) &&
+						decompress(flags, storedLength, rawLength)) {
+
+					blockPosition = block;
+					blockRecordIndex = 0;
+
+					return true;
+				}
+
+				corruptBlocks++;
+			} else {
+				// 无法识别的数据，不再继续读取
+				corruptBlocks++;
+				break;
+			}
+		}
+
+		position = length;
+
+		return false;
+	}
+
+	private boolean readStored(long blockStart, int storedLength, int checksum) throws IOException {
+		if (stored.length < storedLength) {
+			stored = new byte[storedLength];
+		}
+
+		file.seek(blockStart);
+		file.readFully(stored, 0, storedLength);
+
+		crc.reset();
+		crc.update(stored, 0, storedLength);
+
+		return (int) crc.getValue() == checksum;
+	}
+
+	private boolean decompress(int flags, int storedLength, int rawLength) {
+		if (data.length < rawLength) {
+			data = new byte[rawLength];
+		}
+
+		dataPos = 0;
+		dataEnd = 0;
+
+		if ((flags & FLAG_COMPRESSED) == 0) {
+			if (storedLength != rawLength) {
+				return false;
+			}
+
+			System.arraycopy(stored, 0, data, 0, storedLength);
+			dataEnd = rawLength;
+
+			return true;
+		}
+
+		try {
+			inflater.reset();
+			inflater.setInput(stored, 0, storedLength);
+
+			int n = 0;
+
+			while (n < rawLength && !inflater.finished()) {
+				int len = inflater.inflate(data, n, rawLength - n);
+
+				if (len == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					return false;
+				}
+
+				n += len;
+			}
+
+			if (n != rawLength) {
+				return false;
+			}
+
+			dataEnd = rawLength;
+
+			return true;
+		} catch (DataFormatException e) {
+			return false;
+		}
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public String getRecord() {
+		return record;
+	}
+
+	/**
+	 * 获取已跳过的损坏日志块数
+	 *
+	 * @return 损坏日志块数
+	 */
+	public int getCorruptBlocks() {
+		return corruptBlocks;
+	}
+
+	@Override
+	public void close() throws IOException {
+		inflater.end();
+		file.close();
+	}
+
+}
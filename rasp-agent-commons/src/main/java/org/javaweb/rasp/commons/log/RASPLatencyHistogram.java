@@ -0,0 +1,127 @@
+package org.javaweb.rasp.commons.log;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 请求耗时直方图（HDR风格的对数线性分桶），单位为微秒。
+ * <p>
+ * 小于8微秒的耗时每微秒一个桶，之后每个2的幂区间再等分为8个桶，相对误差不超过12.5%，
+ * 最大记录约71分钟（2^32微秒），超出的耗时计入最后一个桶。所有方法都是线程安全的。
+ */
+public class RASPLatencyHistogram {
+
+	/**
+	 * 每个2的幂区间的子桶数（2^SUB_BUCKET_BITS）
+	 */
+	private static final int SUB_BUCKET_BITS = 3;
+
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * 最大记录值（微秒）
+	 */
+	private static final long MAX_VALUE = 0xFFFFFFFFL;
+
+	public static final int BUCKET_COUNT = indexOf(MAX_VALUE) + 1;
+
+	private final AtomicIntegerArray counts = new AtomicIntegerArray(BUCKET_COUNT);
+
+	/**
+	 * 记录一次耗时
+	 *
+	 * @param micros 耗时（微秒）
+	 */
+	public void record(long micros) {
+		counts.incrementAndGet(indexOf(micros));
+	}
+
+	/**
+	 * 合并其他直方图的计数（按桶累加）
+	 *
+	 * @param counts 每个桶的计数
+	 */
+	public void add(int[] counts) {
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] != 0) {
+				this.counts.addAndGet(i, counts[i]);
+			}
+		}
+	}
+
+	/**
+	 * 读取并清空直方图
+	 *
+	 * @return 每个桶的计数
+	 */
+	public int[] getAndReset() {
+		int[] snapshot = new int[BUCKET_COUNT];
+
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			if (counts.get(i) != 0) {
+				snapshot[i] = counts.getAndSet(i, 0);
+			}
+		}
+
+		return snapshot;
+	}
+
+	/**
+	 * 计算耗时所在的桶
+	 *
+	 * @param micros 耗时（微秒）
+	 * @return 桶序号
+	 */
+	public static int indexOf(long micros) {
+		if (micros < SUB_BUCKET_COUNT) {
+			return micros < 0 ? 0 : (int) micros;
+		}
+
+		long value    = Math.min(micros, MAX_VALUE);
+		int  exponent = 63 - Long.numberOfLeadingZeros(value);
+		int  sub      = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + sub;
+	}
+
+	/**
+	 * 获取桶的上界（包含），即该桶中可能的最大耗时
+	 *
+	 * @param index 桶序号
+	 * @return 耗时上界（微秒）
+	 */
+	public static long upperBound(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+
+		int  exponent = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+		long sub      = index % SUB_BUCKET_COUNT;
+		long width    = 1L << (exponent - SUB_BUCKET_BITS);
+
+		return (1L << exponent) + (sub + 1) * width - 1;
+	}
+
+	/**
+	 * 根据直方图计算分位数
+	 *
+	 * @param counts   每个桶的计数
+	 * @param total    总计数
+	 * @param quantile 分位（0 ~ 1）
+	 * @return 分位数所在桶的上界（微秒）
+	 */
+	public static long quantile(int[] counts, long total, double quantile) {
+		long rank = (long) Math.ceil(total * quantile);
+		long sum  = 0;
+
+		for (int i = 0; i < counts.length; i++) {
+			sum += counts[i];
+
+			if (sum >= rank && counts[i] > 0) {
+				return upperBound(i);
+			}
+		}
+
+		return 0;
+	}
+
+}
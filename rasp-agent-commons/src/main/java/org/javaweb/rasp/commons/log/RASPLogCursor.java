@@ -0,0 +1,395 @@
+package org.javaweb.rasp.commons.log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.javaweb.rasp.commons.config.RASPConfiguration.AGENT_PROPERTIES;
+import static org.javaweb.rasp.commons.config.RASPConfiguration.MODULES_LOGGER;
+import static org.javaweb.rasp.commons.constants.RASPConstants.ATTACK_LOG;
+import static org.javaweb.rasp.commons.constants.RASPConstants.DEFAULT_ENCODING;
+import static org.javaweb.rasp.commons.utils.EncryptUtils.deContent;
+import static org.javaweb.rasp.commons.utils.FileUtils.readFileToString;
+import static org.javaweb.rasp.commons.utils.FileUtils.writeStringToFile;
+import static org.javaweb.rasp.commons.utils.JsonUtils.toJsonMap;
+import static org.javaweb.rasp.loader.AgentConstants.AGENT_NAME;
+
+/**
+ * RASP日志文件游标，按批读取日志文件（文本日志或二进制日志），每次只在内存中保留一批日志。
+ * <p>
+ * 调用ack确认当前批次已处理（如已同步到云端）后，读取位置会写入检查点文件（日志文件名 + CHECKPOINT_SUFFIX），
+ * 中断后重新打开日志文件时从检查点继续读取；日志全部读取并确认后删除日志文件和检查点文件：
+ * <pre>
+ * RASPLogCursor cursor = RASPLogManager.openLog(file, appId, logType);
+ *
+ * try {
+ *     List&lt;Map&lt;String, Object&gt;&gt; logs;
+ *
+ *     while (!(logs = cursor.nextBatch(DEFAULT_BATCH_SIZE)).isEmpty()) {
+ *         send(logs);
+ *         cursor.ack();
+ *     }
+ * } finally {
+ *     cursor.close();
+ * }
+ * </pre>
+ * 未确认的批次在下次打开日志文件时会被重新读取。AES-GCM日志帧包含多条日志，按日志帧整体计入批次，
+ * 因此一个批次最多可能多出一个日志帧的日志。
+ */
+public class RASPLogCursor implements Closeable {
+
+	/**
+	 * 检查点文件后缀
+	 */
+	public static final String CHECKPOINT_SUFFIX = ".offset";
+
+	/**
+	 * 默认每批日志数
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final File logFile;
+
+	private final File checkpointFile;
+
+	private final String appId;
+
+	private final String logType;
+
+	private final String rc4Key;
+
+	/**
+	 * 二进制日志读取，文本日志时为null
+	 */
+	private RASPBinaryLogReader binaryReader;
+
+	private RandomAccessFile textFile;
+
+	private byte[] buffer;
+
+	private int bufferPos;
+
+	private int bufferEnd;
+
+	/**
+	 * 文本日志下一行的位置
+	 */
+	private long textPosition;
+
+	private byte[] line;
+
+	/**
+	 * 已读取批次的结束位置：{位置, 日志块中已读取的记录数}
+	 */
+	private long readPosition;
+
+	private int readRecordIndex;
+
+	/**
+	 * 已确认批次的结束位置
+	 */
+	private long ackPosition;
+
+	private int ackRecordIndex;
+
+	/**
+	 * 日志文件是否已读取完
+	 */
+	private boolean eof;
+
+	/**
+	 * 日志文件是否已全部确认并删除
+	 */
+	private boolean completed;
+
+	public RASPLogCursor(File logFile, String appId, String logType) throws IOException {
+		this.logFile = logFile;
+		this.checkpointFile = getCheckpointFile(logFile);
+		this.appId = appId;
+		this.logType = logType;
+		this.rc4Key = AGENT_PROPERTIES.getRc4Key();
+
+		long[] checkpoint = readCheckpoint();
+
+		// 日志文件可能正在写入，先输出编码器中缓存的日志块
+		RASPLogger.flushBinaryLog(logFile);
+
+		if (RASPBinaryLogReader.isBinaryLog(logFile)) {
+			this.binaryReader = new RASPBinaryLogReader(logFile);
+
+			if (checkpoint[0] > 0) {
+				binaryReader.resume(checkpoint[0], (int) checkpoint[1]);
+			}
+
+			checkpoint[0] = binaryReader.getCheckpointPosition();
+			checkpoint[1] = binaryReader.getCheckpointRecordIndex();
+		} else {
+			this.textFile = new RandomAccessFile(logFile, "r");
+			this.buffer = new byte[BUFFER_SIZE];
+			this.line = new byte[BUFFER_SIZE];
+			this.textPosition = checkpoint[0];
+			this.textFile.seek(textPosition);
+		}
+
+		this.readPosition = this.ackPosition = checkpoint[0];
+		this.readRecordIndex = this.ackRecordIndex = (int) checkpoint[1];
+	}
+
+	/**
+	 * 获取日志文件的检查点文件
+	 *
+	 * @param logFile 日志文件
+	 * @return 检查点文件
+	 */
+	public static File getCheckpointFile(File logFile) {
+		return new File(logFile.getPath() + CHECKPOINT_SUFFIX);
+	}
+
+	/**
+	 * 读取检查点，检查点不存在或无效时从文件开头读取
+	 */
+	private long[] readCheckpoint() {
+		long[] checkpoint = new long[2];
+
+		if (!checkpointFile.exists()) {
+			return checkpoint;
+		}
+
+		try {
+			String[] values   = readFileToString(checkpointFile, DEFAULT_ENCODING).trim().split(",");
+			long     position = Long.parseLong(values[0]);
+			int      index    = values.length > 1 ? Integer.parseInt(values[1]) : 0;
+
+			if (position >= 0 && position <= logFile.length() && index >= 0) {
+				checkpoint[0] = position;
+				checkpoint[1] = index;
+			}
+		} catch (Exception e) {
+			MODULES_LOGGER.error("{}读取日志检查点：{}异常：{}", AGENT_NAME, checkpointFile, e.toString());
+		}
+
+		return checkpoint;
+	}
+
+	/**
+	 * 读取下一批日志，返回空集合表示日志已读取完
+	 *
+	 * @param batchSize 每批日志数
+	 * @return 日志
+	 * @throws IOException 读取文件异常
+	 */
+	public List<Map<String, Object>> nextBatch(int batchSize) throws IOException {
+		List<Map<String, Object>> logs = new ArrayList<Map<String, Object>>();
+
+		if (completed) {
+			return logs;
+		}
+
+		while (!eof && logs.size() < batchSize) {
+			String record = nextRecord();
+
+			if (record == null) {
+				eof = true;
+				break;
+			}
+
+			if (record.length() > 0) {
+				readRecord(logs, record);
+			}
+		}
+
+		if (binaryReader != null) {
+			readPosition = binaryReader.getCheckpointPosition();
+			readRecordIndex = binaryReader.getCheckpointRecordIndex();
+		} else {
+			readPosition = textPosition;
+		}
+
+		// 已读取完且没有未确认的日志
+		if (eof && logs.isEmpty() && isAcked()) {
+			complete();
+		}
+
+		return logs;
+	}
+
+	/**
+	 * 确认已读取的日志已处理，保存检查点，日志已全部读取时删除日志文件
+	 *
+	 * @throws IOException 写入检查点异常
+	 */
+	public void ack() throws IOException {
+		if (completed || isAcked()) {
+			return;
+		}
+
+		ackPosition = readPosition;
+		ackRecordIndex = readRecordIndex;
+
+		if (eof) {
+			complete();
+		} else {
+			writeStringToFile(checkpointFile, ackPosition + "," + ackRecordIndex, DEFAULT_ENCODING);
+		}
+	}
+
+	private boolean isAcked() {
+		return ackPosition == readPosition && ackRecordIndex == readRecordIndex;
+	}
+
+	/**
+	 * 关闭日志文件并删除日志文件和检查点文件
+	 */
+	private void complete() throws IOException {
+		close();
+		completed = true;
+
+		if (!logFile.delete()) {
+			MODULES_LOGGER.error("{}删除日志文件：{}异常!", AGENT_NAME, logFile);
+		}
+
+		deleteCheckpoint(logFile);
+	}
+
+	/**
+	 * 删除日志文件的检查点文件
+	 *
+	 * @param logFile 日志文件
+	 */
+	public static void deleteCheckpoint(File logFile) {
+		File checkpointFile = getCheckpointFile(logFile);
+
+		if (checkpointFile.exists() && !checkpointFile.delete()) {
+			MODULES_LOGGER.error("{}删除日志检查点：{}异常!", AGENT_NAME, checkpointFile);
+		}
+	}
+
+	/**
+	 * 日志文件是否已全部确认并删除
+	 *
+	 * @return 是否已完成
+	 */
+	public boolean isCompleted() {
+		return completed;
+	}
+
+	private String nextRecord() throws IOException {
+		if (binaryReader != null) {
+			if (binaryReader.next()) {
+				return binaryReader.getRecord();
+			}
+
+			if (binaryReader.getCorruptBlocks() > 0) {
+				MODULES_LOGGER.error(
+						"{}日志文件：{}包含{}个损坏的日志块!", AGENT_NAME, logFile, binaryReader.getCorruptBlocks()
+				);
+			}
+
+			return null;
+		}
+
+		return readLine();
+	}
+
+	/**
+	 * 读取一行文本日志，同时记录下一行的位置
+	 */
+	private String readLine() throws IOException {
+		int length = 0;
+
+		while (true) {
+			if (bufferPos >= bufferEnd) {
+				bufferEnd = textFile.read(buffer);
+				bufferPos = 0;
+
+				if (bufferEnd <= 0) {
+					bufferEnd = 0;
+
+					// 最后一行没有换行符
+					return length > 0 ? toLine(length) : null;
+				}
+			}
+
+			byte b = buffer[bufferPos++];
+			textPosition++;
+
+			if (b == '\n') {
+				return toLine(length);
+			}
+
+			if (length == line.length) {
+				line = Arrays.copyOf(line, line.length * 2);
+			}
+
+			line[length++] = b;
+		}
+	}
+
+	private String toLine(int length) throws IOException {
+		if (length > 0 && line[length - 1] == '\r') {
+			length--;
+		}
+
+		String str = new String(line, 0, length, DEFAULT_ENCODING);
+
+		// 超长日志扩容的缓存恢复默认大小
+		if (line.length > BUFFER_SIZE * 16) {
+			line = new byte[BUFFER_SIZE];
+		}
+
+		return str;
+	}
+
+	private void readRecord(List<Map<String, Object>> logs, String record) {
+		// 攻击日志需要解密，访问日志不需要
+		if (ATTACK_LOG.equals(logType)) {
+			if (RASPLogFrame.isFrame(record)) {
+				readLogFrame(logs, record);
+			} else {
+				addLog(logs, toJsonMap(deContent(record, rc4Key)));
+			}
+		} else {
+			addLog(logs, toJsonMap(record));
+		}
+	}
+
+	/**
+	 * 校验并解密AES-GCM日志帧，校验失败的日志帧会被跳过
+	 */
+	private void readLogFrame(List<Map<String, Object>> logs, String record) {
+		try {
+			for (String log : RASPLogFrame.decode(record, rc4Key)) {
+				addLog(logs, toJsonMap(log));
+			}
+		} catch (GeneralSecurityException e) {
+			MODULES_LOGGER.error("{}日志帧：{}校验失败：{}", AGENT_NAME, logFile, e.toString());
+		}
+	}
+
+	private void addLog(List<Map<String, Object>> logs, Map<String, Object> map) {
+		// 更新应用ID
+		map.put("app_id", appId);
+
+		logs.add(map);
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (binaryReader != null) {
+			binaryReader.close();
+		}
+
+		if (textFile != null) {
+			textFile.close();
+		}
+	}
+
+}
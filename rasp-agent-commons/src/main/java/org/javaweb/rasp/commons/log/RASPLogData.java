@@ -2,10 +2,24 @@ package org.javaweb.rasp.commons.log;
 
 import org.javaweb.rasp.commons.logback.classic.Logger;
 
+import java.io.UnsupportedEncodingException;
+
+import static org.javaweb.rasp.commons.constants.RASPConstants.DEFAULT_ENCODING;
+
 public class RASPLogData {
 
 	private final String raspLog;
 
+	/**
+	 * UTF-8编码的日志，由RASPLogSerializer序列化，加密时不需要再转换成字符串
+	 */
+	private byte[] raspLogBytes;
+
+	/**
+	 * 未序列化的攻击日志，在日志同步线程中才序列化（生成Hook调用链）
+	 */
+	private RASPAttackLog attackLog;
+
 	private final Logger logger;
 
 	/**
@@ -15,14 +29,59 @@ public class RASPLogData {
 
 	public RASPLogData(String raspLog, Logger logger, boolean encrypt) {
 		this.raspLog = raspLog;
+		this.raspLogBytes = null;
+		this.logger = logger;
+		this.encrypt = encrypt;
+	}
+
+	public RASPLogData(byte[] raspLogBytes, Logger logger, boolean encrypt) {
+		this.raspLog = null;
+		this.raspLogBytes = raspLogBytes;
+		this.logger = logger;
+		this.encrypt = encrypt;
+	}
+
+	public RASPLogData(RASPAttackLog attackLog, Logger logger, boolean encrypt) {
+		this.raspLog = null;
+		this.attackLog = attackLog;
 		this.logger = logger;
 		this.encrypt = encrypt;
 	}
 
 	public String getRaspLog() {
+		if (raspLog == null && getRaspLogBytes() != null) {
+			try {
+				return new String(raspLogBytes, DEFAULT_ENCODING);
+			} catch (UnsupportedEncodingException e) {
+				return null;
+			}
+		}
+
 		return raspLog;
 	}
 
+	/**
+	 * 获取UTF-8编码的日志
+	 *
+	 * @return 日志字节
+	 */
+	public byte[] getRaspLogBytes() {
+		if (attackLog != null) {
+			this.raspLogBytes = RASPLogSerializer.toJsonBytes(attackLog);
+			this.attackLog = null;
+		}
+
+		if (raspLogBytes == null && raspLog != null) {
+			try {
+				return raspLog.getBytes(DEFAULT_ENCODING);
+			} catch (UnsupportedEncodingException e) {
+				return null;
+			}
+		}
+
+		return raspLogBytes;
+	}
+
 	public Logger getLogger() {
 		return logger;
 	}
@@ -0,0 +1,37 @@
+package org.javaweb.rasp.commons.log;
+
+/**
+ * RASP攻击日志加密方式
+ */
+public enum RASPLogEncryptMode {
+
+	/**
+	 * 每行日志单独使用RC4加密并Base64编码
+	 */
+	RC4,
+
+	/**
+	 * 每批日志使用AES-GCM加密成一个日志帧，帧头包含记录数和随机数，可以独立校验和解密
+	 */
+	AES_GCM;
+
+	/**
+	 * 解析配置文件中的加密方式，如：rc4、aes_gcm，无法识别时返回默认值
+	 *
+	 * @param name         加密方式名称
+	 * @param defaultValue 默认加密方式
+	 * @return 加密方式
+	 */
+	public static RASPLogEncryptMode parse(String name, RASPLogEncryptMode defaultValue) {
+		if (name != null) {
+			for (RASPLogEncryptMode mode : values()) {
+				if (mode.name().equalsIgnoreCase(name.trim().replace('-', '_'))) {
+					return mode;
+				}
+			}
+		}
+
+		return defaultValue;
+	}
+
+}
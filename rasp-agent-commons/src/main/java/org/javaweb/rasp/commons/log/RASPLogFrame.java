@@ -0,0 +1,358 @@
+package org.javaweb.rasp.commons.log;
+
+import org.javaweb.rasp.commons.utils.DigestUtils;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Constructor;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.javaweb.rasp.commons.constants.RASPConstants.DEFAULT_ENCODING;
+import static org.javaweb.rasp.commons.utils.Base64.getDecoder;
+import static org.javaweb.rasp.commons.utils.Base64.getEncoder;
+
+/**
+ * AES-GCM加密的日志帧，一批日志加密后写成一行：FRAME_PREFIX + Base64(帧头 + 密文 + 认证标签)。
+ * <p>
+ * 帧头固定24字节（Base64编码后正好32个字符），未加密但作为附加认证数据（AAD）参与校验：
+ * <pre>
+ * 0  : 魔数"RL"（2字节）
+ * 2  : 版本号（1字节）
+ * 3  : 标志位（1字节，保留）
+ * 4  : 日志记录数（4字节）
+ * 8  : 明文长度（4字节）
+ * 12 : GCM随机数（12字节）
+ * </pre>
+ * 明文由多条日志组成，每条日志为4字节长度 + UTF-8编码的日志内容。
+ * 每一帧使用独立的随机数，可以只读取帧头跳过日志帧，也可以在多个线程中并行解密不同的日志帧。
+ * <p>
+ * AES密钥由RC4 Key的SHA-256摘要派生（取前128位）。GCMParameterSpec从JDK 7开始提供，
+ * 因此通过反射创建，当前JDK不支持AES-GCM时isSupported返回false，调用方应继续使用RC4加密。
+ */
+public class RASPLogFrame {
+
+	/**
+	 * 日志帧前缀，"$"不是Base64字符，可以和RC4加密的日志行区分
+	 */
+	public static final String FRAME_PREFIX = "$GCM$";
+
+	/**
+	 * 帧头长度
+	 */
+	public static final int HEADER_LENGTH = 24;
+
+	/**
+	 * 单个日志帧最大明文长度，超过后由调用方拆分成多个日志帧
+	 */
+	public static final int MAX_FRAME_SIZE = 4 * 1024 * 1024;
+
+	private static final byte VERSION = 1;
+
+	private static final int NONCE_LENGTH = 12;
+
+	/**
+	 * 认证标签长度（字节）
+	 */
+	private static final int TAG_LENGTH = 16;
+
+	/**
+	 * 帧头Base64编码后的长度
+	 */
+	private static final int ENCODED_HEADER_LENGTH = HEADER_LENGTH / 3 * 4;
+
+	private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+	/**
+	 * GCMParameterSpec(int tLen, byte[] iv)构造方法，不支持时为null
+	 */
+	private static final Constructor<?> GCM_SPEC_CONSTRUCTOR = loadGCMSpecConstructor();
+
+	private static final ThreadLocal<Cipher> CIPHERS = new ThreadLocal<Cipher>();
+
+	/**
+	 * 随机数初始值，每个日志帧在此基础上递增，保证同一进程内不重复
+	 */
+	private static final byte[] NONCE_BASE = new byte[NONCE_LENGTH];
+
+	private static final AtomicLong NONCE_COUNTER = new AtomicLong();
+
+	/**
+	 * 最近一次使用的密钥，RC4 Key基本不会改变，只需缓存一个
+	 */
+	private static volatile Object[] lastKey;
+
+	static {
+		new SecureRandom().nextBytes(NONCE_BASE);
+	}
+
+	private static Constructor<?> loadGCMSpecConstructor() {
+		try {
+			Constructor<?> constructor = Class.forName("javax.crypto.spec.GCMParameterSpec")
+					.getConstructor(int.class, byte[].class);
+
+			// 检测JCE是否提供AES-GCM实现
+			Cipher.getInstance(TRANSFORMATION);
+
+			return constructor;
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	/**
+	 * 当前JDK是否支持AES-GCM
+	 *
+	 * @return 是否支持
+	 */
+	public static boolean isSupported() {
+		return GCM_SPEC_CONSTRUCTOR != null;
+	}
+
+	/**
+	 * 是否是AES-GCM日志帧
+	 *
+	 * @param line 日志行
+	 * @return 是否是日志帧
+	 */
+	public static boolean isFrame(String line) {
+		return line != null && line.startsWith(FRAME_PREFIX);
+	}
+
+	/**
+	 * 只解析帧头获取日志记录数，不解密日志帧
+	 *
+	 * @param line 日志行
+	 * @return 日志记录数，不是日志帧或帧头错误时返回-1
+	 */
+	public static int getRecordCount(String line) {
+		if (!isFrame(line) || line.length() < FRAME_PREFIX.length() + ENCODED_HEADER_LENGTH) {
+			return -1;
+		}
+
+		try {
+			int    start  = FRAME_PREFIX.length();
+			byte[] header = getDecoder().decode(line.substring(start, start + ENCODED_HEADER_LENGTH));
+
+			return checkHeader(header) ? readInt(header, 4) : -1;
+		} catch (IllegalArgumentException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * 加密一批日志
+	 *
+	 * @param records 日志内容
+	 * @param key     RC4 Key
+	 * @return 日志帧
+	 * @throws GeneralSecurityException 加密异常
+	 */
+	public static String encode(List<String> records, String key) throws GeneralSecurityException {
+		List<byte[]> bytes = new ArrayList<byte[]>(records.size());
+
+		for (String record : records) {
+			bytes.add(getBytes(record));
+		}
+
+		return encodeBytes(bytes, key);
+	}
+
+	/**
+	 * 加密一批UTF-8编码的日志
+	 *
+	 * @param records UTF-8编码的日志内容
+	 * @param key     RC4 Key
+	 * @return 日志帧
+	 * @throws GeneralSecurityException 加密异常
+	 */
+	public static String encodeBytes(List<byte[]> records, String key) throws GeneralSecurityException {
+		int length = 0;
+
+		for (byte[] b : records) {
+			length += 4 + b.length;
+		}
+
+		if (length > MAX_FRAME_SIZE) {
+			throw new IllegalArgumentException("log frame too large: " + length);
+		}
+
+		byte[] frame = new byte[HEADER_LENGTH + length + TAG_LENGTH];
+		byte[] nonce = nextNonce();
+
+		frame[0] = 'R';
+		frame[1] = 'L';
+		frame[2] = VERSION;
+		writeInt(frame, 4, records.size());
+		writeInt(frame, 8, length);
+		System.arraycopy(nonce, 0, frame, 12, NONCE_LENGTH);
+
+		// 明文写入帧头之后，在同一个数组中加密
+		int pos = HEADER_LENGTH;
+
+		for (byte[] b : records) {
+			writeInt(frame, pos, b.length);
+			System.arraycopy(b, 0, frame, pos + 4, b.length);
+			pos += 4 + b.length;
+		}
+
+		Cipher cipher = getCipher(Cipher.ENCRYPT_MODE, key, nonce);
+		cipher.updateAAD(frame, 0, HEADER_LENGTH);
+		cipher.doFinal(frame, HEADER_LENGTH, length, frame, HEADER_LENGTH);
+
+		return FRAME_PREFIX + getEncoder().encodeToString(frame);
+	}
+
+	/**
+	 * 校验并解密日志帧
+	 *
+	 * @param line 日志帧
+	 * @param key  RC4 Key
+	 * @return 日志内容
+	 * @throws GeneralSecurityException 日志帧格式错误、被篡改或密钥错误
+	 */
+	public static List<String> decode(String line, String key) throws GeneralSecurityException {
+		if (!isFrame(line)) {
+			throw new GeneralSecurityException("not a log frame");
+		}
+
+		byte[] frame;
+
+		try {
+			frame = getDecoder().decode(line.substring(FRAME_PREFIX.length()).trim());
+		} catch (IllegalArgumentException e) {
+			throw new GeneralSecurityException("invalid log frame encoding", e);
+		}
+
+		if (frame.length < HEADER_LENGTH + TAG_LENGTH || !checkHeader(frame)) {
+			throw new GeneralSecurityException("invalid log frame header");
+		}
+
+		int count  = readInt(frame, 4);
+		int length = readInt(frame, 8);
+
+		if (length < 0 || frame.length != HEADER_LENGTH + length + TAG_LENGTH) {
+			throw new GeneralSecurityException("invalid log frame length");
+		}
+
+		byte[] nonce  = Arrays.copyOfRange(frame, 12, 12 + NONCE_LENGTH);
+		Cipher cipher = getCipher(Cipher.DECRYPT_MODE, key, nonce);
+		cipher.updateAAD(frame, 0, HEADER_LENGTH);
+
+		int          plainLength = cipher.doFinal(frame, HEADER_LENGTH, length + TAG_LENGTH, frame, HEADER_LENGTH);
+		int          end         = HEADER_LENGTH + plainLength;
+		List<String> records     = new ArrayList<String>(count);
+
+		for (int pos = HEADER_LENGTH; pos < end; ) {
+			int len = readInt(frame, pos);
+
+			if (len < 0 || pos + 4 + len > end) {
+				throw new GeneralSecurityException("invalid log record length");
+			}
+
+			try {
+				records.add(new String(frame, pos + 4, len, DEFAULT_ENCODING));
+			} catch (UnsupportedEncodingException e) {
+				throw new GeneralSecurityException(e);
+			}
+
+			pos += 4 + len;
+		}
+
+		if (records.size() != count) {
+			throw new GeneralSecurityException("invalid log record count");
+		}
+
+		return records;
+	}
+
+	/**
+	 * 获取当前线程的Cipher，Cipher不是线程安全的，每个线程使用独立的实例
+	 */
+	private static Cipher getCipher(int mode, String key, byte[] nonce) throws GeneralSecurityException {
+		if (!isSupported()) {
+			throw new GeneralSecurityException(TRANSFORMATION + " is not supported");
+		}
+
+		Cipher cipher = CIPHERS.get();
+
+		if (cipher == null) {
+			cipher = Cipher.getInstance(TRANSFORMATION);
+			CIPHERS.set(cipher);
+		}
+
+		AlgorithmParameterSpec spec;
+
+		try {
+			spec = (AlgorithmParameterSpec) GCM_SPEC_CONSTRUCTOR.newInstance(TAG_LENGTH * 8, nonce);
+		} catch (Exception e) {
+			throw new GeneralSecurityException(e);
+		}
+
+		cipher.init(mode, getKey(key), spec);
+
+		return cipher;
+	}
+
+	private static SecretKeySpec getKey(String key) throws GeneralSecurityException {
+		if (key == null || key.length() == 0) {
+			throw new GeneralSecurityException("log encryption key must not be empty");
+		}
+
+		Object[] cached = lastKey;
+
+		if (cached == null || !cached[0].equals(key)) {
+			byte[] digest = DigestUtils.getDigest("SHA-256").digest(getBytes(key));
+
+			cached = new Object[]{key, new SecretKeySpec(digest, 0, 16, "AES")};
+			lastKey = cached;
+		}
+
+		return (SecretKeySpec) cached[1];
+	}
+
+	private static byte[] nextNonce() {
+		byte[] nonce   = NONCE_BASE.clone();
+		long   counter = NONCE_COUNTER.getAndIncrement();
+
+		// 计数器加到随机数的后8个字节上
+		for (int i = NONCE_LENGTH - 1; i >= NONCE_LENGTH - 8; i--) {
+			int sum = (nonce[i] & 0xFF) + (int) (counter & 0xFF);
+
+			nonce[i] = (byte) sum;
+			counter = (counter >>> 8) + (sum >>> 8);
+		}
+
+		return nonce;
+	}
+
+	private static boolean checkHeader(byte[] header) {
+		return header.length >= HEADER_LENGTH && header[0] == 'R' && header[1] == 'L' && header[2] == VERSION;
+	}
+
+	private static byte[] getBytes(String str) {
+		try {
+			return str.getBytes(DEFAULT_ENCODING);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void writeInt(byte[] b, int off, int i) {
+		b[off] = (byte) (i >>> 24);
+		b[off + 1] = (byte) (i >>> 16);
+		b[off + 2] = (byte) (i >>> 8);
+		b[off + 3] = (byte) i;
+	}
+
+	private static int readInt(byte[] b, int off) {
+		return (b[off] & 0xFF) << 24 | (b[off + 1] & 0xFF) << 16 | (b[off + 2] & 0xFF) << 8 | (b[off + 3] & 0xFF);
+	}
+
+}
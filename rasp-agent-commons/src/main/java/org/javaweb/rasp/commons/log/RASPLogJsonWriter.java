@@ -0,0 +1,290 @@
+package org.javaweb.rasp.commons.log;
+
+import java.util.Arrays;
+
+/**
+ * RASP日志JSON输出，直接将JSON写入可复用的UTF-8字节缓存，只支持RASP日志使用的扁平对象。
+ * <p>
+ * 输出格式和JsonUtils#toJson（Gson，disableHtmlEscaping）一致：值为null的字段不输出，
+ * 控制字符、"\""、"\\"、"\u2028"、"\u2029"转义，不成对的代理字符和String#getBytes一样编码为"?"。
+ */
+public class RASPLogJsonWriter {
+
+	private static final byte[] HEX = {
+			'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
+	};
+
+	private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+
+	private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+
+	private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+
+	/**
+	 * 默认缓存大小
+	 */
+	private static final int DEFAULT_SIZE = 1024;
+
+	/**
+	 * 缓存超过该大小时，reset后释放缓存，避免长期持有超长日志的缓存
+	 */
+	private static final int MAX_RETAINED_SIZE = 64 * 1024;
+
+	/**
+	 * 字符转义，0表示不需要转义，其他值为"\\"之后的字符，'u'表示使用\\uXXXX
+	 */
+	private static final byte[] ESCAPES = new byte[128];
+
+	static {
+		for (int i = 0; i < 0x20; i++) {
+			ESCAPES[i] = 'u';
+		}
+
+		ESCAPES['"'] = '"';
+		ESCAPES['\\'] = '\\';
+		ESCAPES['\t'] = 't';
+		ESCAPES['\b'] = 'b';
+		ESCAPES['\n'] = 'n';
+		ESCAPES['\r'] = 'r';
+		ESCAPES['\f'] = 'f';
+	}
+
+	private byte[] buf = new byte[DEFAULT_SIZE];
+
+	private int count;
+
+	/**
+	 * 当前对象是否还没有输出字段
+	 */
+	private boolean firstField;
+
+	/**
+	 * 预编码字段名称，如："log_version"编码为"\"log_version\":"
+	 *
+	 * @param name 字段名称，只能包含不需要转义的ASCII字符
+	 * @return 编码后的字段名称
+	 */
+	public static byte[] encodeName(String name) {
+		return encodeAscii('"' + name + "\":");
+	}
+
+	/**
+	 * 预编码字段名称和字符串值，用于不常变化的字段，如：时区
+	 *
+	 * @param name  字段名称
+	 * @param value 字段值
+	 * @return 编码后的字段，value为null时返回null
+	 */
+	public static byte[] encodeField(String name, String value) {
+		if (value == null) {
+			return null;
+		}
+
+		RASPLogJsonWriter writer = new RASPLogJsonWriter();
+		writer.write(encodeName(name));
+		writer.writeString(value);
+
+		return writer.toByteArray();
+	}
+
+	private static byte[] encodeAscii(String str) {
+		byte[] bytes = new byte[str.length()];
+
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) str.charAt(i);
+		}
+
+		return bytes;
+	}
+
+	public void beginObject() {
+		write('{');
+		firstField = true;
+	}
+
+	public void endObject() {
+		write('}');
+	}
+
+	/**
+	 * 输出预编码的字段（字段名称和值）
+	 *
+	 * @param field 预编码的字段
+	 */
+	public void field(byte[] field) {
+		if (field != null) {
+			separator();
+			write(field);
+		}
+	}
+
+	public void field(byte[] name, String value) {
+		if (value != null) {
+			separator();
+			write(name);
+			writeString(value);
+		}
+	}
+
+	public void field(byte[] name, long value) {
+		separator();
+		write(name);
+		writeLong(value);
+	}
+
+	public void field(byte[] name, boolean value) {
+		separator();
+		write(name);
+		write(value ? TRUE : FALSE);
+	}
+
+	public void field(byte[] name, String[] values) {
+		if (values == null) {
+			return;
+		}
+
+		separator();
+		write(name);
+		write('[');
+
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				write(',');
+			}
+
+			if (values[i] != null) {
+				writeString(values[i]);
+			} else {
+				write(NULL);
+			}
+		}
+
+		write(']');
+	}
+
+	private void separator() {
+		if (firstField) {
+			firstField = false;
+		} else {
+			write(',');
+		}
+	}
+
+	private void writeLong(long value) {
+		if (value >= 0 && value < 10) {
+			write((int) ('0' + value));
+		} else {
+			String str = Long.toString(value);
+
+			ensureCapacity(str.length());
+
+			for (int i = 0; i < str.length(); i++) {
+				buf[count++] = (byte) str.charAt(i);
+			}
+		}
+	}
+
+	private void writeString(String str) {
+		int length = str.length();
+
+		// 每个字符最多输出6个字节（\\uXXXX）
+		ensureCapacity(length * 6 + 2);
+
+		byte[] b = buf;
+		int    n = count;
+
+		b[n++] = '"';
+
+		for (int i = 0; i < length; i++) {
+			char c = str.charAt(i);
+
+			if (c < 0x80) {
+				byte escape = ESCAPES[c];
+
+				if (escape == 0) {
+					b[n++] = (byte) c;
+				} else if (escape == 'u') {
+					n = writeUnicodeEscape(b, n, c);
+				} else {
+					b[n++] = '\\';
+					b[n++] = escape;
+				}
+			} else if (c < 0x800) {
+				b[n++] = (byte) (0xC0 | (c >> 6));
+				b[n++] = (byte) (0x80 | (c & 0x3F));
+			} else if (c == '\u2028' || c == '\u2029') {
+				n = writeUnicodeEscape(b, n, c);
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(str.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, str.charAt(++i));
+
+				b[n++] = (byte) (0xF0 | (codePoint >> 18));
+				b[n++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+				b[n++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+				b[n++] = (byte) (0x80 | (codePoint & 0x3F));
+			} else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+				b[n++] = '?';
+			} else {
+				b[n++] = (byte) (0xE0 | (c >> 12));
+				b[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				b[n++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+
+		b[n++] = '"';
+
+		count = n;
+	}
+
+	private static int writeUnicodeEscape(byte[] b, int n, char c) {
+		b[n++] = '\\';
+		b[n++] = 'u';
+		b[n++] = HEX[(c >> 12) & 0xF];
+		b[n++] = HEX[(c >> 8) & 0xF];
+		b[n++] = HEX[(c >> 4) & 0xF];
+		b[n++] = HEX[c & 0xF];
+
+		return n;
+	}
+
+	private void write(int b) {
+		ensureCapacity(1);
+		buf[count++] = (byte) b;
+	}
+
+	private void write(byte[] b) {
+		ensureCapacity(b.length);
+		System.arraycopy(b, 0, buf, count, b.length);
+		count += b.length;
+	}
+
+	private void ensureCapacity(int len) {
+		if (count + len > buf.length) {
+			buf = Arrays.copyOf(buf, Math.max(buf.length << 1, count + len));
+		}
+	}
+
+	/**
+	 * 复制当前输出的JSON
+	 *
+	 * @return UTF-8编码的JSON
+	 */
+	public byte[] toByteArray() {
+		return Arrays.copyOf(buf, count);
+	}
+
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * 清空输出，开始输出新的JSON
+	 */
+	public void reset() {
+		count = 0;
+
+		if (buf.length > MAX_RETAINED_SIZE) {
+			buf = new byte[DEFAULT_SIZE];
+		}
+	}
+
+}
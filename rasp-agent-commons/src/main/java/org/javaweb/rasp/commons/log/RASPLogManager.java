@@ -12,12 +12,8 @@ import java.util.Map;
 
 import static java.util.Collections.addAll;
 import static org.javaweb.rasp.commons.config.RASPConfiguration.*;
-import static org.javaweb.rasp.commons.constants.RASPConstants.ATTACK_LOG;
-import static org.javaweb.rasp.commons.constants.RASPConstants.DEFAULT_ENCODING;
+import static org.javaweb.rasp.commons.log.RASPLogCursor.*;
 import static org.javaweb.rasp.commons.log.RASPLogger.*;
-import static org.javaweb.rasp.commons.utils.EncryptUtils.deContent;
-import static org.javaweb.rasp.commons.utils.FileUtils.readLines;
-import static org.javaweb.rasp.commons.utils.JsonUtils.toJsonMap;
 import static org.javaweb.rasp.loader.AgentConstants.AGENT_NAME;
 
 /**
@@ -88,12 +84,23 @@ public class RASPLogManager {
 	 * @param loggerFileName logger日志名称，如：rasp-attack.log
 	 * @return 返回Logger文件对应的日志文件数组
 	 */
-	public static File[] listAppLogFiles(File app, final String loggerFileName) {
+	public static File[] listAppLogFiles(final File app, final String loggerFileName) {
 		return app.listFiles(new FileFilter() {
 			@Override
 			public boolean accept(File file) {
 				String name = file.getName();
 
+				// 删除日志文件已不存在的检查点文件
+				if (name.endsWith(CHECKPOINT_SUFFIX)) {
+					String logName = name.substring(0, name.length() - CHECKPOINT_SUFFIX.length());
+
+					if (name.startsWith(loggerFileName) && !new File(app, logName).exists()) {
+						deleteCheckpoint(new File(app, logName));
+					}
+
+					return false;
+				}
+
 				if (!name.endsWith(".txt")) {
 					return false;
 				}
@@ -112,40 +119,76 @@ public class RASPLogManager {
 		});
 	}
 
+	/**
+	 * 打开日志文件游标，按批读取日志，日志全部读取并确认后删除日志文件
+	 *
+	 * @param logFile 日志文件
+	 * @param appId   应用ID
+	 * @param logType 日志类型
+	 * @return 日志游标
+	 * @throws IOException 打开文件异常
+	 */
+	public static RASPLogCursor openLog(File logFile, String appId, String logType) throws IOException {
+		return new RASPLogCursor(logFile, appId, logType);
+	}
+
+	/**
+	 * readLog每次调用最多返回的日志数
+	 */
+	public static final int MAX_READ_LOG_SIZE = 10 * DEFAULT_BATCH_SIZE;
+
+	/**
+	 * 从检查点开始读取日志文件中的日志，每次最多返回MAX_READ_LOG_SIZE条，读取后保存检查点，
+	 * 日志全部读取后删除日志文件，未读取完的日志在下次调用时继续读取（日志文件不会被删除）。
+	 *
+	 * @param logFile 日志文件
+	 * @param appId   应用ID
+	 * @param logType 日志类型
+	 * @return 日志
+	 * @throws IOException 读取文件异常
+	 * @deprecated 使用openLog按批读取日志（nextBatch），处理完每批日志后调用ack确认
+	 */
+	@Deprecated
 	public static List<Map<String, Object>> readLog(File logFile, String appId, String logType) throws IOException {
-		try {
-			List<Map<String, Object>> logs   = new ArrayList<Map<String, Object>>();
-			String                    rc4Key = AGENT_PROPERTIES.getRc4Key();
+		List<Map<String, Object>> logs = new ArrayList<Map<String, Object>>();
 
-			if (logFile.exists() && logFile.length() > 0) {
-				// 按行读取日志文件
-				List<String> lines = readLines(logFile, DEFAULT_ENCODING);
+		if (!logFile.exists() || logFile.length() == 0) {
+			MODULES_LOGGER.info("{}无法读取日志文件：{}，内容为空!", AGENT_NAME, logFile);
+			deleteLog(logFile);
 
-				for (String line : lines) {
-					Map<String, Object> map;
+			return logs;
+		}
 
-					// 攻击日志需要解密，访问日志不需要
-					if (ATTACK_LOG.equals(logType)) {
-						map = toJsonMap(deContent(line, rc4Key));
-					} else {
-						map = toJsonMap(line);
-					}
+		RASPLogCursor cursor = openLog(logFile, appId, logType);
 
-					// 更新应用ID
-					map.put("app_id", appId);
+		try {
+			List<Map<String, Object>> batch;
 
-					logs.add(map);
-				}
-			} else {
-				MODULES_LOGGER.info("{}无法读取日志文件：{}，内容为空!", AGENT_NAME, logFile);
+			while (logs.size() < MAX_READ_LOG_SIZE &&
+					!(batch = cursor.nextBatch(Math.min(DEFAULT_BATCH_SIZE, MAX_READ_LOG_SIZE - logs.size()))).isEmpty()) {
+
+				logs.addAll(batch);
 			}
 
-			return logs;
+			cursor.ack();
+		} catch (IOException e) {
+			// 读取失败的日志文件直接删除，避免每次读取都失败
+			deleteLog(logFile);
+
+			throw e;
 		} finally {
-			if (!logFile.delete()) {
-				MODULES_LOGGER.error("{}删除日志文件：{}异常!", AGENT_NAME, logFile);
-			}
+			cursor.close();
+		}
+
+		return logs;
+	}
+
+	private static void deleteLog(File logFile) {
+		if (logFile.exists() && !logFile.delete()) {
+			MODULES_LOGGER.error("{}删除日志文件：{}异常!", AGENT_NAME, logFile);
 		}
+
+		deleteCheckpoint(logFile);
 	}
 
 }
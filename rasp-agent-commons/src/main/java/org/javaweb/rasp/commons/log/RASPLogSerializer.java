@@ -0,0 +1,174 @@
+package org.javaweb.rasp.commons.log;
+
+import java.io.UnsupportedEncodingException;
+import java.util.TimeZone;
+
+import static org.javaweb.rasp.commons.constants.RASPConstants.DEFAULT_ENCODING;
+import static org.javaweb.rasp.commons.log.RASPLogJsonWriter.encodeField;
+import static org.javaweb.rasp.commons.log.RASPLogJsonWriter.encodeName;
+import static org.javaweb.rasp.commons.utils.JsonUtils.toJson;
+
+/**
+ * RASP日志JSON序列化，按字段声明顺序（和@SerializedName一致）直接写入UTF-8字节，不使用Gson反射。
+ * 输出结果和JsonUtils#toJson一致，RASPAttackLog、RASPAccessLog的子类可能包含其他字段，仍使用Gson序列化。
+ * <p>
+ * 修改RASPAttackLog、RASPAccessLog的字段时需要同步修改该类。
+ */
+public class RASPLogSerializer {
+
+	private static final String TIME_ZONE = TimeZone.getDefault().getID();
+
+	private static final byte[] TIMEZONE = encodeName("timezone");
+
+	/**
+	 * 预编码的时区字段，RASP日志的时区都是默认时区
+	 */
+	private static final byte[] DEFAULT_TIMEZONE_FIELD = encodeField("timezone", TIME_ZONE);
+
+	private static final byte[] SILENT = encodeName("silent");
+
+	private static final byte[] APP_ID = encodeName("app_id");
+
+	private static final byte[] TIME = encodeName("time");
+
+	private static final byte[] ATTACK_BLOCK_REQUEST = encodeName("attack_block_request");
+
+	private static final byte[] ATTACK_PARAMETER = encodeName("attack_parameter");
+
+	private static final byte[] ATTACK_VALUES = encodeName("attack_values");
+
+	private static final byte[] ATTACK_POSITION = encodeName("attack_position");
+
+	private static final byte[] ATTACK_TYPE = encodeName("attack_type");
+
+	private static final byte[] ATTACK_HASH = encodeName("attack_hash");
+
+	private static final byte[] HOOK_CLASS_NAME = encodeName("hook_class_name");
+
+	private static final byte[] HOOK_METHOD_NAME = encodeName("hook_method_name");
+
+	private static final byte[] HOOK_METHOD_ARGS_DESC = encodeName("hook_method_args_desc");
+
+	private static final byte[] HOOK_TRACE_ELEMENTS = encodeName("hook_trace_elements");
+
+	private static final byte[] HOOK_TRACE_HASH = encodeName("hook_trace_hash");
+
+	private static final byte[] REQUEST_URL = encodeName("request_url");
+
+	private static final byte[] REMOTE_IP = encodeName("remote_ip");
+
+	private static final byte[] REQUEST_TIME = encodeName("request_time");
+
+	private static final ThreadLocal<RASPLogJsonWriter> WRITERS = new ThreadLocal<RASPLogJsonWriter>() {
+		@Override
+		protected RASPLogJsonWriter initialValue() {
+			return new RASPLogJsonWriter();
+		}
+	};
+
+	/**
+	 * 预编码的日志版本字段，日志版本只在配置文件修改后变化，缓存最近一次的编码结果：{版本号, 编码后的字段}
+	 */
+	private static volatile Object[] logVersionField = new Object[]{null, null};
+
+	/**
+	 * 序列化攻击日志
+	 *
+	 * @param log 攻击日志
+	 * @return UTF-8编码的JSON
+	 */
+	public static byte[] toJsonBytes(RASPAttackLog log) {
+		// 生成Hook调用链
+		String traceElements = log.getHookTraceElements();
+
+		if (log.getClass() != RASPAttackLog.class) {
+			return getBytes(toJson(log));
+		}
+
+		RASPLogJsonWriter out = WRITERS.get();
+
+		try {
+			out.beginObject();
+			out.field(SILENT, log.silent);
+			out.field(getLogVersionField(log.getLogVersion()));
+			out.field(APP_ID, log.getAppId());
+			out.field(TIME, log.getTime());
+			writeTimezone(out, log.getTimezone());
+			out.field(ATTACK_BLOCK_REQUEST, log.attackBlockRequest);
+			out.field(ATTACK_PARAMETER, log.attackParameter);
+			out.field(ATTACK_VALUES, log.attackValues);
+			out.field(ATTACK_POSITION, log.attackPosition);
+			out.field(ATTACK_TYPE, log.attackType);
+			out.field(ATTACK_HASH, log.attackHash);
+			out.field(HOOK_CLASS_NAME, log.hookClassName);
+			out.field(HOOK_METHOD_NAME, log.hookMethodName);
+			out.field(HOOK_METHOD_ARGS_DESC, log.hookMethodArgsDesc);
+			out.field(HOOK_TRACE_ELEMENTS, traceElements);
+			out.field(HOOK_TRACE_HASH, log.hookTraceHash);
+			out.endObject();
+
+			return out.toByteArray();
+		} finally {
+			out.reset();
+		}
+	}
+
+	/**
+	 * 序列化访问日志
+	 *
+	 * @param log 访问日志
+	 * @return UTF-8编码的JSON
+	 */
+	public static byte[] toJsonBytes(RASPAccessLog log) {
+		if (log.getClass() != RASPAccessLog.class) {
+			return getBytes(toJson(log));
+		}
+
+		RASPLogJsonWriter out = WRITERS.get();
+
+		try {
+			out.beginObject();
+			out.field(REQUEST_URL, log.getRequestUrl());
+			out.field(REMOTE_IP, log.getRemoteIp());
+			out.field(REQUEST_TIME, log.getRequestTime());
+			writeTimezone(out, log.getTimezone());
+			out.endObject();
+
+			return out.toByteArray();
+		} finally {
+			out.reset();
+		}
+	}
+
+	private static void writeTimezone(RASPLogJsonWriter out, String timezone) {
+		if (TIME_ZONE.equals(timezone)) {
+			out.field(DEFAULT_TIMEZONE_FIELD);
+		} else {
+			out.field(TIMEZONE, timezone);
+		}
+	}
+
+	private static byte[] getLogVersionField(String logVersion) {
+		Object[] cached = logVersionField;
+
+		if (logVersion == null) {
+			return null;
+		}
+
+		if (!logVersion.equals(cached[0])) {
+			cached = new Object[]{logVersion, encodeField("log_version", logVersion)};
+			logVersionField = cached;
+		}
+
+		return (byte[]) cached[1];
+	}
+
+	private static byte[] getBytes(String json) {
+		try {
+			return json.getBytes(DEFAULT_ENCODING);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -7,6 +7,7 @@ import org.javaweb.rasp.commons.logback.classic.LoggerContext;
 import org.javaweb.rasp.commons.logback.classic.encoder.PatternLayoutEncoder;
 import org.javaweb.rasp.commons.logback.classic.spi.ILoggingEvent;
 import org.javaweb.rasp.commons.logback.core.Appender;
+import org.javaweb.rasp.commons.logback.core.encoder.Encoder;
 import org.javaweb.rasp.commons.logback.core.util.FileSize;
 import org.javaweb.rasp.commons.slf4j.LoggerFactory;
 import org.javaweb.rasp.loader.AgentConstants;
@@ -35,11 +36,18 @@ public class RASPLogger {
 		// 设置日志格式
 		PatternLayoutEncoder layout = new PatternLayoutEncoder();
 		layout.setPattern(pattern);
-		layout.setContext(LOGGER_CONTEXT);
-		layout.start();
+
+		return createRASPLogger(name, file, level, layout, fileSize);
+	}
+
+	public static Logger createRASPLogger(String name, File file, Level level,
+	                                      Encoder<ILoggingEvent> encoder, String fileSize) {
+
+		encoder.setContext(LOGGER_CONTEXT);
+		encoder.start();
 
 		RASPFileAppender<ILoggingEvent> fileAppender = new RASPFileAppender<ILoggingEvent>();
-		fileAppender.setEncoder(layout);
+		fileAppender.setEncoder(encoder);
 
 		if (fileSize != null) {
 			try {
@@ -112,6 +120,50 @@ public class RASPLogger {
 		}
 	}
 
+	/**
+	 * 输出所有二进制日志中缓存的日志块
+	 *
+	 * @param force 是否强制输出，false时只输出缓存超时的日志块
+	 */
+	public static void flushBinaryLogs(boolean force) {
+		for (Logger logger : LOGGER_CONTEXT.getLoggerList()) {
+			Iterator<Appender<ILoggingEvent>> iterator = logger.iteratorForAppenders();
+
+			while (iterator.hasNext()) {
+				Appender<ILoggingEvent> e = iterator.next();
+
+				if (e instanceof RASPFileAppender) {
+					((RASPFileAppender<ILoggingEvent>) e).flushBinaryBlock(force);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 输出正在写入logFile的二进制日志中缓存的日志块，读取日志文件前调用
+	 *
+	 * @param logFile 日志文件
+	 */
+	public static void flushBinaryLog(File logFile) {
+		String path = logFile.getAbsolutePath();
+
+		for (Logger logger : LOGGER_CONTEXT.getLoggerList()) {
+			Iterator<Appender<ILoggingEvent>> iterator = logger.iteratorForAppenders();
+
+			while (iterator.hasNext()) {
+				Appender<ILoggingEvent> e = iterator.next();
+
+				if (e instanceof RASPFileAppender) {
+					RASPFileAppender<ILoggingEvent> appender = (RASPFileAppender<ILoggingEvent>) e;
+
+					if (appender.getFile() != null && path.equals(new File(appender.getFile()).getAbsolutePath())) {
+						appender.flushBinaryBlock(true);
+					}
+				}
+			}
+		}
+	}
+
 	public static Logger getLogger(String name) {
 		return LOGGER_CONTEXT.getLogger(name);
 	}
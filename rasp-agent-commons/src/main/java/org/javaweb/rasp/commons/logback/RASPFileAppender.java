@@ -13,6 +13,7 @@
  */
 package org.javaweb.rasp.commons.logback;
 
+import org.javaweb.rasp.commons.log.RASPBinaryLogEncoder;
 import org.javaweb.rasp.commons.logback.core.recovery.ResilientFileOutputStream;
 import org.javaweb.rasp.commons.logback.core.rolling.RolloverFailure;
 import org.javaweb.rasp.commons.logback.core.util.ContextUtil;
@@ -298,40 +299,74 @@ public class RASPFileAppender<E> extends RASPOutputStreamAppender<E> {
 		}
 	}
 
-	public synchronized void rollover() {
-		File file       = new File(getFile());
-		File parentFile = file.getParentFile();
+	/**
+	 * 二进制日志的编码和写入必须在同一个锁中完成，否则定时输出的日志块可能和正在写入的日志块乱序（段索引偏移量错误）
+	 */
+	@Override
+	protected void subAppend(E event) {
+		if (getEncoder() instanceof RASPBinaryLogEncoder) {
+			lock.lock();
 
-		if (file.exists() && file.length() > 0) {
 			try {
-				stop();
+				super.subAppend(event);
+			} finally {
+				lock.unlock();
+			}
+		} else {
+			super.subAppend(event);
+		}
+	}
 
-				// 临时日志文件
-				File targetFile = new File(getFile() + "." + System.nanoTime() + ".txt");
+	/**
+	 * 输出二进制日志编码器中缓存的日志块，非二进制日志不做任何处理
+	 *
+	 * @param force 是否强制输出，false时只输出缓存超时的日志块
+	 */
+	public void flushBinaryBlock(boolean force) {
+		if (!(getEncoder() instanceof RASPBinaryLogEncoder) || !isStarted()) {
+			return;
+		}
 
-				if (!parentFile.exists()) {
-					if (!parentFile.mkdirs()) {
-						throw new RolloverFailure("Directory [" + parentFile + "] create failed.");
-					}
-				}
+		lock.lock();
 
-				try {
-					// 复制原文件为新的日志文件，成功后删除原文件
-					copyFile(file, targetFile);
+		try {
+			writeBytes(((RASPBinaryLogEncoder) getEncoder()).flush(force));
+		} catch (IOException e) {
+			addError("Flush binary log block to [" + fileName + "] failed.", e);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public synchronized void rollover() {
+		File file = new File(getFile());
+
+		if (file.exists() && file.length() > 0) {
+			// 临时日志文件
+			File targetFile = new File(getFile() + "." + System.nanoTime() + ".txt");
 
-					// 删除原文件
-					if (!file.delete()) {
-						throw new RolloverFailure("File [" + file + "] deletion failed.");
+			try {
+				stop();
+
+				// 重命名原文件为新的日志文件，只在重命名失败时（如Windows下文件被其他进程占用）复制原文件
+				if (!file.renameTo(targetFile)) {
+					try {
+						copyFile(file, targetFile);
+
+						// 删除原文件
+						if (!file.delete()) {
+							throw new RolloverFailure("File [" + file + "] deletion failed.");
+						}
+					} catch (IOException e) {
+						throw new RolloverFailure("File [" + file + "] copy failed.");
 					}
-				} catch (IOException e) {
-					throw new RolloverFailure("File [" + file + "] copy failed.");
 				}
-
-				// 切割日志文件
-				splitFile(targetFile);
 			} finally {
 				start();
 			}
+
+			// 切割日志文件，不需要暂停写入日志
+			splitFile(targetFile);
 		}
 	}
 
@@ -340,6 +375,11 @@ public class RASPFileAppender<E> extends RASPOutputStreamAppender<E> {
 	 * @param targetFile
 	 */
 	private void splitFile(File targetFile) {
+		// 二进制日志不能按行切割
+		if (getEncoder() instanceof RASPBinaryLogEncoder) {
+			return;
+		}
+
 		try {
 			if (targetFile.length() > fileSize) {
 				List<File> fileList = FileUtils.split(targetFile, fileSize);
@@ -191,7 +191,7 @@ public class RASPOutputStreamAppender<E> extends UnsynchronizedAppenderBase<E> {
 		writeBytes(byteArray);
 	}
 
-	private void writeBytes(byte[] byteArray) throws IOException {
+	protected void writeBytes(byte[] byteArray) throws IOException {
 		if (byteArray == null || byteArray.length == 0)
 			return;
 
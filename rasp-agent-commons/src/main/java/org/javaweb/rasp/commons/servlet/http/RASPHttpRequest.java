@@ -46,6 +46,15 @@ public class RASPHttpRequest implements HttpServletRequestProxy {
 		this.requestInfo = requestInfo;
 	}
 
+	/**
+	 * 是否已缓存请求信息，已缓存时不需要调用容器方法获取
+	 *
+	 * @return 是否已缓存请求信息
+	 */
+	protected boolean hasRequestInfo() {
+		return requestInfo != null;
+	}
+
 	@Override
 	public Object __getRequest() {
 		return request;
@@ -61,7 +70,7 @@ public class RASPHttpRequest implements HttpServletRequestProxy {
 		Object obj = invokeProxyMethod(request, "getSession", BOOLEAN_CLASS_ARG, create);
 
 		if (obj != null) {
-			return new RASPHttpSession(obj);
+			return RASPProxyClassGenerator.createHttpSession(obj);
 		}
 
 		return null;
@@ -81,7 +90,7 @@ public class RASPHttpRequest implements HttpServletRequestProxy {
 				RASPCookie[] cookies = new RASPCookie[obj.length];
 
 				for (int i = 0; i < obj.length; i++) {
-					cookies[i] = new RASPCookie(obj[i]);
+					cookies[i] = RASPProxyClassGenerator.createCookie(obj[i]);
 				}
 
 				return cookies;
@@ -191,7 +200,7 @@ public class RASPHttpRequest implements HttpServletRequestProxy {
 		Object inputStream = invokeProxyMethod(request, "getInputStream");
 
 		if (inputStream != null) {
-			return new RASPServletInputStream(inputStream);
+			return RASPProxyClassGenerator.createServletInputStream(inputStream);
 		}
 
 		return null;
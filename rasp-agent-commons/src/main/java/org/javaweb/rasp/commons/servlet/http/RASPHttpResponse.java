@@ -32,7 +32,7 @@ public class RASPHttpResponse implements HttpServletResponseProxy {
 
 	@Override
 	public void setHeader(String name, String value) {
-		invokeProxyMethod(response, "setHeader", STRING_STRING_CLASS_ARG, name);
+		invokeProxyMethod(response, "setHeader", STRING_STRING_CLASS_ARG, name, value);
 	}
 
 	@Override
@@ -86,7 +86,7 @@ public class RASPHttpResponse implements HttpServletResponseProxy {
 		Object obj = invokeProxyMethod(response, "getOutputStream");
 
 		if (obj != null) {
-			return new RASPServletOutputStream(obj);
+			return RASPProxyClassGenerator.createServletOutputStream(obj);
 		}
 
 		return null;
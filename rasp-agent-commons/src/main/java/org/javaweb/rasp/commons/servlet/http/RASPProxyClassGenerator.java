@@ -0,0 +1,453 @@
+package org.javaweb.rasp.commons.servlet.http;
+
+import org.javaweb.rasp.commons.RASPAdapterClassLoader;
+import org.javaweb.rasp.commons.javassist.ClassPool;
+import org.javaweb.rasp.commons.javassist.CtClass;
+import org.javaweb.rasp.commons.javassist.CtField;
+import org.javaweb.rasp.commons.javassist.CtNewConstructor;
+import org.javaweb.rasp.commons.javassist.CtNewMethod;
+import org.javaweb.rasp.commons.javassist.LoaderClassPath;
+import org.javaweb.rasp.commons.servlet.*;
+import org.javaweb.rasp.commons.utils.WeakIdentityCache;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.javaweb.rasp.commons.config.RASPConfiguration.AGENT_LOGGER;
+import static org.javaweb.rasp.loader.AgentConstants.AGENT_NAME;
+
+/**
+ * Servlet代理类生成器：使用javassist为每个容器实现类（如Tomcat的Request、CoyoteInputStream）生成一次RASP代理类的子类，
+ * 子类中的方法直接通过invokeinterface/invokevirtual调用容器对象，避免反射调用时的Method.invoke、参数数组创建和返回值装箱。
+ * <p>
+ * 生成的代理类定义在以容器类加载器为父类加载器的{@link RASPAdapterClassLoader}中，
+ * 返回值为RASP代理对象（如getSession、getInputStream）或容器中不存在的方法不会被重写，仍然使用父类的反射调用；
+ * 代理类生成失败时直接使用反射调用的代理类。
+ * <p>
+ * 和反射调用一致，直接调用容器方法抛出的异常（包括javassist不检查的受检异常）不会抛给RASP Hook代码，
+ * 而是记录debug日志后返回默认值（对象返回null，基本类型返回0或false）。
+ */
+public class RASPProxyClassGenerator {
+
+	/**
+	 * 代理类生成失败的标记，避免每次创建代理对象时都重新生成
+	 */
+	private static final Object GENERATE_FAILED = new Object();
+
+	/**
+	 * 引导类加载器加载的容器类使用的类加载器Key
+	 */
+	private static final Object BOOTSTRAP_LOADER_KEY = new Object();
+
+	private static final AtomicInteger CLASS_COUNTER = new AtomicInteger();
+
+	/**
+	 * 调用容器方法异常时的返回值，与反射调用的代理类保持一致，未配置的方法返回类型默认值
+	 */
+	private static final Map<String, String> DEFAULT_RETURN_VALUES = Collections.singletonMap("getStatus", "-1");
+
+	/**
+	 * 容器类加载器 -> 代理类的类加载器
+	 */
+	private static final WeakIdentityCache<Object, RASPAdapterClassLoader> LOADER_CACHE =
+			new WeakIdentityCache<Object, RASPAdapterClassLoader>();
+
+	private static final ProxyType HTTP_REQUEST = new ProxyType(
+			RASPHttpRequest.class, HttpServletRequestProxy.class, new Class<?>[]{Object.class, Object[].class},
+			"hasRequestInfo()", "getHeader", "getMethod", "getContextPath", "getRequestURI", "getServletPath",
+			"getContentType", "getRemoteAddr", "getLocalAddr", "getContentLength"
+	);
+
+	private static final ProxyType HTTP_RESPONSE = new ProxyType(
+			RASPHttpResponse.class, HttpServletResponseProxy.class, new Class<?>[]{Object.class}, null
+	);
+
+	private static final ProxyType SERVLET_INPUT_STREAM = new ProxyType(
+			RASPServletInputStream.class, ServletInputStreamProxy.class, new Class<?>[]{Object.class}, null
+	);
+
+	private static final ProxyType SERVLET_OUTPUT_STREAM = new ProxyType(
+			RASPServletOutputStream.class, ServletOutputStreamProxy.class, new Class<?>[]{Object.class}, null
+	);
+
+	private static final ProxyType HTTP_SESSION = new ProxyType(
+			RASPHttpSession.class, HttpSessionProxy.class, new Class<?>[]{Object.class}, null
+	);
+
+	private static final ProxyType COOKIE = new ProxyType(
+			RASPCookie.class, CookieProxy.class, new Class<?>[]{Object.class}, null
+	);
+
+	public static RASPHttpRequest createHttpRequest(Object request, Object[] requestInfo) {
+		RASPHttpRequest proxy = HTTP_REQUEST.newInstance(request, requestInfo);
+
+		return proxy != null ? proxy : new RASPHttpRequest(request, requestInfo);
+	}
+
+	public static RASPHttpResponse createHttpResponse(Object response) {
+		RASPHttpResponse proxy = HTTP_RESPONSE.newInstance(response);
+
+		return proxy != null ? proxy : new RASPHttpResponse(response);
+	}
+
+	public static RASPServletInputStream createServletInputStream(Object servletInputStream) {
+		RASPServletInputStream proxy = SERVLET_INPUT_STREAM.newInstance(servletInputStream);
+
+		return proxy != null ? proxy : new RASPServletInputStream(servletInputStream);
+	}
+
+	public static RASPServletOutputStream createServletOutputStream(Object servletOutputStream) {
+		RASPServletOutputStream proxy = SERVLET_OUTPUT_STREAM.newInstance(servletOutputStream);
+
+		return proxy != null ? proxy : new RASPServletOutputStream(servletOutputStream);
+	}
+
+	public static RASPHttpSession createHttpSession(Object session) {
+		RASPHttpSession proxy = HTTP_SESSION.newInstance(session);
+
+		return proxy != null ? proxy : new RASPHttpSession(session);
+	}
+
+	public static RASPCookie createCookie(Object cookie) {
+		RASPCookie proxy = COOKIE.newInstance(cookie);
+
+		return proxy != null ? proxy : new RASPCookie(cookie);
+	}
+
+	/**
+	 * 获取容器类加载器对应的代理类加载器，该类加载器同时可以访问容器类和RASP Agent的类
+	 *
+	 * @param loader 容器类加载器
+	 * @return 代理类加载器
+	 */
+	private static RASPAdapterClassLoader getProxyClassLoader(ClassLoader loader) {
+		Object                 key         = loader != null ? loader : BOOTSTRAP_LOADER_KEY;
+		RASPAdapterClassLoader proxyLoader = LOADER_CACHE.get(key);
+
+		if (proxyLoader == null) {
+			ClassLoader agentLoader = RASPProxyClassGenerator.class.getClassLoader();
+
+			proxyLoader = new RASPAdapterClassLoader(new URL[0], loader, agentLoader);
+			LOADER_CACHE.put(key, proxyLoader);
+		}
+
+		return proxyLoader;
+	}
+
+	/**
+	 * 查找可以直接调用容器方法的公开类型，优先使用接口（如javax.servlet.http.HttpServletRequest），
+	 * 其次使用容器类及其父类（如javax.servlet.ServletInputStream），该类型必须能被代理类加载器访问
+	 *
+	 * @param targetClass 容器类
+	 * @param method      RASP代理接口方法
+	 * @param loader      代理类加载器
+	 * @return 可直接调用的类型，不存在时返回null
+	 */
+	private static Class<?> findInvokeType(Class<?> targetClass, Method method, ClassLoader loader) {
+		Set<Class<?>>  visited = new HashSet<Class<?>>();
+		List<Class<?>> types   = new ArrayList<Class<?>>();
+
+		for (Class<?> clazz = targetClass; clazz != null; clazz = clazz.getSuperclass()) {
+			collectInterfaces(clazz, types, visited);
+		}
+
+		for (Class<?> clazz = targetClass; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+			types.add(clazz);
+		}
+
+		for (Class<?> type : types) {
+			if (Modifier.isPublic(type.getModifiers()) && isVisible(type, loader) &&
+					findTargetMethod(type, method) != null) {
+
+				return type;
+			}
+		}
+
+		return null;
+	}
+
+	private static void collectInterfaces(Class<?> clazz, List<Class<?>> types, Set<Class<?>> visited) {
+		for (Class<?> type : clazz.getInterfaces()) {
+			if (visited.add(type)) {
+				types.add(type);
+				collectInterfaces(type, types, visited);
+			}
+		}
+	}
+
+	private static boolean isVisible(Class<?> type, ClassLoader loader) {
+		try {
+			return Class.forName(type.getName(), false, loader) == type;
+		} catch (Throwable t) {
+			return false;
+		}
+	}
+
+	/**
+	 * 查找容器类中与RASP代理方法同名、同参数的公开方法，返回值类型不兼容时返回null
+	 */
+	private static Method findTargetMethod(Class<?> type, Method method) {
+		try {
+			Method   targetMethod = type.getMethod(method.getName(), method.getParameterTypes());
+			Class<?> returnType   = method.getReturnType();
+			Class<?> targetType   = targetMethod.getReturnType();
+
+			if (returnType == targetType || (!returnType.isPrimitive() && !targetType.isPrimitive() &&
+					returnType.isAssignableFrom(targetType))) {
+
+				return targetMethod;
+			}
+		} catch (NoSuchMethodException ignored) {
+		}
+
+		return null;
+	}
+
+	/**
+	 * 生成的代理类调用容器方法异常时调用（生成的代理类和当前类不在同一个类加载器中，必须是public方法）
+	 *
+	 * @param target 容器对象
+	 * @param name   方法名
+	 * @param t      异常信息
+	 */
+	public static void invokeFailed(Object target, String name, Throwable t) {
+		if (AGENT_LOGGER.isDebugEnabled()) {
+			AGENT_LOGGER.error(AGENT_NAME + "调用" + target.getClass().getName() + "#" + name + "异常", t);
+		}
+	}
+
+	private static String defaultValue(Method method) {
+		Class<?> type = method.getReturnType();
+
+		if (!type.isPrimitive()) {
+			return "null";
+		}
+
+		if (DEFAULT_RETURN_VALUES.containsKey(method.getName())) {
+			return DEFAULT_RETURN_VALUES.get(method.getName());
+		}
+
+		if (type == boolean.class) {
+			return "false";
+		}
+
+		return "(" + type.getName() + ") 0";
+	}
+
+	private static String typeName(Class<?> type) {
+		if (type.isArray()) {
+			return typeName(type.getComponentType()) + "[]";
+		}
+
+		return type.getName();
+	}
+
+	/**
+	 * RASP代理类及其生成的直接调用子类
+	 */
+	private static final class ProxyType {
+
+		/**
+		 * 反射调用的RASP代理类
+		 */
+		private final Class<?> proxyClass;
+
+		/**
+		 * RASP代理接口
+		 */
+		private final Class<?> proxyInterface;
+
+		/**
+		 * RASP代理类构造方法参数类型，第一个参数必须是容器对象
+		 */
+		private final Class<?>[] constructorTypes;
+
+		/**
+		 * 条件表达式，表达式成立时调用父类方法，如：RASPHttpRequest中已缓存请求信息时不调用容器方法
+		 */
+		private final String superCondition;
+
+		private final Set<String> conditionMethods;
+
+		/**
+		 * 容器类 -> 生成的代理类构造方法
+		 */
+		private final WeakIdentityCache<Class<?>, Object> constructorCache = new WeakIdentityCache<Class<?>, Object>();
+
+		ProxyType(Class<?> proxyClass, Class<?> proxyInterface, Class<?>[] constructorTypes,
+		          String superCondition, String... conditionMethods) {
+
+			this.proxyClass = proxyClass;
+			this.proxyInterface = proxyInterface;
+			this.constructorTypes = constructorTypes;
+			this.superCondition = superCondition;
+			this.conditionMethods = new HashSet<String>(Arrays.asList(conditionMethods));
+		}
+
+		/**
+		 * 创建直接调用容器方法的代理对象，代理类生成失败时返回null
+		 *
+		 * @param args 构造方法参数，第一个参数是容器对象
+		 * @return 代理对象
+		 */
+		@SuppressWarnings("unchecked")
+		<T> T newInstance(Object... args) {
+			Object constructor = getConstructor(args[0].getClass());
+
+			if (constructor != GENERATE_FAILED) {
+				try {
+					return (T) ((Constructor<?>) constructor).newInstance(args);
+				} catch (Exception e) {
+					AGENT_LOGGER.error(AGENT_NAME + "创建" + proxyClass.getName() + "代理对象异常：" + e, e);
+				}
+			}
+
+			return null;
+		}
+
+		private Object getConstructor(Class<?> targetClass) {
+			Object constructor = constructorCache.get(targetClass);
+
+			if (constructor == null) {
+				synchronized (this) {
+					constructor = constructorCache.get(targetClass);
+
+					if (constructor == null) {
+						try {
+							constructor = generate(targetClass).getConstructor(constructorTypes);
+						} catch (Throwable t) {
+							constructor = GENERATE_FAILED;
+
+							AGENT_LOGGER.warn(
+									"{}生成{}代理类失败，使用反射调用：{}", AGENT_NAME, targetClass.getName(), t.toString()
+							);
+						}
+
+						constructorCache.put(targetClass, constructor);
+					}
+				}
+			}
+
+			return constructor;
+		}
+
+		/**
+		 * 生成继承RASP代理类的子类，重写所有容器中存在的方法为直接调用
+		 *
+		 * @param targetClass 容器类
+		 * @return 生成的代理类
+		 * @throws Exception 生成异常
+		 */
+		private Class<?> generate(Class<?> targetClass) throws Exception {
+			ClassLoader            targetLoader = targetClass.getClassLoader();
+			ClassLoader            agentLoader  = proxyClass.getClassLoader();
+			RASPAdapterClassLoader proxyLoader  = getProxyClassLoader(targetLoader);
+			ClassPool              pool         = new ClassPool(true);
+
+			if (targetLoader != null) {
+				pool.insertClassPath(new LoaderClassPath(targetLoader));
+			}
+
+			if (agentLoader != null) {
+				pool.insertClassPath(new LoaderClassPath(agentLoader));
+			}
+
+			String  className = proxyClass.getName() + "$$Direct" + CLASS_COUNTER.incrementAndGet();
+			CtClass ctClass   = pool.makeClass(className, pool.get(proxyClass.getName()));
+
+			ctClass.addField(CtField.make("private final Object target;", ctClass));
+			ctClass.addConstructor(CtNewConstructor.make(buildConstructor(className), ctClass));
+
+			Set<String> signatures = new HashSet<String>();
+
+			for (Method method : proxyInterface.getMethods()) {
+				String name = method.getName();
+
+				if (name.startsWith("__") || !signatures.add(name + Arrays.toString(method.getParameterTypes()))) {
+					continue;
+				}
+
+				Class<?> invokeType = findInvokeType(targetClass, method, proxyLoader);
+
+				if (invokeType != null) {
+					ctClass.addMethod(CtNewMethod.make(buildMethod(method, invokeType), ctClass));
+				}
+			}
+
+			byte[] bytes = ctClass.toBytecode();
+			ctClass.detach();
+
+			return proxyLoader.defineClass(className, bytes);
+		}
+
+		private String buildConstructor(String className) {
+			String        name      = className.substring(className.lastIndexOf('.') + 1);
+			StringBuilder sb        = new StringBuilder("public ").append(name);
+			StringBuilder superArgs = new StringBuilder();
+
+			sb.append('(');
+
+			for (int i = 0; i < constructorTypes.length; i++) {
+				if (i > 0) {
+					sb.append(", ");
+					superArgs.append(", ");
+				}
+
+				sb.append(typeName(constructorTypes[i])).append(" a").append(i);
+				superArgs.append('a').append(i);
+			}
+
+			return sb.append(") { super(").append(superArgs).append("); this.target = a0; }").toString();
+		}
+
+		/**
+		 * 生成直接调用容器方法的代码，如：
+		 * public String getParameter(String a0) {
+		 * try { return ((javax.servlet.ServletRequest) target).getParameter(a0); }
+		 * catch (Throwable t) { RASPProxyClassGenerator.invokeFailed(target, "getParameter", t); return null; }
+		 * }
+		 */
+		private String buildMethod(Method method, Class<?> invokeType) {
+			Class<?>[]    types  = method.getParameterTypes();
+			StringBuilder args   = new StringBuilder();
+			StringBuilder sb     = new StringBuilder("public ");
+			boolean       isVoid = method.getReturnType() == void.class;
+
+			sb.append(typeName(method.getReturnType())).append(' ').append(method.getName()).append('(');
+
+			for (int i = 0; i < types.length; i++) {
+				if (i > 0) {
+					sb.append(", ");
+					args.append(", ");
+				}
+
+				sb.append(typeName(types[i])).append(" a").append(i);
+				args.append('a').append(i);
+			}
+
+			sb.append(") {");
+
+			if (superCondition != null && conditionMethods.contains(method.getName())) {
+				String superCall = "super." + method.getName() + "(" + args + ")";
+
+				sb.append(" if (").append(superCondition).append(") { ");
+				sb.append(isVoid ? superCall + "; return;" : "return " + superCall + ";").append(" }");
+			}
+
+			sb.append(isVoid ? " try { " : " try { return ");
+			sb.append("((").append(typeName(invokeType)).append(") target).");
+			sb.append(method.getName()).append('(').append(args).append("); }");
+			sb.append(" catch (Throwable t) { ").append(RASPProxyClassGenerator.class.getName());
+			sb.append(".invokeFailed(target, \"").append(method.getName()).append("\", t);");
+			sb.append(isVoid ? " }" : " return " + defaultValue(method) + "; }").append(" }");
+
+			return sb.toString();
+		}
+
+	}
+
+}
@@ -0,0 +1,273 @@
+package org.javaweb.rasp.commons.sync;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.javaweb.rasp.commons.sync.RASPOverflowPolicy.DROP_NEWEST;
+
+/**
+ * 有界无锁环形队列，多个请求线程写入，日志同步线程批量读取；队列写满后按照溢出策略处理，请求线程不会写磁盘。
+ * 每个槽位都有一个序号，写入线程通过CAS抢占写入位置，读取线程通过序号判断槽位是否已写入完成。
+ *
+ * @param <E> 队列元素类型
+ */
+public class RASPLogRingBuffer<E> {
+
+	/**
+	 * 阻塞策略下每次等待的纳秒数
+	 */
+	private static final long PARK_NANOS = 50000;
+
+	private final int mask;
+
+	private final AtomicLongArray sequences;
+
+	private final AtomicReferenceArray<E> buffer;
+
+	/**
+	 * 下一个写入位置
+	 */
+	private final AtomicLong tail = new AtomicLong();
+
+	/**
+	 * 下一个读取位置
+	 */
+	private final AtomicLong head = new AtomicLong();
+
+	/**
+	 * 成功写入队列的日志数
+	 */
+	private final AtomicLong enqueuedCount = new AtomicLong();
+
+	/**
+	 * 因队列已满被丢弃的日志数
+	 */
+	private final AtomicLong droppedCount = new AtomicLong();
+
+	/**
+	 * 已从队列中读取并写出的日志数
+	 */
+	private final AtomicLong flushedCount = new AtomicLong();
+
+	/**
+	 * 溢出计数，用于采样
+	 */
+	private final AtomicLong overflowCount = new AtomicLong();
+
+	private volatile RASPOverflowPolicy overflowPolicy = DROP_NEWEST;
+
+	private volatile long blockTimeout;
+
+	private volatile int sampleRate = 1;
+
+	/**
+	 * 创建环形队列，容量会向上取整为2的幂
+	 *
+	 * @param capacity 队列容量
+	 */
+	public RASPLogRingBuffer(int capacity) {
+		if (capacity < 2) {
+			capacity = 2;
+		}
+
+		int size = Integer.highestOneBit(capacity - 1) << 1;
+
+		this.mask = size - 1;
+		this.sequences = new AtomicLongArray(size);
+		this.buffer = new AtomicReferenceArray<E>(size);
+
+		for (int i = 0; i < size; i++) {
+			sequences.set(i, i);
+		}
+	}
+
+	/**
+	 * 设置溢出策略
+	 *
+	 * @param policy       溢出策略
+	 * @param blockTimeout BLOCK策略的最大等待时间（毫秒）
+	 * @param sampleRate   SAMPLE策略的采样率，每sampleRate条溢出日志保留1条
+	 */
+	public void setOverflowPolicy(RASPOverflowPolicy policy, long blockTimeout, int sampleRate) {
+		this.overflowPolicy = policy != null ? policy : DROP_NEWEST;
+		this.blockTimeout = blockTimeout > 0 ? blockTimeout : 0;
+		this.sampleRate = sampleRate > 0 ? sampleRate : 1;
+	}
+
+	public RASPOverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	/**
+	 * 写入队列，队列已满时按溢出策略处理
+	 *
+	 * @param e 队列元素
+	 * @return 是否写入成功
+	 */
+	public boolean put(E e) {
+		if (offer(e)) {
+			return true;
+		}
+
+		RASPOverflowPolicy policy = overflowPolicy;
+
+		if (policy == RASPOverflowPolicy.DROP_OLDEST) {
+			return replaceOldest(e);
+		} else if (policy == RASPOverflowPolicy.SAMPLE) {
+			if (overflowCount.incrementAndGet() % sampleRate == 0) {
+				return replaceOldest(e);
+			}
+		} else if (policy == RASPOverflowPolicy.BLOCK) {
+			long deadline = System.nanoTime() + MILLISECONDS.toNanos(blockTimeout);
+
+			while (System.nanoTime() - deadline < 0) {
+				LockSupport.parkNanos(PARK_NANOS);
+
+				if (offer(e)) {
+					return true;
+				}
+			}
+		}
+
+		droppedCount.incrementAndGet();
+
+		return false;
+	}
+
+	/**
+	 * 挤出队列中最旧的元素后写入新元素
+	 */
+	private boolean replaceOldest(E e) {
+		do {
+			if (poll() != null) {
+				droppedCount.incrementAndGet();
+			}
+		} while (!offer(e));
+
+		return true;
+	}
+
+	/**
+	 * 尝试写入队列，队列已满时直接返回false
+	 *
+	 * @param e 队列元素
+	 * @return 是否写入成功
+	 */
+	public boolean offer(E e) {
+		if (e == null) {
+			throw new NullPointerException();
+		}
+
+		long pos = tail.get();
+
+		for (; ; ) {
+			int  index = (int) (pos & mask);
+			long diff  = sequences.get(index) - pos;
+
+			if (diff == 0) {
+				if (tail.compareAndSet(pos, pos + 1)) {
+					buffer.lazySet(index, e);
+
+					// 更新槽位序号，通知读取线程该槽位已可读
+					sequences.lazySet(index, pos + 1);
+					enqueuedCount.incrementAndGet();
+
+					return true;
+				}
+			} else if (diff < 0) {
+				// 队列已满
+				return false;
+			}
+
+			pos = tail.get();
+		}
+	}
+
+	/**
+	 * 读取队列头部元素，队列为空时返回null
+	 *
+	 * @return 队列元素
+	 */
+	public E poll() {
+		long pos = head.get();
+
+		for (; ; ) {
+			int  index = (int) (pos & mask);
+			long diff  = sequences.get(index) - (pos + 1);
+
+			if (diff == 0) {
+				if (head.compareAndSet(pos, pos + 1)) {
+					E e = buffer.get(index);
+					buffer.lazySet(index, null);
+
+					// 释放槽位，供下一轮写入
+					sequences.lazySet(index, pos + mask + 1);
+
+					return e;
+				}
+			} else if (diff < 0) {
+				// 队列为空
+				return null;
+			}
+
+			pos = head.get();
+		}
+	}
+
+	/**
+	 * 批量读取队列元素
+	 *
+	 * @param batch 存放读取结果的数组
+	 * @return 读取的元素个数
+	 */
+	public int drain(E[] batch) {
+		int count = 0;
+
+		while (count < batch.length) {
+			E e = poll();
+
+			if (e == null) {
+				break;
+			}
+
+			batch[count++] = e;
+		}
+
+		return count;
+	}
+
+	/**
+	 * 记录已写出的元素个数
+	 *
+	 * @param count 写出个数
+	 */
+	public void flushed(int count) {
+		flushedCount.addAndGet(count);
+	}
+
+	public int capacity() {
+		return mask + 1;
+	}
+
+	public int size() {
+		long size = tail.get() - head.get();
+
+		return (int) Math.max(0, Math.min(size, capacity()));
+	}
+
+	public long getEnqueuedCount() {
+		return enqueuedCount.get();
+	}
+
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	public long getFlushedCount() {
+		return flushedCount.get();
+	}
+
+}
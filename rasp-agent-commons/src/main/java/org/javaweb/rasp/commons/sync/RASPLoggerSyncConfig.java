@@ -1,13 +1,29 @@
 package org.javaweb.rasp.commons.sync;
 
 import org.javaweb.rasp.commons.RASPAgentEnv;
+import org.javaweb.rasp.commons.attack.RASPAttackInfo;
+import org.javaweb.rasp.commons.config.RASPAppRuntime;
+import org.javaweb.rasp.commons.context.RASPContext;
+import org.javaweb.rasp.commons.log.RASPAccessSummaryLog;
+import org.javaweb.rasp.commons.log.RASPAttackLog;
+import org.javaweb.rasp.commons.log.RASPAttackLogCoalescer;
 import org.javaweb.rasp.commons.log.RASPLogData;
+import org.javaweb.rasp.commons.log.RASPLogFrame;
+import org.javaweb.rasp.commons.log.RASPLogger;
 import org.javaweb.rasp.commons.logback.classic.Logger;
 
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
-import static org.javaweb.rasp.commons.config.RASPConfiguration.AGENT_PROPERTIES;
+import static java.lang.System.currentTimeMillis;
+import static org.javaweb.rasp.commons.config.RASPConfiguration.*;
+import static org.javaweb.rasp.commons.log.RASPLogEncryptMode.AES_GCM;
+import static org.javaweb.rasp.commons.log.RASPLogFrame.MAX_FRAME_SIZE;
 import static org.javaweb.rasp.commons.utils.EncryptUtils.enContent;
+import static org.javaweb.rasp.commons.utils.JsonUtils.toJson;
+import static org.javaweb.rasp.loader.AgentConstants.AGENT_NAME;
 
 public class RASPLoggerSyncConfig extends RASPThreadSyncConfig {
 
@@ -16,40 +32,269 @@ public class RASPLoggerSyncConfig extends RASPThreadSyncConfig {
 	}
 
 	/**
-	 * 设置内存中最大放置的RASP日志数
+	 * 每次批量写出的最大日志数
 	 */
-	private static final int MAX_LOG_COUNT = 1000;
+	private static final int BATCH_SIZE = 256;
 
 	/**
-	 * RASP日志队列
+	 * RASP日志队列，请求线程只负责写入队列，日志加密和写文件都在同步线程中完成
 	 */
-	protected static ArrayBlockingQueue<RASPLogData> raspLogQueue = new ArrayBlockingQueue<RASPLogData>(MAX_LOG_COUNT);
+	protected static final RASPLogRingBuffer<RASPLogData> raspLogQueue =
+			new RASPLogRingBuffer<RASPLogData>(AGENT_PROPERTIES.getLogQueueSize());
+
+	/**
+	 * 攻击日志合并
+	 */
+	protected static final RASPAttackLogCoalescer attackLogCoalescer = new RASPAttackLogCoalescer();
+
+	/**
+	 * 批量读取日志的缓存数组，只在同步线程中使用
+	 */
+	private final RASPLogData[] batch = new RASPLogData[BATCH_SIZE];
+
+	/**
+	 * AES-GCM加密模式下，当前批次中每个Logger待加密的日志，只在同步线程中使用
+	 */
+	private final Map<Logger, List<byte[]>> frames = new IdentityHashMap<Logger, List<byte[]>>();
+
+	/**
+	 * 上一次输出日志时的丢弃数
+	 */
+	private long lastDroppedCount;
+
+	/**
+	 * 上一次输出聚合访问日志的时间
+	 */
+	private long lastAggregateTime = currentTimeMillis();
+
+	static {
+		updateOverflowPolicy();
+	}
 
 	public static void addRASPLogData(RASPLogData log) {
-		if (raspLogQueue.size() < MAX_LOG_COUNT) {
-			raspLogQueue.offer(log);
-		} else {
-			writeLog(log);
+		raspLogQueue.put(log);
+	}
+
+	/**
+	 * 创建攻击日志，开启攻击日志合并（attack_log.coalesce_window > 0）时，
+	 * 合并窗口内重复发生的攻击只计数，不创建攻击日志
+	 *
+	 * @param context RASP上下文
+	 * @param attack  攻击信息
+	 * @param logger  攻击日志Logger
+	 * @return 攻击日志，攻击已被合并时返回null
+	 */
+	public static RASPAttackLog coalesceAttackLog(RASPContext context, RASPAttackInfo attack, Logger logger) {
+		if (AGENT_PROPERTIES.getAttackLogCoalesceWindow() <= 0) {
+			return context.createAttackLog(attack);
 		}
+
+		return attackLogCoalescer.offer(
+				context, attack, logger,
+				AGENT_PROPERTIES.getAttackLogCoalesceMaxKeys(), AGENT_PROPERTIES.getAttackLogCoalesceSamples()
+		);
+	}
+
+	/**
+	 * 根据rasp.properties配置更新日志队列的溢出策略
+	 */
+	private static void updateOverflowPolicy() {
+		raspLogQueue.setOverflowPolicy(
+				AGENT_PROPERTIES.getLogQueueOverflowPolicy(),
+				AGENT_PROPERTIES.getLogQueueBlockTimeout(),
+				AGENT_PROPERTIES.getLogQueueSampleRate()
+		);
 	}
 
 	private static void writeLog(RASPLogData logData) {
 		Logger logger = logData.getLogger();
-		String log    = logData.getRaspLog();
 
-		if (logger != null && log != null) {
+		if (logger != null) {
 			if (logData.isEncrypt()) {
-				log = enContent(log, AGENT_PROPERTIES.getRc4Key());
+				byte[] log = logData.getRaspLogBytes();
+
+				if (log != null) {
+					logger.info(enContent(log, AGENT_PROPERTIES.getRc4Key()));
+				}
+			} else {
+				String log = logData.getRaspLog();
+
+				if (log != null) {
+					logger.info(log);
+				}
 			}
+		}
+	}
+
+	/**
+	 * 缓存需要按批加密的日志
+	 */
+	private void addFrameRecord(RASPLogData logData) {
+		Logger logger = logData.getLogger();
+		byte[] log    = logData.getRaspLogBytes();
 
-			logger.info(log);
+		if (logger != null && log != null) {
+			List<byte[]> records = frames.get(logger);
+
+			if (records == null) {
+				frames.put(logger, records = new ArrayList<byte[]>());
+			}
+
+			records.add(log);
 		}
 	}
 
+	/**
+	 * 将当前批次缓存的日志加密成日志帧写出，每个Logger写出一个或多个日志帧
+	 */
+	private void writeFrames() {
+		String key = AGENT_PROPERTIES.getRc4Key();
+
+		for (Map.Entry<Logger, List<byte[]>> entry : frames.entrySet()) {
+			Logger       logger  = entry.getKey();
+			List<byte[]> records = entry.getValue();
+			int          from    = 0;
+			long         size    = 0;
+
+			for (int i = 0; i < records.size(); i++) {
+				long recordSize = 4 + records.get(i).length;
+
+				if (i > from && size + recordSize > MAX_FRAME_SIZE) {
+					writeFrame(logger, records.subList(from, i), key);
+					from = i;
+					size = 0;
+				}
+
+				size += recordSize;
+			}
+
+			writeFrame(logger, records.subList(from, records.size()), key);
+		}
+
+		frames.clear();
+	}
+
+	private static void writeFrame(Logger logger, List<byte[]> records, String key) {
+		try {
+			logger.info(RASPLogFrame.encodeBytes(records, key));
+			return;
+		} catch (IllegalArgumentException e) {
+			// 单条日志超过日志帧最大长度
+		} catch (Exception e) {
+			AGENT_LOGGER.error(AGENT_NAME + "加密日志帧异常：" + e, e);
+		}
+
+		// 无法写成日志帧时使用RC4逐行加密，避免丢失日志
+		for (byte[] record : records) {
+			try {
+				logger.info(enContent(record, key));
+			} catch (Exception e) {
+				AGENT_LOGGER.error(AGENT_NAME + "写入日志异常：" + e, e);
+			}
+		}
+	}
+
+	/**
+	 * 输出所有Web应用的聚合访问日志，切换回detail模式后也会输出剩余的统计数据
+	 */
+	private static void flushAccessLogAggregators() {
+		for (RASPAppRuntime runtime : getAppRuntimes()) {
+			try {
+				for (RASPAccessSummaryLog log : runtime.getAccessLogAggregator().flush()) {
+					writeLog(new RASPLogData(toJson(log), runtime.getAccessLogger(), false));
+				}
+			} catch (Exception e) {
+				AGENT_LOGGER.error(AGENT_NAME + "写入聚合访问日志异常：" + e, e);
+			}
+		}
+	}
+
+	public static long getEnqueuedCount() {
+		return raspLogQueue.getEnqueuedCount();
+	}
+
+	public static long getDroppedCount() {
+		return raspLogQueue.getDroppedCount();
+	}
+
+	public static long getFlushedCount() {
+		return raspLogQueue.getFlushedCount();
+	}
+
 	@Override
 	public void dataSynchronization(RASPAgentEnv agentEnv) {
-		for (RASPLogData log; (log = raspLogQueue.poll()) != null; ) {
-			writeLog(log);
+		// 配置文件可能已被修改，重新读取溢出策略
+		updateOverflowPolicy();
+
+		// 当前JDK不支持AES-GCM时继续使用RC4加密
+		boolean frameMode = AGENT_PROPERTIES.getLogEncryptMode() == AES_GCM && RASPLogFrame.isSupported();
+
+		// 输出攻击合并日志，关闭攻击日志合并后也会输出剩余的合并日志。
+		// 直接写出，不放入日志队列：日志队列只有当前线程消费，队列已满时会阻塞自己或丢弃合并日志
+		try {
+			long window = Math.max(AGENT_PROPERTIES.getAttackLogCoalesceWindow(), 0) * 1000L;
+
+			for (RASPLogData log : attackLogCoalescer.flush(window)) {
+				if (frameMode && log.isEncrypt()) {
+					addFrameRecord(log);
+				} else {
+					writeLog(log);
+				}
+			}
+
+			if (frameMode) {
+				writeFrames();
+			}
+		} catch (Exception e) {
+			AGENT_LOGGER.error(AGENT_NAME + "写入攻击合并日志异常：" + e, e);
+		}
+
+		for (int count; (count = raspLogQueue.drain(batch)) > 0; ) {
+			for (int i = 0; i < count; i++) {
+				try {
+					if (frameMode && batch[i].isEncrypt()) {
+						addFrameRecord(batch[i]);
+					} else {
+						writeLog(batch[i]);
+					}
+				} catch (Exception e) {
+					AGENT_LOGGER.error(AGENT_NAME + "写入日志异常：" + e, e);
+				} finally {
+					batch[i] = null;
+				}
+			}
+
+			if (frameMode) {
+				writeFrames();
+			}
+
+			raspLogQueue.flushed(count);
+		}
+
+		// 没有新日志时输出二进制日志中缓存超时的日志块
+		try {
+			RASPLogger.flushBinaryLogs(false);
+		} catch (Exception e) {
+			AGENT_LOGGER.error(AGENT_NAME + "输出二进制日志块异常：" + e, e);
+		}
+
+		long now = currentTimeMillis();
+
+		if (now - lastAggregateTime >= AGENT_PROPERTIES.getAccessLogAggregateInterval() * 1000L) {
+			this.lastAggregateTime = now;
+
+			flushAccessLogAggregators();
+		}
+
+		long droppedCount = raspLogQueue.getDroppedCount();
+
+		if (droppedCount > lastDroppedCount) {
+			AGENT_LOGGER.warn(
+					"{}日志队列已满，丢弃日志：{}条，累计写入：{}条，累计输出：{}条，累计丢弃：{}条", AGENT_NAME,
+					droppedCount - lastDroppedCount, getEnqueuedCount(), getFlushedCount(), droppedCount
+			);
+
+			this.lastDroppedCount = droppedCount;
 		}
 	}
 
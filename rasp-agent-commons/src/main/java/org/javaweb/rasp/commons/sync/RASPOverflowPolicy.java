@@ -0,0 +1,47 @@
+package org.javaweb.rasp.commons.sync;
+
+/**
+ * RASP日志队列已满时的处理策略
+ */
+public enum RASPOverflowPolicy {
+
+	/**
+	 * 丢弃最新写入的日志
+	 */
+	DROP_NEWEST,
+
+	/**
+	 * 丢弃队列中最旧的日志，写入最新的日志
+	 */
+	DROP_OLDEST,
+
+	/**
+	 * 采样：每N条溢出的日志保留1条（挤出最旧的日志），其余丢弃
+	 */
+	SAMPLE,
+
+	/**
+	 * 阻塞等待队列空闲，超时后丢弃最新写入的日志
+	 */
+	BLOCK;
+
+	/**
+	 * 解析配置文件中的溢出策略，如：drop_newest、drop_oldest、sample、block，无法识别时返回默认值
+	 *
+	 * @param name         策略名称
+	 * @param defaultValue 默认策略
+	 * @return 溢出策略
+	 */
+	public static RASPOverflowPolicy parse(String name, RASPOverflowPolicy defaultValue) {
+		if (name != null) {
+			for (RASPOverflowPolicy policy : values()) {
+				if (policy.name().equalsIgnoreCase(name.trim())) {
+					return policy;
+				}
+			}
+		}
+
+		return defaultValue;
+	}
+
+}
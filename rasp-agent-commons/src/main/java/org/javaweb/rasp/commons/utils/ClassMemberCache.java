@@ -0,0 +1,152 @@
+package org.javaweb.rasp.commons.utils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按Class缓存反射获取的类成员（方法、成员变量），使用{@link WeakIdentityCache}缓存，Web应用重新部署后类可以被正常卸载。
+ * 未找到的成员同样会被缓存，避免每次调用都遍历父类查找。
+ */
+final class ClassMemberCache {
+
+	/**
+	 * 缓存中表示成员不存在的标记
+	 */
+	private static final Object NOT_FOUND = new Object();
+
+	private final WeakIdentityCache<Class<?>, ClassMembers> classMembersCache =
+			new WeakIdentityCache<Class<?>, ClassMembers>();
+
+	/**
+	 * 查找类方法，如果当前类中不存在会向上查找父类，不存在时返回null
+	 *
+	 * @param clazz    类对象
+	 * @param name     方法名
+	 * @param argTypes 参数类型
+	 * @return 类方法
+	 */
+	Method getMethod(Class<?> clazz, String name, Class<?>[] argTypes) {
+		ClassMembers members = getClassMembers(clazz);
+		MemberKey    key     = new MemberKey(name, argTypes);
+		Object       method  = members.methods.get(key);
+
+		if (method != null) {
+			return method != NOT_FOUND ? (Method) method : null;
+		}
+
+		method = findMethod(clazz, name, argTypes);
+
+		// 复制参数类型数组，防止调用方修改数组内容导致缓存Key错误
+		members.methods.put(new MemberKey(name, argTypes.clone()), method != null ? method : NOT_FOUND);
+
+		return (Method) method;
+	}
+
+	/**
+	 * 查找类成员变量，如果当前类中不存在会向上查找父类，不存在时返回null
+	 *
+	 * @param clazz 类对象
+	 * @param name  成员变量名
+	 * @return 类成员变量
+	 */
+	Field getField(Class<?> clazz, String name) {
+		ClassMembers members = getClassMembers(clazz);
+		Object       field   = members.fields.get(name);
+
+		if (field != null) {
+			return field != NOT_FOUND ? (Field) field : null;
+		}
+
+		field = findField(clazz, name);
+		members.fields.put(name, field != null ? field : NOT_FOUND);
+
+		return (Field) field;
+	}
+
+	private ClassMembers getClassMembers(Class<?> clazz) {
+		ClassMembers members = classMembersCache.get(clazz);
+
+		if (members == null) {
+			members = new ClassMembers();
+			classMembersCache.put(clazz, members);
+		}
+
+		return members;
+	}
+
+	private static Method findMethod(Class<?> clazz, String name, Class<?>[] argTypes) {
+		while (clazz != null && clazz != Object.class) {
+			try {
+				Method method = clazz.getDeclaredMethod(name, argTypes);
+				method.setAccessible(true);
+
+				return method;
+			} catch (NoSuchMethodException e) {
+				clazz = clazz.getSuperclass();
+			}
+		}
+
+		return null;
+	}
+
+	private static Field findField(Class<?> clazz, String name) {
+		while (clazz != null && clazz != Object.class) {
+			try {
+				Field field = clazz.getDeclaredField(name);
+				field.setAccessible(true);
+
+				return field;
+			} catch (NoSuchFieldException e) {
+				clazz = clazz.getSuperclass();
+			}
+		}
+
+		return null;
+	}
+
+	private static final class ClassMembers {
+
+		private final Map<MemberKey, Object> methods = new ConcurrentHashMap<MemberKey, Object>();
+
+		private final Map<String, Object> fields = new ConcurrentHashMap<String, Object>();
+
+	}
+
+	/**
+	 * 方法缓存Key：方法名 + 参数类型（按Class对象比较，不同类加载器加载的同名类不会冲突）
+	 */
+	private static final class MemberKey {
+
+		private final String name;
+
+		private final Class<?>[] argTypes;
+
+		private final int hash;
+
+		MemberKey(String name, Class<?>[] argTypes) {
+			this.name = name;
+			this.argTypes = argTypes;
+			this.hash = 31 * name.hashCode() + Arrays.hashCode(argTypes);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof MemberKey)) return false;
+
+			MemberKey that = (MemberKey) o;
+
+			return hash == that.hash && name.equals(that.name) && Arrays.equals(argTypes, that.argTypes);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+	}
+
+}
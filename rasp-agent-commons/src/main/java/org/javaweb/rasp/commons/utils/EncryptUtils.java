@@ -113,20 +113,34 @@ public class EncryptUtils {
 	 * @return 加密后的字符串
 	 */
 	public static String enContent(String data, String rc4Key) {
-		try {
-			return new String(getEncoder().encode(RC4Utils.encryptionRC4Byte(data, rc4Key)), DEFAULT_ENCODING);
-		} catch (UnsupportedEncodingException e) {
-			return null;
-		}
+		return RC4Base64Encoder.encode(data, rc4Key);
+	}
+
+	/**
+	 * 加密
+	 *
+	 * @param data   UTF-8编码的待加密内容
+	 * @param rc4Key 加密key
+	 * @return 加密后的字符串
+	 */
+	public static String enContent(byte[] data, String rc4Key) {
+		return RC4Base64Encoder.encode(data, rc4Key);
 	}
 
 	public static String enContent(Object obj, String rc4Key) {
-		try {
-			String json = JsonUtils.toJson(obj);
-			return new String(getEncoder().encode(RC4Utils.encryptionRC4Byte(json, rc4Key)), DEFAULT_ENCODING);
-		} catch (UnsupportedEncodingException e) {
-			return null;
-		}
+		return RC4Base64Encoder.encode(JsonUtils.toJson(obj), rc4Key);
+	}
+
+	/**
+	 * 加密，加密结果直接写入out，不创建中间字符串和字节数组
+	 *
+	 * @param data   待加密的字符串
+	 * @param rc4Key 加密key
+	 * @param out    输出对象，如：StringBuilder、Writer
+	 * @throws IOException 写入输出对象异常
+	 */
+	public static void enContent(CharSequence data, String rc4Key, Appendable out) throws IOException {
+		RC4Base64Encoder.encode(data, rc4Key, out);
 	}
 
 	/**
@@ -1,6 +1,8 @@
 package org.javaweb.rasp.commons.utils;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -249,58 +251,41 @@ public class FileUtils {
 		return ((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z'));
 	}
 
+	/**
+	 * 按行切割文件，每个文件在超过fileSize后的第一个换行符处结束，文件内容按字节原样复制（FileChannel.transferTo），
+	 * 不解码也不修改换行符
+	 *
+	 * @param targetFile 待切割的文件
+	 * @param fileSize   切割后的文件大小
+	 * @return 切割后的文件，文件未超过fileSize时返回原文件
+	 * @throws IOException 读写文件异常
+	 */
 	public static List<File> split(File targetFile, long fileSize) throws IOException {
 		List<File> fileList = new ArrayList<File>();
 
 		if (targetFile.length() > fileSize) {
-			String           str;
-			int              index  = 0;
-			int              len    = 0;
-			BufferedReader   br     = null;
-			FileOutputStream fos    = null;
-			File             parent = targetFile.getParentFile();
+			int             index = 0;
+			FileInputStream fis   = null;
 
 			try {
-				br = new BufferedReader(new InputStreamReader(new FileInputStream(targetFile)), 8192);
-
-				while ((str = br.readLine()) != null) {
-					// 切换新的临时文件
-					if (fos != null && len > fileSize) {
-						fos.flush();
-						fos.close();
-
-						len = 0;
-						fos = null;
-					}
+				fis = new FileInputStream(targetFile);
 
-					if (fos == null) {
-						File   tmpFile;
-						String fileName = targetFile.getName();
-						int    lastDot  = fileName.lastIndexOf(".");
+				FileChannel channel  = fis.getChannel();
+				ByteBuffer  buffer   = ByteBuffer.allocate(8192);
+				long        size     = channel.size();
+				long        position = 0;
 
-						if (lastDot > 0) {
-							String name   = fileName.substring(0, lastDot);
-							String suffix = fileName.substring(lastDot);
-							tmpFile = new File(parent, name + "." + (++index) + suffix);
-						} else {
-							tmpFile = new File(parent, fileName + "." + (++index));
-						}
+				while (position < size) {
+					long end     = lineEnd(channel, position + fileSize, size, buffer);
+					File tmpFile = getSplitFile(targetFile, ++index);
 
-						fos = new FileOutputStream(tmpFile);
+					transferTo(channel, position, end - position, tmpFile);
+					fileList.add(tmpFile);
 
-						fileList.add(tmpFile);
-					}
-
-					len += str.length();
-					fos.write((str + "\r\n").getBytes());
-				}
-
-				if (fos != null) {
-					fos.flush();
-					fos.close();
+					position = end;
 				}
 			} finally {
-				if (br != null) closeQuietly(br);
+				closeQuietly(fis);
 			}
 		} else {
 			fileList.add(targetFile);
@@ -309,6 +294,74 @@ public class FileUtils {
 		return fileList;
 	}
 
+	/**
+	 * 查找from之后（包括from - 1）第一个换行符的下一个位置，没有换行符时返回文件大小
+	 */
+	private static long lineEnd(FileChannel channel, long from, long size, ByteBuffer buffer) throws IOException {
+		long position = from - 1;
+
+		while (position < size) {
+			buffer.clear();
+
+			int len = channel.read(buffer, position);
+
+			if (len <= 0) {
+				break;
+			}
+
+			for (int i = 0; i < len; i++) {
+				if (buffer.get(i) == '\n') {
+					return position + i + 1;
+				}
+			}
+
+			position += len;
+		}
+
+		return size;
+	}
+
+	private static File getSplitFile(File targetFile, int index) {
+		File   parent   = targetFile.getParentFile();
+		String fileName = targetFile.getName();
+		int    lastDot  = fileName.lastIndexOf(".");
+
+		if (lastDot > 0) {
+			String name   = fileName.substring(0, lastDot);
+			String suffix = fileName.substring(lastDot);
+
+			return new File(parent, name + "." + index + suffix);
+		}
+
+		return new File(parent, fileName + "." + index);
+	}
+
+	private static void transferTo(FileChannel channel, long position, long count, File file) throws IOException {
+		FileOutputStream fos = null;
+
+		try {
+			fos = new FileOutputStream(file);
+
+			FileChannel out = fos.getChannel();
+
+			// transferTo每次可能只复制部分数据
+			while (count > 0) {
+				long len = channel.transferTo(position, count, out);
+
+				if (len <= 0) {
+					throw new IOException(AGENT_NAME + "复制文件：" + file + "失败!");
+				}
+
+				position += len;
+				count -= len;
+			}
+		} finally {
+			if (fos != null) {
+				fos.close();
+			}
+		}
+	}
+
 	public static List<File> listFiles(File directory, String[] extensions, boolean recursive) {
 		List<File> fileList = new ArrayList<File>();
 
@@ -0,0 +1,244 @@
+package org.javaweb.rasp.commons.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * GZIP压缩并Base64编码，读取输入流时同步压缩和编码，直接输出到StringBuilder/Writer，
+ * 不需要先缓存完整的GZIP数据再编码。输出结果和GZIPOutputStream压缩后再Base64编码一致。
+ * <p>
+ * 每个线程复用一个Deflater和读写缓冲区，避免每次压缩都创建Deflater（每个Deflater需要分配几百KB的本地内存）。
+ */
+public class GZipBase64Encoder {
+
+	private static final char[] BASE64 = {
+			'A', 'B', 'C', 'D', 'E', 'F', 'G', 'H', 'I', 'J', 'K', 'L', 'M',
+			'N', 'O', 'P', 'Q', 'R', 'S', 'T', 'U', 'V', 'W', 'X', 'Y', 'Z',
+			'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 'i', 'j', 'k', 'l', 'm',
+			'n', 'o', 'p', 'q', 'r', 's', 't', 'u', 'v', 'w', 'x', 'y', 'z',
+			'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', '+', '/'
+	};
+
+	/**
+	 * GZIP文件头，和GZIPOutputStream写入的文件头一致
+	 */
+	private static final byte[] GZIP_HEADER = {
+			(byte) 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0
+	};
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private static final ThreadLocal<GZipBase64Encoder> ENCODERS = new ThreadLocal<GZipBase64Encoder>() {
+		@Override
+		protected GZipBase64Encoder initialValue() {
+			return new GZipBase64Encoder();
+		}
+	};
+
+	private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+
+	private final CRC32 crc = new CRC32();
+
+	private final byte[] input = new byte[BUFFER_SIZE];
+
+	private final byte[] output = new byte[BUFFER_SIZE];
+
+	private final char[] chars = new char[BUFFER_SIZE];
+
+	private int charCount;
+
+	/**
+	 * 不足3个字节、暂未编码的数据
+	 */
+	private int carry;
+
+	private int carryCount;
+
+	private Appendable out;
+
+	private GZipBase64Encoder() {
+	}
+
+	/**
+	 * 压缩并编码输入流
+	 *
+	 * @param in    输入流
+	 * @param level 压缩级别（-1 ~ 9，-1为默认级别）
+	 * @return Base64字符串
+	 * @throws IOException 读取输入流异常
+	 */
+	public static String encode(InputStream in, int level) throws IOException {
+		StringBuilder sb = new StringBuilder(Math.max(64, in.available() / 2));
+
+		encode(in, sb, level);
+
+		return sb.toString();
+	}
+
+	/**
+	 * 压缩并编码输入流，编码结果直接写入out
+	 *
+	 * @param in    输入流
+	 * @param out   输出对象，如：StringBuilder、Writer
+	 * @param level 压缩级别（-1 ~ 9，-1为默认级别）
+	 * @throws IOException 读取输入流或写入输出对象异常
+	 */
+	public static void encode(InputStream in, Appendable out, int level) throws IOException {
+		ENCODERS.get().doEncode(in, out, level);
+	}
+
+	private void doEncode(InputStream in, Appendable out, int level) throws IOException {
+		this.out = out;
+		this.charCount = 0;
+		this.carry = 0;
+		this.carryCount = 0;
+
+		deflater.reset();
+		deflater.setLevel(level);
+		crc.reset();
+
+		try {
+			long size = 0;
+			int  n;
+
+			writeBytes(GZIP_HEADER, 0, GZIP_HEADER.length);
+
+			while ((n = in.read(input)) != -1) {
+				if (n > 0) {
+					size += n;
+					crc.update(input, 0, n);
+					deflater.setInput(input, 0, n);
+
+					while (!deflater.needsInput()) {
+						deflate();
+					}
+				}
+			}
+
+			deflater.finish();
+
+			while (!deflater.finished()) {
+				deflate();
+			}
+
+			// GZIP文件尾：CRC32和原始数据长度（小端序）
+			writeInt((int) crc.getValue());
+			writeInt((int) size);
+
+			finishBase64();
+			flushChars();
+		} finally {
+			this.out = null;
+		}
+	}
+
+	private void deflate() throws IOException {
+		int len = deflater.deflate(output, 0, output.length);
+
+		if (len > 0) {
+			writeBytes(output, 0, len);
+		}
+	}
+
+	private void writeInt(int i) throws IOException {
+		byte[] b = output;
+
+		b[0] = (byte) i;
+		b[1] = (byte) (i >> 8);
+		b[2] = (byte) (i >> 16);
+		b[3] = (byte) (i >> 24);
+
+		writeBytes(b, 0, 4);
+	}
+
+	/**
+	 * Base64编码字节，每3个字节编码成4个字符，剩余字节等待后续数据
+	 */
+	private void writeBytes(byte[] b, int off, int len) throws IOException {
+		int i   = off;
+		int end = off + len;
+
+		while (carryCount > 0 && carryCount < 3 && i < end) {
+			carry = (carry << 8) | (b[i++] & 0xff);
+			carryCount++;
+		}
+
+		if (carryCount == 3) {
+			writeChars(carry, 4);
+			carry = 0;
+			carryCount = 0;
+		}
+
+		for (; i + 3 <= end; i += 3) {
+			writeChars((b[i] & 0xff) << 16 | (b[i + 1] & 0xff) << 8 | (b[i + 2] & 0xff), 4);
+		}
+
+		while (i < end) {
+			carry = (carry << 8) | (b[i++] & 0xff);
+			carryCount++;
+		}
+	}
+
+	private void finishBase64() throws IOException {
+		if (carryCount == 1) {
+			writeChars(carry << 16, 2);
+			writePadding(2);
+		} else if (carryCount == 2) {
+			writeChars(carry << 8, 3);
+			writePadding(1);
+		}
+
+		carry = 0;
+		carryCount = 0;
+	}
+
+	/**
+	 * 输出24位数据的前count个Base64字符
+	 */
+	private void writeChars(int bits, int count) throws IOException {
+		if (charCount + 4 > chars.length) {
+			flushChars();
+		}
+
+		chars[charCount++] = BASE64[(bits >>> 18) & 0x3f];
+		chars[charCount++] = BASE64[(bits >>> 12) & 0x3f];
+
+		if (count > 2) {
+			chars[charCount++] = BASE64[(bits >>> 6) & 0x3f];
+		}
+
+		if (count > 3) {
+			chars[charCount++] = BASE64[bits & 0x3f];
+		}
+	}
+
+	private void writePadding(int count) throws IOException {
+		if (charCount + count > chars.length) {
+			flushChars();
+		}
+
+		for (int i = 0; i < count; i++) {
+			chars[charCount++] = '=';
+		}
+	}
+
+	private void flushChars() throws IOException {
+		if (charCount == 0) {
+			return;
+		}
+
+		if (out instanceof StringBuilder) {
+			((StringBuilder) out).append(chars, 0, charCount);
+		} else if (out instanceof Writer) {
+			((Writer) out).write(chars, 0, charCount);
+		} else {
+			out.append(new String(chars, 0, charCount));
+		}
+
+		charCount = 0;
+	}
+
+}
@@ -3,6 +3,7 @@ package org.javaweb.rasp.commons.utils;
 import org.javaweb.rasp.commons.attack.RASPPosition;
 import org.javaweb.rasp.commons.cache.RASPCachedParameter;
 import org.javaweb.rasp.commons.cache.RASPRequestCached;
+import org.javaweb.rasp.commons.config.RASPCidrTrie;
 import org.javaweb.rasp.commons.context.RASPServletRequestContext;
 import org.javaweb.rasp.commons.servlet.HttpServletRequestProxy;
 import org.javaweb.rasp.commons.servlet.HttpServletResponseProxy;
@@ -153,7 +154,7 @@ public class HttpServletRequestUtils extends RASPRequestUtils {
 	public static String getRemoteAddr(HttpServletRequestProxy request) {
 		String ipKey = AGENT_PROPERTIES.getProxyIpHeader();
 
-		if (isNotEmpty(ipKey)) {
+		if (isNotEmpty(ipKey) && isTrustedProxy(request)) {
 			String proxyIP = request.getHeader(ipKey);
 
 			if (proxyIP != null) {
@@ -167,6 +168,18 @@ public class HttpServletRequestUtils extends RASPRequestUtils {
 		return "0:0:0:0:0:0:0:1".equals(ip) ? "127.0.0.1" : ip;
 	}
 
+	/**
+	 * 检测请求是否来自可信的反向代理，未配置可信代理IP段时信任所有请求
+	 *
+	 * @param request 请求对象
+	 * @return 是否是可信代理
+	 */
+	private static boolean isTrustedProxy(HttpServletRequestProxy request) {
+		RASPCidrTrie trustedProxies = AGENT_PROPERTIES.getTrustedProxies();
+
+		return trustedProxies.isEmpty() || trustedProxies.contains(parseIPAddress(request.getRemoteAddr()));
+	}
+
 	/**
 	 * 获取Http请求头对象
 	 *
@@ -18,24 +18,38 @@ public class IPV4Utils {
 	 * @param src a String representing an IPv4 address in standard format
 	 * @return a byte array representing the IPv4 numeric address
 	 */
-	@SuppressWarnings("fallthrough")
 	public static byte[] textToNumericFormatV4(String src) {
-		if (src == null || !src.contains(".")) {
+		if (src == null) {
 			return null;
 		}
 
 		byte[] res = new byte[INADDR4SZ];
 
-		long    tmpValue = 0;
-		int     currByte = 0;
-		boolean newOctet = true;
+		return textToNumericFormatV4(src, 0, src.length(), res, 0) ? res : null;
+	}
 
-		int len = src.length();
+	/**
+	 * 解析src[start, end)区间内的IPv4地址，结果写入dst[offset, offset + 4)，不会创建中间字符串
+	 *
+	 * @param src    IP地址文本
+	 * @param start  起始位置
+	 * @param end    结束位置（不包含）
+	 * @param dst    存放解析结果的数组
+	 * @param offset 结果写入的起始位置
+	 * @return 是否是合法的IPv4地址
+	 */
+	@SuppressWarnings("fallthrough")
+	public static boolean textToNumericFormatV4(CharSequence src, int start, int end, byte[] dst, int offset) {
+		int len = end - start;
 
-		if (len > 15) {
-			return null;
+		if (len <= 0 || len > 15 || !containsChar(src, start, end, '.')) {
+			return false;
 		}
 
+		long    tmpValue = 0;
+		int     currByte = 0;
+		boolean newOctet = true;
+
 		/*
 		 * When only one part is given, the value is stored directly in
 		 * the network address without any byte rearrangement.
@@ -61,19 +75,19 @@ public class IPV4Utils {
 		 * then the remainder is treated as a 8-to-32-bit entity and
 		 * translated into the remaining bytes in the array.
 		 */
-		for (int i = 0; i < len; i++) {
+		for (int i = start; i < end; i++) {
 			char c = src.charAt(i);
 			if (c == '.') {
 				if (newOctet || tmpValue < 0 || tmpValue > 0xff || currByte == 3) {
-					return null;
+					return false;
 				}
-				res[currByte++] = (byte) (tmpValue & 0xff);
+				dst[offset + currByte++] = (byte) (tmpValue & 0xff);
 				tmpValue = 0;
 				newOctet = true;
 			} else {
 				int digit = Character.digit(c, 10);
 				if (digit < 0) {
-					return null;
+					return false;
 				}
 				tmpValue *= 10;
 				tmpValue += digit;
@@ -81,19 +95,29 @@ public class IPV4Utils {
 			}
 		}
 		if (newOctet || tmpValue < 0 || tmpValue >= (1L << ((4 - currByte) * 8))) {
-			return null;
+			return false;
 		}
 		switch (currByte) {
 			case 0:
-				res[0] = (byte) ((tmpValue >> 24) & 0xff);
+				dst[offset] = (byte) ((tmpValue >> 24) & 0xff);
 			case 1:
-				res[1] = (byte) ((tmpValue >> 16) & 0xff);
+				dst[offset + 1] = (byte) ((tmpValue >> 16) & 0xff);
 			case 2:
-				res[2] = (byte) ((tmpValue >> 8) & 0xff);
+				dst[offset + 2] = (byte) ((tmpValue >> 8) & 0xff);
 			case 3:
-				res[3] = (byte) ((tmpValue) & 0xff);
+				dst[offset + 3] = (byte) ((tmpValue) & 0xff);
 		}
-		return res;
+		return true;
+	}
+
+	private static boolean containsChar(CharSequence src, int start, int end, char c) {
+		for (int i = start; i < end; i++) {
+			if (src.charAt(i) == c) {
+				return true;
+			}
+		}
+
+		return false;
 	}
 
 	/*
@@ -107,45 +131,83 @@ public class IPV4Utils {
 	 * @return a byte array representing the IPv6 numeric address
 	 */
 	public static byte[] textToNumericFormatV6(String src) {
-		// Shortest valid string is "::", hence at least 2 chars
-		if (src == null || src.length() < 2 || !src.contains(":")) {
+		if (src == null) {
 			return null;
 		}
 
+		byte[] dst = new byte[INADDR16SZ];
+
+		if (!textToNumericFormatV6(src, 0, src.length(), dst)) {
+			return null;
+		}
+
+		byte[] newdst = convertFromIPv4MappedAddress(dst);
+		if (newdst != null) {
+			return newdst;
+		} else {
+			return dst;
+		}
+	}
+
+	/**
+	 * 解析src[start, end)区间内的IPv6地址，结果（16字节，IPv4映射地址不做转换）写入dst，不会创建中间字符串
+	 *
+	 * @param src   IP地址文本
+	 * @param start 起始位置
+	 * @param end   结束位置（不包含）
+	 * @param dst   存放解析结果的数组，长度必须大于等于16
+	 * @return 是否是合法的IPv6地址
+	 */
+	public static boolean textToNumericFormatV6(CharSequence src, int start, int end, byte[] dst) {
+		// Shortest valid string is "::", hence at least 2 chars
+		if (end - start < 2 || !containsChar(src, start, end, ':')) {
+			return false;
+		}
+
 		int     colonp;
 		char    ch;
 		boolean saw_xdigit;
 		int     val;
-		char[]  srcb = src.toCharArray();
-		byte[]  dst  = new byte[INADDR16SZ];
 
-		int srcb_length = srcb.length;
-		int pc          = src.indexOf('%');
-		if (pc == srcb_length - 1) {
-			return null;
+		int srcb_length = end;
+		int pc          = -1;
+
+		for (int k = start; k < end; k++) {
+			if (src.charAt(k) == '%') {
+				pc = k;
+				break;
+			}
+		}
+
+		if (pc == end - 1) {
+			return false;
 		}
 
 		if (pc != -1) {
 			srcb_length = pc;
 		}
 
+		for (int k = 0; k < INADDR16SZ; k++) {
+			dst[k] = 0;
+		}
+
 		colonp = -1;
-		int i = 0, j = 0;
+		int i = start, j = 0;
 		/* Leading :: requires some special handling. */
-		if (srcb[i] == ':')
-			if (srcb[++i] != ':')
-				return null;
+		if (src.charAt(i) == ':')
+			if (src.charAt(++i) != ':')
+				return false;
 		int curtok = i;
 		saw_xdigit = false;
 		val = 0;
 		while (i < srcb_length) {
-			ch = srcb[i++];
+			ch = src.charAt(i++);
 			int chval = Character.digit(ch, 16);
 			if (chval != -1) {
 				val <<= 4;
 				val |= chval;
 				if (val > 0xffff)
-					return null;
+					return false;
 				saw_xdigit = true;
 				continue;
 			}
@@ -153,14 +215,14 @@ public class IPV4Utils {
 				curtok = i;
 				if (!saw_xdigit) {
 					if (colonp != -1)
-						return null;
+						return false;
 					colonp = j;
 					continue;
 				} else if (i == srcb_length) {
-					return null;
+					return false;
 				}
 				if (j + INT16SZ > INADDR16SZ)
-					return null;
+					return false;
 				dst[j++] = (byte) ((val >> 8) & 0xff);
 				dst[j++] = (byte) (val & 0xff);
 				saw_xdigit = false;
@@ -168,31 +230,28 @@ public class IPV4Utils {
 				continue;
 			}
 			if (ch == '.' && ((j + INADDR4SZ) <= INADDR16SZ)) {
-				String ia4 = src.substring(curtok, srcb_length);
 				/* check this IPv4 address has 3 dots, ie. A.B.C.D */
-				int dot_count = 0, index = 0;
-				while ((index = ia4.indexOf('.', index)) != -1) {
-					dot_count++;
-					index++;
+				int dot_count = 0;
+				for (int k = curtok; k < srcb_length; k++) {
+					if (src.charAt(k) == '.') {
+						dot_count++;
+					}
 				}
 				if (dot_count != 3) {
-					return null;
-				}
-				byte[] v4addr = textToNumericFormatV4(ia4);
-				if (v4addr == null) {
-					return null;
+					return false;
 				}
-				for (int k = 0; k < INADDR4SZ; k++) {
-					dst[j++] = v4addr[k];
+				if (!textToNumericFormatV4(src, curtok, srcb_length, dst, j)) {
+					return false;
 				}
+				j += INADDR4SZ;
 				saw_xdigit = false;
 				break;  /* '\0' was seen by inet_pton4(). */
 			}
-			return null;
+			return false;
 		}
 		if (saw_xdigit) {
 			if (j + INT16SZ > INADDR16SZ)
-				return null;
+				return false;
 			dst[j++] = (byte) ((val >> 8) & 0xff);
 			dst[j++] = (byte) (val & 0xff);
 		}
@@ -201,21 +260,15 @@ public class IPV4Utils {
 			int n = j - colonp;
 
 			if (j == INADDR16SZ)
-				return null;
+				return false;
 			for (i = 1; i <= n; i++) {
 				dst[INADDR16SZ - i] = dst[colonp + n - i];
 				dst[colonp + n - i] = 0;
 			}
 			j = INADDR16SZ;
 		}
-		if (j != INADDR16SZ)
-			return null;
-		byte[] newdst = convertFromIPv4MappedAddress(dst);
-		if (newdst != null) {
-			return newdst;
-		} else {
-			return dst;
-		}
+
+		return j == INADDR16SZ;
 	}
 
 	/*
@@ -281,6 +334,18 @@ public class IPV4Utils {
 		return (ipaddress[0] & 0xff) == 0xfe && (ipaddress[1] & 0xc0) == 0xc0;
 	}
 
+	/**
+	 * 解析IPv4或IPv6地址
+	 *
+	 * @param ip IP地址
+	 * @return IPv4地址返回4字节数组，IPv6地址返回16字节数组，无法解析时返回null
+	 */
+	public static byte[] parseIPAddress(String ip) {
+		byte[] address = textToNumericFormatV4(ip);
+
+		return address != null ? address : textToNumericFormatV6(ip);
+	}
+
 	/**
 	 * 检查IP地址是否是局域网或本机地址
 	 *
@@ -0,0 +1,275 @@
+package org.javaweb.rasp.commons.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * RC4加密并Base64编码，按块完成UTF-8编码、RC4加密和Base64编码，直接输出到StringBuilder/Writer，
+ * 不需要创建UTF-8字节数组、密文数组和Base64字节数组。输出结果和EncryptUtils#enContent一致。
+ * <p>
+ * 每个线程复用一个RC4加密会话和编码缓冲区，RC4密钥初始化结果由RC4Cipher缓存。
+ */
+public class RC4Base64Encoder {
+
+	private static final char[] BASE64 = {
+			'A', 'B', 'C', 'D', 'E', 'F', 'G', 'H', 'I', 'J', 'K', 'L', 'M',
+			'N', 'O', 'P', 'Q', 'R', 'S', 'T', 'U', 'V', 'W', 'X', 'Y', 'Z',
+			'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 'i', 'j', 'k', 'l', 'm',
+			'n', 'o', 'p', 'q', 'r', 's', 't', 'u', 'v', 'w', 'x', 'y', 'z',
+			'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', '+', '/'
+	};
+
+	/**
+	 * 每块编码的字节数，3的整数倍，每块编码后正好是4096个Base64字符
+	 */
+	private static final int BLOCK_SIZE = 3072;
+
+	/**
+	 * 字符编码后的最大字节数
+	 */
+	private static final int MAX_CHAR_BYTES = 4;
+
+	private static final ThreadLocal<RC4Base64Encoder> ENCODERS = new ThreadLocal<RC4Base64Encoder>() {
+		@Override
+		protected RC4Base64Encoder initialValue() {
+			return new RC4Base64Encoder();
+		}
+	};
+
+	/**
+	 * UTF-8编码后的字节，RC4在原数组上加密
+	 */
+	private final byte[] bytes = new byte[BLOCK_SIZE + MAX_CHAR_BYTES];
+
+	private final char[] chars = new char[(BLOCK_SIZE + MAX_CHAR_BYTES + 2) / 3 * 4];
+
+	private final StringBuilder result = new StringBuilder();
+
+	private RC4Cipher.Session session;
+
+	/**
+	 * 已写入bytes的字节数
+	 */
+	private int count;
+
+	/**
+	 * 已加密的字节数
+	 */
+	private int encrypted;
+
+	private RC4Base64Encoder() {
+	}
+
+	/**
+	 * 加密并编码字符串
+	 *
+	 * @param data 字符串
+	 * @param key  加密Key
+	 * @return Base64字符串
+	 */
+	public static String encode(CharSequence data, String key) {
+		RC4Base64Encoder encoder = ENCODERS.get();
+
+		try {
+			encoder.doEncode(data, RC4Cipher.getInstance(key), encoder.beginResult());
+
+			return encoder.endResult();
+		} catch (IOException e) {
+			// StringBuilder不会抛出IO异常
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * 加密并编码UTF-8字节，结果和加密对应的字符串一致
+	 *
+	 * @param data UTF-8编码的字节
+	 * @param key  加密Key
+	 * @return Base64字符串
+	 */
+	public static String encode(byte[] data, String key) {
+		RC4Base64Encoder encoder = ENCODERS.get();
+
+		try {
+			encoder.doEncode(data, RC4Cipher.getInstance(key), encoder.beginResult());
+
+			return encoder.endResult();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * 加密并编码字符串，编码结果直接写入out
+	 *
+	 * @param data 字符串
+	 * @param key  加密Key
+	 * @param out  输出对象，如：StringBuilder、Writer
+	 * @throws IOException 写入输出对象异常
+	 */
+	public static void encode(CharSequence data, String key, Appendable out) throws IOException {
+		ENCODERS.get().doEncode(data, RC4Cipher.getInstance(key), out);
+	}
+
+	private StringBuilder beginResult() {
+		result.setLength(0);
+
+		return result;
+	}
+
+	private String endResult() {
+		String str = result.toString();
+
+		// 避免长期持有超长日志的缓存
+		if (result.capacity() > BLOCK_SIZE * 16) {
+			result.setLength(0);
+			result.trimToSize();
+		}
+
+		return str;
+	}
+
+	private void reset(RC4Cipher cipher) {
+		if (session == null) {
+			session = cipher.newSession();
+		} else {
+			session.reset(cipher);
+		}
+
+		count = 0;
+		encrypted = 0;
+	}
+
+	private void doEncode(byte[] data, RC4Cipher cipher, Appendable out) throws IOException {
+		reset(cipher);
+
+		int off = 0;
+
+		for (; data.length - off > BLOCK_SIZE; off += BLOCK_SIZE) {
+			session.update(data, off, BLOCK_SIZE, bytes, 0);
+			writeChars(out, encodeBase64(0, BLOCK_SIZE));
+		}
+
+		count = encrypted = data.length - off;
+		session.update(data, off, count, bytes, 0);
+
+		finish(out);
+	}
+
+	private void doEncode(CharSequence data, RC4Cipher cipher, Appendable out) throws IOException {
+		reset(cipher);
+
+		byte[] b      = bytes;
+		int    length = data.length();
+
+		for (int i = 0; i < length; i++) {
+			if (count > BLOCK_SIZE) {
+				flushBlock(out);
+			}
+
+			char c = data.charAt(i);
+
+			// 和String#getBytes一致，不成对的代理字符编码为"?"
+			if (c < 0x80) {
+				b[count++] = (byte) c;
+			} else if (c < 0x800) {
+				b[count++] = (byte) (0xC0 | (c >> 6));
+				b[count++] = (byte) (0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(data.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, data.charAt(++i));
+
+				b[count++] = (byte) (0xF0 | (codePoint >> 18));
+				b[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+				b[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+				b[count++] = (byte) (0x80 | (codePoint & 0x3F));
+			} else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+				b[count++] = '?';
+			} else {
+				b[count++] = (byte) (0xE0 | (c >> 12));
+				b[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				b[count++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+
+		encrypt();
+		finish(out);
+	}
+
+	/**
+	 * 编码剩余的已加密字节，不足3个字节时补齐"="
+	 */
+	private void finish(Appendable out) throws IOException {
+		byte[] b       = bytes;
+		int    aligned = count - count % 3;
+		int n       = encodeBase64(0, aligned);
+
+		if (count - aligned == 1) {
+			int bits = (b[aligned] & 0xff) << 16;
+
+			chars[n++] = BASE64[(bits >>> 18) & 0x3f];
+			chars[n++] = BASE64[(bits >>> 12) & 0x3f];
+			chars[n++] = '=';
+			chars[n++] = '=';
+		} else if (count - aligned == 2) {
+			int bits = (b[aligned] & 0xff) << 16 | (b[aligned + 1] & 0xff) << 8;
+
+			chars[n++] = BASE64[(bits >>> 18) & 0x3f];
+			chars[n++] = BASE64[(bits >>> 12) & 0x3f];
+			chars[n++] = BASE64[(bits >>> 6) & 0x3f];
+			chars[n++] = '=';
+		}
+
+		writeChars(out, n);
+	}
+
+	/**
+	 * 加密并编码一个完整的块，不足3个字节的剩余数据移动到数组开头
+	 */
+	private void flushBlock(Appendable out) throws IOException {
+		encrypt();
+
+		writeChars(out, encodeBase64(0, BLOCK_SIZE));
+
+		int remaining = count - BLOCK_SIZE;
+
+		System.arraycopy(bytes, BLOCK_SIZE, bytes, 0, remaining);
+
+		count = encrypted = remaining;
+	}
+
+	private void encrypt() {
+		session.update(bytes, encrypted, count - encrypted, bytes, encrypted);
+		encrypted = count;
+	}
+
+	private int encodeBase64(int off, int end) {
+		byte[] b = bytes;
+		int    n = 0;
+
+		for (int i = off; i < end; i += 3) {
+			int bits = (b[i] & 0xff) << 16 | (b[i + 1] & 0xff) << 8 | (b[i + 2] & 0xff);
+
+			chars[n++] = BASE64[(bits >>> 18) & 0x3f];
+			chars[n++] = BASE64[(bits >>> 12) & 0x3f];
+			chars[n++] = BASE64[(bits >>> 6) & 0x3f];
+			chars[n++] = BASE64[bits & 0x3f];
+		}
+
+		return n;
+	}
+
+	private void writeChars(Appendable out, int n) throws IOException {
+		if (n == 0) {
+			return;
+		}
+
+		if (out instanceof StringBuilder) {
+			((StringBuilder) out).append(chars, 0, n);
+		} else if (out instanceof Writer) {
+			((Writer) out).write(chars, 0, n);
+		} else {
+			out.append(new String(chars, 0, n));
+		}
+	}
+
+}
@@ -0,0 +1,168 @@
+package org.javaweb.rasp.commons.utils;
+
+import java.io.UnsupportedEncodingException;
+
+import static org.javaweb.rasp.commons.constants.RASPConstants.DEFAULT_ENCODING;
+
+/**
+ * RC4加解密，创建时完成密钥初始化（KSA），每条消息只需复制初始化后的256字节状态，
+ * 无需每次加密都重新执行密钥初始化。
+ * <p>
+ * RC4Cipher对象创建后不再修改，可以在多线程中共享；加解密使用的Session对象只能在单个线程中使用。
+ */
+public class RC4Cipher {
+
+	/**
+	 * 最近一次使用的RC4Cipher，RASP日志加密Key基本不会改变，只需缓存一个
+	 */
+	private static volatile RC4Cipher lastCipher;
+
+	private final String key;
+
+	/**
+	 * 密钥初始化后的状态
+	 */
+	private final byte[] initState = new byte[256];
+
+	public RC4Cipher(String key) {
+		byte[] bytes;
+
+		try {
+			bytes = key.getBytes(DEFAULT_ENCODING);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalArgumentException(e);
+		}
+
+		if (bytes.length == 0) {
+			throw new IllegalArgumentException("RC4 key must not be empty");
+		}
+
+		byte[] state = initState;
+
+		for (int i = 0; i < 256; i++) {
+			state[i] = ((byte) i);
+		}
+
+		int index1 = 0;
+		int index2 = 0;
+
+		for (int i = 0; i < 256; i++) {
+			index2 = (bytes[index1] & 0xFF) + (state[i] & 0xFF) + index2 & 0xFF;
+			byte tmp = state[i];
+			state[i] = state[index2];
+			state[index2] = tmp;
+			index1 = (index1 + 1) % bytes.length;
+		}
+
+		this.key = key;
+	}
+
+	/**
+	 * 获取key对应的RC4Cipher，key和上一次相同时直接返回缓存的对象
+	 *
+	 * @param key 加密Key
+	 * @return RC4Cipher
+	 */
+	public static RC4Cipher getInstance(String key) {
+		RC4Cipher cipher = lastCipher;
+
+		if (cipher == null || !cipher.key.equals(key)) {
+			lastCipher = cipher = new RC4Cipher(key);
+		}
+
+		return cipher;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * 创建加解密会话，会话可以通过reset重复使用
+	 *
+	 * @return 加解密会话
+	 */
+	public Session newSession() {
+		return new Session(this);
+	}
+
+	/**
+	 * 加解密数据
+	 *
+	 * @param input 数据
+	 * @return 加解密后的数据
+	 */
+	public byte[] crypt(byte[] input) {
+		byte[] result = new byte[input.length];
+
+		newSession().update(input, 0, input.length, result, 0);
+
+		return result;
+	}
+
+	/**
+	 * RC4加解密会话，保存当前密钥流状态，同一条消息可以分多次调用update
+	 */
+	public static final class Session {
+
+		private final byte[] state = new byte[256];
+
+		private RC4Cipher cipher;
+
+		private int x;
+
+		private int y;
+
+		private Session(RC4Cipher cipher) {
+			reset(cipher);
+		}
+
+		/**
+		 * 重置会话，开始加解密新的消息
+		 *
+		 * @param cipher RC4Cipher
+		 */
+		public void reset(RC4Cipher cipher) {
+			System.arraycopy(cipher.initState, 0, state, 0, 256);
+
+			this.cipher = cipher;
+			this.x = 0;
+			this.y = 0;
+		}
+
+		public RC4Cipher getCipher() {
+			return cipher;
+		}
+
+		/**
+		 * 加解密数据，写入调用方传入的数组，input和output可以是同一个数组
+		 *
+		 * @param input     数据
+		 * @param inOffset  数据偏移量
+		 * @param len       长度
+		 * @param output    输出数组
+		 * @param outOffset 输出偏移量
+		 */
+		public void update(byte[] input, int inOffset, int len, byte[] output, int outOffset) {
+			byte[] key = state;
+			int    x   = this.x;
+			int    y   = this.y;
+
+			for (int i = 0; i < len; i++) {
+				x = x + 1 & 0xFF;
+				y = (key[x] & 0xFF) + y & 0xFF;
+
+				byte tmp = key[x];
+				key[x] = key[y];
+				key[y] = tmp;
+				int xorIndex = (key[x] & 0xFF) + (key[y] & 0xFF) & 0xFF;
+				output[outOffset + i] = ((byte) (input[inOffset + i] ^ key[xorIndex]));
+			}
+
+			this.x = x;
+			this.y = y;
+		}
+
+	}
+
+}
@@ -54,57 +54,8 @@ public class RC4Utils {
 		return RC4Base(bytes, key);
 	}
 
-	private static byte[] initKey(String aKey) {
-		byte[] bytes = null;
-
-		try {
-			bytes = aKey.getBytes(DEFAULT_ENCODING);
-		} catch (UnsupportedEncodingException e) {
-			e.printStackTrace();
-		}
-
-		byte[] state = new byte[256];
-		for (int i = 0; i < 256; i++) {
-			state[i] = ((byte) i);
-		}
-
-		int index1 = 0;
-		int index2 = 0;
-
-		if (bytes == null || bytes.length == 0) {
-			return null;
-		}
-
-		for (int i = 0; i < 256; i++) {
-			index2 = (bytes[index1] & 0xFF) + (state[i] & 0xFF) + index2 & 0xFF;
-			byte tmp = state[i];
-			state[i] = state[index2];
-			state[index2] = tmp;
-			index1 = (index1 + 1) % bytes.length;
-		}
-
-		return state;
-	}
-
 	private static byte[] RC4Base(byte[] input, String mKkey) {
-		int    x   = 0;
-		int    y   = 0;
-		byte[] key = initKey(mKkey);
-
-		byte[] result = new byte[input.length];
-
-		for (int i = 0; i < input.length; i++) {
-			x = x + 1 & 0xFF;
-			y = (key[x] & 0xFF) + y & 0xFF;
-
-			byte tmp = key[x];
-			key[x] = key[y];
-			key[y] = tmp;
-			int xorIndex = (key[x] & 0xFF) + (key[y] & 0xFF) & 0xFF;
-			result[i] = ((byte) (input[i] ^ key[xorIndex]));
-		}
-
-		return result;
+		return RC4Cipher.getInstance(mKkey).crypt(input);
 	}
 
 }
\ No newline at end of file
@@ -3,8 +3,6 @@ package org.javaweb.rasp.commons.utils;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import static org.javaweb.rasp.commons.config.RASPConfiguration.AGENT_LOGGER;
 import static org.javaweb.rasp.loader.AgentConstants.AGENT_NAME;
@@ -29,9 +27,10 @@ public final class ReflectionUtils {
 
 	public static final Class<?>[] STREAM_CLASS_ARG = new Class[]{byte[].class, int.class, int.class};
 
-	private static final Map<Integer, Method> CACHE_CLASS_METHOD_MAP = new ConcurrentHashMap<Integer, Method>();
-
-	private static final Map<Integer, Field> CACHE_CLASS_FIELD_MAP = new ConcurrentHashMap<Integer, Field>();
+	/**
+	 * 按Class缓存的类方法和成员变量
+	 */
+	private static final ClassMemberCache MEMBER_CACHE = new ClassMemberCache();
 
 	public static String methodToString(String className, String method, Class<?>... classes) {
 		StringBuilder sb = new StringBuilder();
@@ -93,7 +92,7 @@ public final class ReflectionUtils {
 			sb.append(')');
 		}
 
-		return sb.hashCode();
+		return sb.toString().hashCode();
 	}
 
 	public static int getFieldHashcode(Object className, String field) {
@@ -111,34 +110,27 @@ public final class ReflectionUtils {
 	}
 
 	public static Method getMethod(Class<?> clazz, String name, Class<?>... argTypes) throws NoSuchMethodException {
-		int    hashCode = getMethodHashcode(clazz, name, argTypes);
-		Method method   = CACHE_CLASS_METHOD_MAP.get(hashCode);
-
-		if (method != null) {
-			return method;
-		}
-
-		while (clazz != Object.class) {
-			try {
-				method = clazz.getDeclaredMethod(name, argTypes);
-				break;
-			} catch (NoSuchMethodException e) {
-				clazz = clazz.getSuperclass();
-			}
-		}
+		Method method = MEMBER_CACHE.getMethod(clazz, name, argTypes);
 
 		if (method == null) {
 			throw new NoSuchMethodException(name);
-		} else {
-			method.setAccessible(true);
-
-			// 缓存类方法
-			CACHE_CLASS_METHOD_MAP.put(hashCode, method);
 		}
 
 		return method;
 	}
 
+	/**
+	 * 查找类方法，和getMethod不同的是方法不存在时返回null而不是抛出异常
+	 *
+	 * @param clazz    类对象
+	 * @param name     方法名
+	 * @param argTypes 参数类型
+	 * @return 类方法
+	 */
+	public static Method findMethod(Class<?> clazz, String name, Class<?>... argTypes) {
+		return MEMBER_CACHE.getMethod(clazz, name, argTypes);
+	}
+
 	public static Object invokeMethod(Object instance, String name, Class<?>[] argTypes, Object... args)
 			throws InvocationTargetException, IllegalAccessException, NoSuchMethodException {
 
@@ -156,29 +148,10 @@ public final class ReflectionUtils {
 	}
 
 	public static Field getField(Class<?> clazz, String name) throws NoSuchFieldException {
-		int   hashCode = getFieldHashcode(clazz, name);
-		Field field    = CACHE_CLASS_FIELD_MAP.get(hashCode);
-
-		if (field != null) {
-			return field;
-		}
-
-		while (clazz != Object.class) {
-			try {
-				field = clazz.getDeclaredField(name);
-				break;
-			} catch (NoSuchFieldException e) {
-				clazz = clazz.getSuperclass();
-			}
-		}
+		Field field = MEMBER_CACHE.getField(clazz, name);
 
 		if (field == null) {
 			throw new NoSuchFieldException(name);
-		} else {
-			field.setAccessible(true);
-
-			// 缓存类方法
-			CACHE_CLASS_FIELD_MAP.put(hashCode, field);
 		}
 
 		return field;
@@ -232,7 +205,17 @@ public final class ReflectionUtils {
 
 	public static <T> T invokeMethodProxy(Object instance, String name, Class<?>[] argTypes, Object... args) {
 		try {
-			return (T) invokeMethod(instance, name, argTypes, args);
+			Method method = findMethod(instance.getClass(), name, argTypes);
+
+			if (method == null) {
+				if (AGENT_LOGGER.isDebugEnabled()) {
+					AGENT_LOGGER.error(AGENT_NAME + "反射调用" + instance.getClass().getName() + "#" + name + "异常，该方法不存在！");
+				}
+
+				return null;
+			}
+
+			return (T) method.invoke(instance, args);
 		} catch (Exception e) {
 			if (AGENT_LOGGER.isDebugEnabled()) {
 				AGENT_LOGGER.error(AGENT_NAME + "反射调用" + instance.getClass().getName() + "#" + name + "异常", e);
@@ -0,0 +1,133 @@
+package org.javaweb.rasp.commons.utils;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 以对象引用相等（==）比较Key的缓存，Key使用弱引用，值使用软引用，读取时无锁。
+ * 主要用于缓存以Class或ClassLoader为Key的数据：缓存的值（如Method、生成的类）通常会强引用Key，
+ * 如果强引用缓存值会导致弱引用的Key永远无法被回收，Web应用重新部署后类无法被卸载。
+ *
+ * @param <K> Key类型
+ * @param <V> 缓存值类型
+ */
+public class WeakIdentityCache<K, V> {
+
+	private final Map<Object, SoftReference<V>> map = new ConcurrentHashMap<Object, SoftReference<V>>();
+
+	private final ReferenceQueue<K> queue = new ReferenceQueue<K>();
+
+	/**
+	 * 获取缓存值，不存在或已被回收时返回null
+	 *
+	 * @param key 缓存Key
+	 * @return 缓存值
+	 */
+	public V get(K key) {
+		SoftReference<V> ref = map.get(new LookupKey(key));
+
+		return ref != null ? ref.get() : null;
+	}
+
+	/**
+	 * 写入缓存
+	 *
+	 * @param key   缓存Key
+	 * @param value 缓存值
+	 */
+	public void put(K key, V value) {
+		expungeStaleEntries();
+
+		map.put(new WeakKey<K>(key, queue), new SoftReference<V>(value));
+	}
+
+	public void remove(K key) {
+		map.remove(new LookupKey(key));
+	}
+
+	public int size() {
+		return map.size();
+	}
+
+	/**
+	 * 清除Key已被回收的缓存
+	 */
+	private void expungeStaleEntries() {
+		for (Reference<? extends K> ref; (ref = queue.poll()) != null; ) {
+			map.remove(ref);
+		}
+	}
+
+	private interface IdentityKey {
+
+		Object getReferent();
+
+	}
+
+	/**
+	 * 存储在缓存中的弱引用Key
+	 */
+	private static final class WeakKey<K> extends WeakReference<K> implements IdentityKey {
+
+		private final int hash;
+
+		WeakKey(K key, ReferenceQueue<K> queue) {
+			super(key, queue);
+			this.hash = System.identityHashCode(key);
+		}
+
+		@Override
+		public Object getReferent() {
+			return get();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof IdentityKey)) return false;
+
+			Object key = get();
+
+			return key != null && key == ((IdentityKey) o).getReferent();
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+	}
+
+	/**
+	 * 查询缓存时使用的临时Key，避免每次查询都创建弱引用对象
+	 */
+	private static final class LookupKey implements IdentityKey {
+
+		private final Object key;
+
+		LookupKey(Object key) {
+			this.key = key;
+		}
+
+		@Override
+		public Object getReferent() {
+			return key;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof IdentityKey && key == ((IdentityKey) o).getReferent();
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(key);
+		}
+
+	}
+
+}
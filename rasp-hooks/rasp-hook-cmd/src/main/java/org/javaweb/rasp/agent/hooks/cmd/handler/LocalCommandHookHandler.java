@@ -4,14 +4,13 @@ import org.javaweb.rasp.commons.MethodHookEvent;
 import org.javaweb.rasp.commons.attack.RASPAttackInfo;
 import org.javaweb.rasp.commons.attack.RASPPosition;
 import org.javaweb.rasp.commons.cache.RASPCachedParameter;
+import org.javaweb.rasp.commons.cache.RASPParameterIndex;
 import org.javaweb.rasp.commons.cache.RASPRequestCached;
 import org.javaweb.rasp.commons.context.RASPContext;
-import org.javaweb.rasp.commons.utils.StringUtils;
 
 import java.rasp.proxy.loader.HookResult;
 import java.rasp.proxy.loader.RASPHookException;
 import java.util.List;
-import java.util.Set;
 
 import static java.rasp.proxy.loader.HookResultType.THROW;
 import static org.javaweb.rasp.agent.hooks.cmd.LocalCommandHook.CMD_TYPE;
@@ -46,37 +45,28 @@ public class LocalCommandHookHandler {
                 return DEFAULT_HOOK_RESULT;
             }
 
-            Set<RASPCachedParameter> cachedParameters = cachedRequest.getCachedParameter();
+            RASPParameterIndex parameterIndex = cachedRequest.getParameterIndex();
 
             // 只过滤请求参数值，忽略请求参数名称，因为参数名出现命令执行的概率太低
-            for (RASPCachedParameter parameterValue : cachedParameters) {
-                // 请求参数名称
-                String key = parameterValue.getKey();
-
-                // 请求参数值
-                String[] values = parameterValue.getValue();
-
-                // 请求参数出现的位置
-                RASPPosition position = parameterValue.getRaspAttackPosition();
-
-                // 遍历所有的参数值
-                for (String value : values) {
-                    if (StringUtils.isEmpty(value)) {
-                        continue;
-                    }
-
-                    // 遍历被执行的系统命令
-                    for (String cmd : commands) {
-                        if (value.equals(cmd)) {
-                            // 添加攻击日志记录
-                            context.addAttackInfo(new RASPAttackInfo(CMD_TYPE, key, commands, position, true));
-
-                            return BLOCK_RESULT;
-                        }
-                    }
+            for (String cmd : commands) {
+                // 按参数值查找和被执行的系统命令完全一致的请求参数
+                List<RASPCachedParameter> parameters = parameterIndex.getParameters(cmd);
+
+                if (!parameters.isEmpty()) {
+                    RASPCachedParameter parameter = parameters.get(0);
+
+                    // 请求参数名称
+                    String key = parameter.getKey();
+
+                    // 请求参数出现的位置
+                    RASPPosition position = parameter.getRaspAttackPosition();
+
+                    // 添加攻击日志记录
+                    context.addAttackInfo(new RASPAttackInfo(CMD_TYPE, key, commands, position, true));
+
+                    return BLOCK_RESULT;
                 }
             }
-
         }
 
         return DEFAULT_HOOK_RESULT;
@@ -1,5 +1,10 @@
 package java.rasp.proxy.loader;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * RASP 安全模块枚举类
  * Creator: yz
@@ -27,15 +32,69 @@ public class RASPModuleType {
 	 */
 	private boolean printTrace = true;
 
+	/**
+	 * 模块序号，同名模块的序号相同，用于按位检测模块是否开启
+	 */
+	private final int ordinal;
+
+	/**
+	 * 模块名称 -> 模块序号
+	 */
+	private static final Map<String, Integer> MODULE_ORDINALS = new HashMap<String, Integer>();
+
+	/**
+	 * 按模块序号存储的模块类型，仅在配置文件中出现、未注册过的模块为null
+	 */
+	private static final List<RASPModuleType> MODULE_TYPES = new ArrayList<RASPModuleType>();
+
 	public RASPModuleType(String moduleName, String moduleDesc) {
-		this.moduleName = moduleName;
-		this.moduleDesc = moduleDesc;
+		this(moduleName, moduleDesc, true);
 	}
 
 	public RASPModuleType(String moduleName, String moduleDesc, boolean printTrace) {
 		this.moduleName = moduleName;
 		this.moduleDesc = moduleDesc;
 		this.printTrace = printTrace;
+		this.ordinal = register(this);
+	}
+
+	private static synchronized int register(RASPModuleType type) {
+		int ordinal = getOrdinal(type.moduleName);
+
+		if (MODULE_TYPES.get(ordinal) == null) {
+			MODULE_TYPES.set(ordinal, type);
+		}
+
+		return ordinal;
+	}
+
+	/**
+	 * 获取模块名称对应的序号，模块未注册时分配一个新的序号（序号从0开始连续分配）
+	 *
+	 * @param moduleName 模块名称
+	 * @return 模块序号
+	 */
+	public static synchronized int getOrdinal(String moduleName) {
+		Integer ordinal = MODULE_ORDINALS.get(moduleName);
+
+		if (ordinal == null) {
+			ordinal = MODULE_TYPES.size();
+
+			MODULE_ORDINALS.put(moduleName, ordinal);
+			MODULE_TYPES.add(null);
+		}
+
+		return ordinal;
+	}
+
+	/**
+	 * 获取模块序号对应的模块类型
+	 *
+	 * @param ordinal 模块序号
+	 * @return 模块类型，未注册时返回null
+	 */
+	public static synchronized RASPModuleType valueOf(int ordinal) {
+		return ordinal >= 0 && ordinal < MODULE_TYPES.size() ? MODULE_TYPES.get(ordinal) : null;
 	}
 
 	/**
@@ -65,6 +124,15 @@ public class RASPModuleType {
 		return printTrace;
 	}
 
+	/**
+	 * 获取模块序号
+	 *
+	 * @return 模块序号
+	 */
+	public int getOrdinal() {
+		return ordinal;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) return true;